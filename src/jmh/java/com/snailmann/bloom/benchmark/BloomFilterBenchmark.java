@@ -0,0 +1,159 @@
+package com.snailmann.bloom.benchmark;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Put and query of {@link BloomFilter} and {@link ConcurrentBloomFilter}, by one thread and by 4 contending threads
+ * <ul>
+ *     <li>n: 100000 is 200 KB of bits at c = 16 and stays in cache, 50000000 is 100 MB and a probe is a cache miss</li>
+ *     <li>k: number of probes, m is fixed by c = 16 so the fpp changes with k</li>
+ *     <li>the filter is half filled before the measurement, half of the queries are hits</li>
+ * </ul>
+ * Throughput is ops/us, the sample time mode reports the latency percentiles. Run with {@code -prof gc} for the
+ * allocation rate, a put or query of a long should allocate nothing
+ *
+ * @author liwenjie
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class BloomFilterBenchmark {
+
+    private static final double BITS_OF_ELEMENT = 16;
+
+    private static final int BATCH = 1024;
+
+    @Param({"bloom", "concurrent"})
+    public String impl;
+
+    @Param({"100000", "50000000"})
+    public int n;
+
+    @Param({"3", "7", "11"})
+    public int k;
+
+    private Filter<Object> filter;
+
+    private Keys keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FilterConfig configuration = FilterConfig.config(n, k, BITS_OF_ELEMENT);
+        filter = "concurrent".equals(impl)
+                ? ConcurrentBloomFilter.create("benchmark", configuration)
+                : BloomFilter.create("benchmark", configuration);
+        Keys.fill(filter, n / 4);
+        keys = Keys.of(n / 4);
+    }
+
+    /**
+     * Position in the keys, one per thread so threads don't contend on it
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int i;
+
+        int next() {
+            return i++ & Keys.MASK;
+        }
+
+        int nextBatch() {
+            int from = i & Keys.MASK & ~(BATCH - 1);
+            i += BATCH;
+            return from;
+        }
+    }
+
+    @Benchmark
+    public void putLong(Cursor cursor) {
+        filter.put(keys.longs[cursor.next()]);
+    }
+
+    @Benchmark
+    public void putString(Cursor cursor) {
+        filter.put(keys.strings[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean mightContainsLong(Cursor cursor) {
+        return filter.mightContains(keys.longs[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean mightContainsString(Cursor cursor) {
+        return filter.mightContains(keys.strings[cursor.next()]);
+    }
+
+    /**
+     * Query of a batch, the batch is hashed first and the lock of {@link BloomFilter} is taken once
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] mightContainsAllLong(Cursor cursor, Batch batch) {
+        System.arraycopy(keys.longs, cursor.nextBatch(), batch.elements, 0, BATCH);
+        filter.mightContainsAll(batch.elements, batch.out);
+        return batch.out;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contendedPutLong(Cursor cursor) {
+        filter.put(keys.longs[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedMightContainsLong(Cursor cursor) {
+        return filter.mightContains(keys.longs[cursor.next()]);
+    }
+
+    /**
+     * 3 readers and 1 writer at the same time
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public boolean mixedMightContainsLong(Cursor cursor) {
+        return filter.mightContains(keys.longs[cursor.next()]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedPutLong(Cursor cursor) {
+        filter.put(keys.longs[cursor.next()]);
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        private final long[] elements = new long[BATCH];
+
+        private final boolean[] out = new boolean[BATCH];
+    }
+}
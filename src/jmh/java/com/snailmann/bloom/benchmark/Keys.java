@@ -0,0 +1,68 @@
+package com.snailmann.bloom.benchmark;
+
+import com.snailmann.bloom.filter.basic.Filter;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Keys of the benchmarks, generated before the measurement so no key is allocated in a benchmark method.
+ * Even keys are put into the filter by {@link #fill(Filter, long)}, odd keys are never put, a query is a hit or a
+ * miss with equal chance
+ *
+ * @author liwenjie
+ */
+final class Keys {
+
+    /**
+     * Number of keys of a benchmark, a power of 2
+     */
+    static final int SIZE = 1 << 16;
+
+    static final int MASK = SIZE - 1;
+
+    private static final int FILL_BATCH = 1 << 14;
+
+    final long[] longs = new long[SIZE];
+
+    final String[] strings = new String[SIZE];
+
+    private Keys(long filled, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < SIZE; i++) {
+            // keys below filled are put, keys from filled on never are
+            long key = (i & 1) == 0 ? random.nextLong(filled) : filled + random.nextLong(Long.MAX_VALUE - filled);
+            longs[i] = key;
+            strings[i] = Long.toString(key);
+        }
+    }
+
+    /**
+     * Keys of a filter filled by {@link #fill(Filter, long)}
+     *
+     * @param filled number of elements put
+     * @return keys
+     */
+    static Keys of(long filled) {
+        return new Keys(Math.max(filled, 1), 42);
+    }
+
+    /**
+     * Put the long elements [0, count) and their strings
+     *
+     * @param filter filter
+     * @param count  number of elements
+     */
+    static void fill(Filter<?> filter, long count) {
+        long[] batch = new long[FILL_BATCH];
+        for (long from = 0; from < count; from += FILL_BATCH) {
+            int size = (int) Math.min(FILL_BATCH, count - from);
+            for (int i = 0; i < size; i++) {
+                long key = from + i;
+                batch[i] = key;
+                filter.put(Long.toString(key));
+            }
+            filter.putAll(size == FILL_BATCH ? batch : Arrays.copyOf(batch, size));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.snailmann.bloom.benchmark;
+
+import com.snailmann.bloom.filter.ConcurrentLRUBloomFilter;
+import com.snailmann.bloom.filter.LRUBloomFilter;
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.config.LRUFilterConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Put and query of {@link LRUBloomFilter} and {@link ConcurrentLRUBloomFilter} by the number of generations. All
+ * generations are filled before the measurement, a miss probes every generation and the puts rotate generations
+ * as they fill, so the rotation cost is in the put latency percentiles
+ *
+ * @author liwenjie
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class LRUBloomFilterBenchmark {
+
+    private static final double SFPP = 0.001;
+
+    @Param({"lru", "concurrent"})
+    public String impl;
+
+    @Param({"1000000"})
+    public int sn;
+
+    @Param({"1", "4", "16"})
+    public int generations;
+
+    private Filter<Object> filter;
+
+    private Keys keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LRUFilterConfig configuration = LRUFilterConfig.config(sn, SFPP, generations);
+        filter = "concurrent".equals(impl)
+                ? ConcurrentLRUBloomFilter.create("benchmark", configuration)
+                : LRUBloomFilter.create("benchmark", configuration);
+        // short of sn, so the first generation is not evicted yet
+        long filled = sn * 9L / 10 / 2;
+        Keys.fill(filter, filled);
+        keys = Keys.of(filled);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int i;
+
+        int next() {
+            return i++ & Keys.MASK;
+        }
+    }
+
+    @Benchmark
+    public void putLong(Cursor cursor) {
+        filter.put(keys.longs[cursor.next()]);
+    }
+
+    @Benchmark
+    public void putString(Cursor cursor) {
+        filter.put(keys.strings[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean mightContainsLong(Cursor cursor) {
+        return filter.mightContains(keys.longs[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean mightContainsString(Cursor cursor) {
+        return filter.mightContains(keys.strings[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contendedPutLong(Cursor cursor) {
+        filter.put(keys.longs[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedMightContainsLong(Cursor cursor) {
+        return filter.mightContains(keys.longs[cursor.next()]);
+    }
+}
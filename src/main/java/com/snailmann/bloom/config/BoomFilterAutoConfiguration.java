@@ -1,11 +1,34 @@
 package com.snailmann.bloom.config;
 
+import com.snailmann.bloom.filter.BinaryFuseFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.HybridBloomFilter;
+import com.snailmann.bloom.filter.RedisBloomFilter;
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.basic.Maintainable;
 import com.snailmann.bloom.filter.config.FilterConfig;
-import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.maintenance.FilterMaintainer;
+import com.snailmann.bloom.filter.metrics.FilterMetrics;
+import com.snailmann.bloom.filter.snapshot.FilterSnapshots;
+import com.snailmann.bloom.filter.snapshot.SnapshotWriter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.Collectors;
 
 /**
  * @author liwenjie
@@ -20,9 +43,86 @@ public class BoomFilterAutoConfiguration {
         return FilterConfig.defaultConfig();
     }
 
+    /**
+     * The filter is shared by all instances through redis if {@code bloom.store=redis}
+     */
+    @Bean
+    @ConditionalOnProperty(name = "bloom.store", havingValue = "redis")
+    public RedisBloomFilter redisBoomFilter(FilterConfig configuration, StringRedisTemplate redisTemplate) {
+        return RedisBloomFilter.create(null, configuration, redisTemplate);
+    }
+
+    /**
+     * Reads are answered by a local replica and writes are flushed to redis in the background if
+     * {@code bloom.store=hybrid}
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "bloom.store", havingValue = "hybrid")
+    public HybridBloomFilter hybridBoomFilter(FilterConfig configuration, StringRedisTemplate redisTemplate,
+                                              @Value("${bloom.hybrid.flush-interval:100ms}") String flushInterval,
+                                              @Value("${bloom.hybrid.pull-interval:10s}") String pullInterval) {
+        return HybridBloomFilter.create(null, configuration, redisTemplate,
+                DurationStyle.detectAndParse(flushInterval), DurationStyle.detectAndParse(pullInterval));
+    }
+
+    /**
+     * An immutable binary fuse filter mapped from {@code bloom.fuse.file} is served if {@code bloom.store=fuse}, the
+     * snapshot is built offline from a known key set, e.g. {@code FilterSnapshots.write(BinaryFuseFilter.build(...))}
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "bloom.store", havingValue = "fuse")
+    public BinaryFuseFilter fuseBoomFilter(@Value("${bloom.fuse.file}") String file) throws IOException {
+        BinaryFuseFilter<?> filter = FilterSnapshots.loadBinaryFuseFilter(Paths.get(file));
+        log.info("filter [{}] is loaded from {}, size: {}", filter.name(), file, filter.getCurrentSize());
+        return filter;
+    }
+
+    /**
+     * The filter is mapped from the snapshot if {@code bloom.snapshot.file} exists, the mapping is private so the
+     * snapshot is only replaced by the next snapshot
+     */
+    @Bean
+    @ConditionalOnMissingBean(Filter.class)
+    public ConcurrentBloomFilter simpleBoomFilter(FilterConfig configuration,
+                                                  @Value("${bloom.snapshot.file:}") String snapshot) throws IOException {
+        if (StringUtils.isNotBlank(snapshot) && Files.exists(Paths.get(snapshot))) {
+            ConcurrentBloomFilter<?> filter = FilterSnapshots.loadConcurrentBloomFilter(Paths.get(snapshot), FileChannel.MapMode.PRIVATE);
+            log.info("filter [{}] is loaded from {}, size: {}", filter.name(), snapshot, filter.getCurrentSize());
+            return filter;
+        }
+        return ConcurrentBloomFilter.create(null, configuration);
+    }
+
+    /**
+     * Snapshot the filter every {@code bloom.snapshot.interval} and on shutdown
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("bloom.snapshot.file")
+    public SnapshotWriter snapshotWriter(Filter<?> filter,
+                                         @Value("${bloom.snapshot.file}") String snapshot,
+                                         @Value("${bloom.snapshot.interval:5m}") String interval) {
+        Path file = Paths.get(snapshot);
+        return SnapshotWriter.create(filter, file, DurationStyle.detectAndParse(interval));
+    }
+
+    /**
+     * Evict, rotate and preallocate the generations of all LRU filters in the background
+     */
+    @Bean(destroyMethod = "close")
+    public FilterMaintainer filterMaintainer(ObjectProvider<Maintainable> filters,
+                                             @Value("${bloom.maintenance.threads:1}") int threads,
+                                             @Value("${bloom.maintenance.interval:1s}") String interval) {
+        FilterMaintainer maintainer = FilterMaintainer.create(threads);
+        Duration duration = DurationStyle.detectAndParse(interval);
+        filters.orderedStream().forEach(filter -> maintainer.register(filter, duration));
+        return maintainer;
+    }
+
+    /**
+     * Export the operations, fill and estimated fpp of all filters, bound by the meter registry of actuator
+     */
     @Bean
-    @ConditionalOnMissingBean(BloomFilter.class)
-    public BloomFilter simpleBoomFilter(FilterConfig configuration) {
-        return BloomFilter.create(null, configuration);
+    public FilterMetrics filterMetrics(ObjectProvider<Filter<?>> filters) {
+        return FilterMetrics.create(filters.orderedStream().collect(Collectors.toList()));
     }
 }
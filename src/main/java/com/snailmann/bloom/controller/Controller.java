@@ -1,6 +1,6 @@
 package com.snailmann.bloom.controller;
 
-import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.basic.Filter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -14,7 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class Controller {
 
     @Autowired
-    BloomFilter<Long> boomBloomFilter;
+    Filter<Long> boomBloomFilter;
 
     @GetMapping
     public boolean contains(long id) {
@@ -0,0 +1,445 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+
+/**
+ * Immutable binary fuse filter of 8-bit fingerprints, built once from a known set of keys. A query reads 3
+ * fingerprints, about 9 bits per key for a fpp of 1 / 256 (0.4%), a key is never missed
+ * <ul>
+ *     <li>a key is the h1 of its Murmur3 128-bit hash, the same hash as {@link BloomFilter}, then mixed with the
+ *     seed of the construction</li>
+ *     <li>the 3 positions are in 3 consecutive segments, the fingerprint of a key is the xor of its 3 slots</li>
+ *     <li>put is not supported, build a new filter instead</li>
+ * </ul>
+ * The fingerprints are kept in a {@link BitStorage}, so a filter is written by {@code FilterSnapshots} and mapped
+ * back like a bloom filter
+ * <p>
+ * {@link "https://arxiv.org/abs/2201.01174"}
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class BinaryFuseFilter<E> extends BaseFilter<E> implements AutoCloseable {
+
+    private static final int ARITY = 3;
+
+    private static final int MAX_SEGMENT_LENGTH = 1 << 18;
+
+    private static final int MAX_ATTEMPTS = 100;
+
+    /**
+     * Fingerprint i is byte i % 8 of word i / 8
+     */
+    private final BitStorage fingerprints;
+
+    private final long seed;
+
+    private final int segmentLength;
+
+    private final int segmentLengthMask;
+
+    private final int segmentCountLength;
+
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private BinaryFuseFilter(String name, FilterConfig configuration, BitStorage fingerprints, long seed) {
+        super(name, configuration);
+        int size = configuration.getN();
+        Layout layout = new Layout(size);
+        if (fingerprints.bitSize() < (long) layout.arrayLength * Byte.SIZE) {
+            throw new IllegalArgumentException("storage is smaller than the fingerprints of " + size + " keys");
+        }
+        this.fingerprints = fingerprints;
+        this.seed = seed;
+        this.segmentLength = layout.segmentLength;
+        this.segmentLengthMask = layout.segmentLength - 1;
+        this.segmentCountLength = layout.segmentCount * layout.segmentLength;
+    }
+
+    /**
+     * Put is not supported
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void put(byte[] bs) {
+        throw new UnsupportedOperationException("binary fuse filter is immutable");
+    }
+
+    @Override
+    public void put(long element) {
+        throw new UnsupportedOperationException("binary fuse filter is immutable");
+    }
+
+    @Override
+    public void put(CharSequence element) {
+        throw new UnsupportedOperationException("binary fuse filter is immutable");
+    }
+
+    @Override
+    public void putAll(List<E> elements) {
+        throw new UnsupportedOperationException("binary fuse filter is immutable");
+    }
+
+    @Override
+    public boolean mightContains(byte[] bs) {
+        return mightContainsKey(murmur3.hash128(bs)[0]);
+    }
+
+    @Override
+    public boolean mightContains(long element) {
+        return mightContainsKey(murmur3.hash128(element)[0]);
+    }
+
+    @Override
+    public boolean mightContains(CharSequence element) {
+        return mightContainsKey(murmur3.hash128(element)[0]);
+    }
+
+    @Override
+    public void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        for (int i = 0; i < elements.length; i++) {
+            out[i] = mightContainsKey(hashes[i << 1]);
+        }
+    }
+
+    @Override
+    public void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        for (int i = 0; i < elements.length; i++) {
+            out[i] = mightContainsKey(hashes[i << 1]);
+        }
+    }
+
+    private boolean mightContainsKey(long key) {
+        if (segmentCountLength == 0) {
+            return false;
+        }
+        long hash = mix(key + seed);
+        int h0 = h0(hash);
+        int h1 = h0 + segmentLength ^ ((int) (hash >>> 18) & segmentLengthMask);
+        int h2 = h0 + 2 * segmentLength ^ ((int) hash & segmentLengthMask);
+        int f = fingerprintAt(h0) ^ fingerprintAt(h1) ^ fingerprintAt(h2);
+        return (byte) f == fingerprint(hash);
+    }
+
+    private int fingerprintAt(int index) {
+        return (int) (fingerprints.getWord(index >>> 3) >>> ((index & 7) << 3)) & 0xff;
+    }
+
+    private int h0(long hash) {
+        // unsigned high 64 bits of hash * segmentCountLength
+        return (int) (Math.multiplyHigh(hash, segmentCountLength) + ((hash >> 63) & segmentCountLength));
+    }
+
+    private static byte fingerprint(long hash) {
+        return (byte) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Murmur3 fmix64
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public int getCurrentSize() {
+        return config().getN();
+    }
+
+    /**
+     * Seed of the construction
+     *
+     * @return seed
+     */
+    public long seed() {
+        return this.seed;
+    }
+
+    public BitStorage storage() {
+        return this.fingerprints;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.fingerprints.close();
+    }
+
+    /**
+     * Build a filter of the keys, duplicated keys are taken once
+     *
+     * @param name     name of filter
+     * @param elements keys
+     * @return filter
+     * @throws IllegalStateException if the keys can't be mapped, practically never with distinct keys
+     */
+    public static <R> BinaryFuseFilter<R> build(String name, long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        new Murmur3DoubleHash().hash128(elements, hashes);
+        long[] keys = new long[elements.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = hashes[i << 1];
+        }
+        return buildOfKeys(name, keys);
+    }
+
+    public static <R> BinaryFuseFilter<R> build(String name, LongStream elements) {
+        return build(name, elements.toArray());
+    }
+
+    /**
+     * Build a filter of the elements, hashed the same way as {@code Filter.put(T)}
+     *
+     * @param name     name of filter
+     * @param elements elements
+     * @return filter
+     */
+    public static <R> BinaryFuseFilter<R> build(String name, List<R> elements) {
+        Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+        long[] hash = new long[2];
+        long[] keys = new long[elements.size()];
+        int i = 0;
+        for (R element : elements) {
+            murmur3.hash128(element, hash, 0);
+            keys[i++] = hash[0];
+        }
+        return buildOfKeys(name, keys);
+    }
+
+    /**
+     * Restore a filter from its fingerprints, e.g. mapped by {@code FilterSnapshots}
+     *
+     * @param name          name of filter
+     * @param configuration configuration, n is the number of keys
+     * @param storage       fingerprints
+     * @param seed          seed of the construction
+     * @return filter
+     */
+    public static <R> BinaryFuseFilter<R> restore(String name, FilterConfig configuration, BitStorage storage, long seed) {
+        return new BinaryFuseFilter<>(name, configuration, storage, seed);
+    }
+
+    private static <R> BinaryFuseFilter<R> buildOfKeys(String name, long[] keys) {
+        keys = distinct(keys);
+        int size = keys.length;
+        Layout layout = new Layout(size);
+        byte[] slots = new byte[layout.arrayLength];
+        long seed = size == 0 ? 0 : layout.assign(keys, slots);
+
+        long m = (long) layout.arrayLength * Byte.SIZE;
+        BitStorage storage = BitStorage.heap(Math.max(m, Long.SIZE));
+        for (int i = 0; i < slots.length; i++) {
+            int word = i >>> 3;
+            storage.orWord(word, (slots[i] & 0xffL) << ((i & 7) << 3));
+        }
+        FilterConfig configuration = new FilterConfig();
+        configuration.setN(size);
+        configuration.setM(m);
+        configuration.setK(ARITY);
+        configuration.setP(1d / 256);
+        configuration.setC(size == 0 ? 0 : (double) m / size);
+        return new BinaryFuseFilter<>(name, configuration, storage, seed);
+    }
+
+    private static long[] distinct(long[] keys) {
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * Segments of a filter of size keys, derived from the size only so a restored filter has the same layout
+     */
+    private static final class Layout {
+
+        private final int segmentLength;
+
+        private final int segmentCount;
+
+        private final int arrayLength;
+
+        private Layout(int size) {
+            if (size == 0) {
+                segmentLength = 0;
+                segmentCount = 0;
+                arrayLength = 0;
+                return;
+            }
+            int length = 1 << (int) Math.floor(Math.log(size) / Math.log(3.33) + 2.25);
+            segmentLength = Math.min(length, MAX_SEGMENT_LENGTH);
+            double sizeFactor = size <= 1 ? 0 : Math.max(1.125, 0.875 + 0.25 * Math.log(1000000) / Math.log(size));
+            long capacity = Math.round(size * sizeFactor);
+            long initSegmentCount = (capacity + segmentLength - 1) / segmentLength - (ARITY - 1);
+            long array = (initSegmentCount + ARITY - 1) * segmentLength;
+            long count = (array + segmentLength - 1) / segmentLength;
+            count = count <= ARITY - 1 ? 1 : count - (ARITY - 1);
+            array = (count + ARITY - 1) * segmentLength;
+            if (array > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("too many keys: " + size);
+            }
+            segmentCount = (int) count;
+            arrayLength = (int) array;
+        }
+
+        private int h0(long hash) {
+            long len = (long) segmentCount * segmentLength;
+            return (int) (Math.multiplyHigh(hash, len) + ((hash >> 63) & len));
+        }
+
+        /**
+         * Peel the 3-hypergraph of the keys and assign the fingerprints, retried with a new seed if the peeling
+         * fails
+         *
+         * @return seed
+         */
+        private long assign(long[] keys, byte[] slots) {
+            int size = keys.length;
+            int mask = segmentLength - 1;
+            long[] reverseOrder = new long[size + 1];
+            byte[] reverseH = new byte[size];
+            int[] alone = new int[arrayLength];
+            byte[] t2count = new byte[arrayLength];
+            long[] t2hash = new long[arrayLength];
+            int[] h012 = new int[5];
+            int blockBits = 1;
+            while ((1 << blockBits) < segmentCount) {
+                blockBits++;
+            }
+            int block = 1 << blockBits;
+            int[] startPos = new int[block];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                long seed = random.nextLong();
+                Arrays.fill(reverseOrder, 0, size, 0);
+                reverseOrder[size] = 1;
+                Arrays.fill(t2count, (byte) 0);
+                Arrays.fill(t2hash, 0);
+                // sort the hashes by segment, so the counts are updated segment by segment
+                for (int i = 0; i < block; i++) {
+                    startPos[i] = (int) ((long) i * size >> blockBits);
+                }
+                for (long key : keys) {
+                    long hash = mix(key + seed);
+                    int segmentIndex = (int) (hash >>> (Long.SIZE - blockBits));
+                    while (reverseOrder[startPos[segmentIndex]] != 0) {
+                        segmentIndex = (segmentIndex + 1) & (block - 1);
+                    }
+                    reverseOrder[startPos[segmentIndex]] = hash;
+                    startPos[segmentIndex]++;
+                }
+
+                boolean error = false;
+                for (int i = 0; i < size; i++) {
+                    long hash = reverseOrder[i];
+                    int h0 = h0(hash);
+                    int h1 = h0 + segmentLength ^ ((int) (hash >>> 18) & mask);
+                    int h2 = h0 + 2 * segmentLength ^ ((int) hash & mask);
+                    t2count[h0] += 4;
+                    t2hash[h0] ^= hash;
+                    t2count[h1] += 4;
+                    t2count[h1] ^= 1;
+                    t2hash[h1] ^= hash;
+                    t2count[h2] += 4;
+                    t2count[h2] ^= 2;
+                    t2hash[h2] ^= hash;
+                    // a count of 64 overflows the byte
+                    error |= (t2count[h0] & 0xff) < 4 || (t2count[h1] & 0xff) < 4 || (t2count[h2] & 0xff) < 4;
+                }
+                if (error) {
+                    continue;
+                }
+
+                int queueSize = 0;
+                for (int i = 0; i < arrayLength; i++) {
+                    alone[queueSize] = i;
+                    if ((t2count[i] >> 2) == 1) {
+                        queueSize++;
+                    }
+                }
+                int stackSize = 0;
+                while (queueSize > 0) {
+                    int index = alone[--queueSize];
+                    if ((t2count[index] >> 2) != 1) {
+                        continue;
+                    }
+                    long hash = t2hash[index];
+                    int found = t2count[index] & 3;
+                    reverseH[stackSize] = (byte) found;
+                    reverseOrder[stackSize] = hash;
+                    stackSize++;
+                    fill(h012, hash, mask);
+                    int other1 = h012[found + 1];
+                    alone[queueSize] = other1;
+                    if ((t2count[other1] >> 2) == 2) {
+                        queueSize++;
+                    }
+                    t2count[other1] -= 4;
+                    t2count[other1] ^= mod3(found + 1);
+                    t2hash[other1] ^= hash;
+
+                    int other2 = h012[found + 2];
+                    alone[queueSize] = other2;
+                    if ((t2count[other2] >> 2) == 2) {
+                        queueSize++;
+                    }
+                    t2count[other2] -= 4;
+                    t2count[other2] ^= mod3(found + 2);
+                    t2hash[other2] ^= hash;
+                }
+                if (stackSize != size) {
+                    continue;
+                }
+
+                for (int i = size - 1; i >= 0; i--) {
+                    long hash = reverseOrder[i];
+                    int found = reverseH[i];
+                    fill(h012, hash, mask);
+                    slots[h012[found]] = (byte) (fingerprint(hash) ^ slots[h012[found + 1]] ^ slots[h012[found + 2]]);
+                }
+                if (attempt > 0) {
+                    log.debug("binary fuse filter of {} keys is built after {} attempts", size, attempt + 1);
+                }
+                return seed;
+            }
+            throw new IllegalStateException("binary fuse filter can't be built of " + size + " keys");
+        }
+
+        private void fill(int[] h012, long hash, int mask) {
+            int h0 = h0(hash);
+            h012[0] = h0;
+            h012[1] = h0 + segmentLength ^ ((int) (hash >>> 18) & mask);
+            h012[2] = h0 + 2 * segmentLength ^ ((int) hash & mask);
+            h012[3] = h012[0];
+            h012[4] = h012[1];
+        }
+
+        private static int mod3(int x) {
+            return x > 2 ? x - 3 : x;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache-line blocked bloom filter, the first hash picks a 512-bit block and all k bits of an element are set in
+ * that block, so a query costs one cache miss instead of k. Blocks are stored off-heap aligned to 64 bytes,
+ * bits are set with CAS and reads take no lock
+ * <p>
+ * {@link "https://www.cs.amherst.edu/~ccmcgeoch/cs34/papers/cacheefficientbloomfilters-jea.pdf"}
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class BlockedBloomFilter<E> extends BaseFilter<E> {
+
+    /**
+     * A block is a cache line, 64 bytes = 512 bits
+     */
+    public static final int BLOCK_BITS = 512;
+
+    private static final int BLOCK_BYTES = BLOCK_BITS / B;
+
+    /**
+     * Blocks of one direct buffer, with room to align it: about 2^25 blocks, m up to 2^34 bits
+     */
+    private static final int MAX_BLOCKS = (Integer.MAX_VALUE - BLOCK_BYTES) / BLOCK_BYTES;
+
+    /**
+     * Bit position in a block is the top 9 bits of the hash
+     */
+    private static final int BLOCK_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(BLOCK_BITS);
+
+    /**
+     * Positions in a block are the top bits of a LCG seeded by h2, the top bits of a LCG are well distributed
+     */
+    private static final long LCG_MULTIPLIER = 0x5851f42d4c957f2dL;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Data field of bloom filter, aligned to cache line
+     */
+    private final ByteBuffer blocks;
+
+    private final int numOfBlocks;
+
+    /**
+     * Current number of bits 1
+     */
+    private final LongAdder bitCount;
+
+    /**
+     * Current number of elements
+     */
+    private final LongAdder currentSize;
+
+    /**
+     * Murmur3 128-bit hash, h1 picks the block and h2 the bits in the block
+     */
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private BlockedBloomFilter() {
+        this(null, FilterConfig.blockedConfig(10000, 0.00046, BLOCK_BITS));
+    }
+
+    private BlockedBloomFilter(String name, FilterConfig configuration) {
+        super(name, configuration);
+        bitCount = new LongAdder();
+        currentSize = new LongAdder();
+        murmur3.createHashes(configuration.getK());
+        long count = Math.max(1, (configuration.getM() + BLOCK_BITS - 1) / BLOCK_BITS);
+        if (count > MAX_BLOCKS) {
+            throw new IllegalArgumentException("m is too large for a blocked filter: " + configuration.getM());
+        }
+        this.numOfBlocks = (int) count;
+        this.blocks = ByteBuffer.allocateDirect(numOfBlocks * BLOCK_BYTES + BLOCK_BYTES)
+                .alignedSlice(BLOCK_BYTES)
+                .order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public void put(byte[] bs) {
+        putHash(murmur3.hash128(bs));
+    }
+
+    @Override
+    public void put(long element) {
+        putHash(murmur3.hash128(element));
+    }
+
+    @Override
+    public void put(CharSequence element) {
+        putHash(murmur3.hash128(element));
+    }
+
+    private void putHash(long[] hash) {
+        int k = murmur3.k();
+        int base = blockOffset(hash[0]);
+        long combined = hash[1];
+        long step = step(hash[0]);
+        for (int i = 0; i < k; i++) {
+            int pos = (int) (combined >>> BLOCK_SHIFT);
+            combined = combined * LCG_MULTIPLIER + step;
+            if (setBit(base + ((pos >>> 6) << 3), 1L << pos)) {
+                this.bitCount.increment();
+            }
+        }
+        this.currentSize.increment();
+    }
+
+    /**
+     * Put a batch of elements, all elements are hashed first then the blocks are written
+     *
+     * @param elements elements
+     */
+    @Override
+    public void putAll(List<E> elements) {
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    private void putHashes(long[] hashes, int count) {
+        int k = murmur3.k();
+        long changed = 0;
+        for (int j = 0; j < count; j++) {
+            long h1 = hashes[j << 1];
+            int base = blockOffset(h1);
+            long combined = hashes[(j << 1) + 1];
+            long step = step(h1);
+            for (int i = 0; i < k; i++) {
+                int pos = (int) (combined >>> BLOCK_SHIFT);
+                combined = combined * LCG_MULTIPLIER + step;
+                if (setBit(base + ((pos >>> 6) << 3), 1L << pos)) {
+                    changed++;
+                }
+            }
+        }
+        this.bitCount.add(changed);
+        this.currentSize.add(count);
+    }
+
+    @Override
+    public boolean mightContains(byte[] bs) {
+        return mightContainsHash(murmur3.hash128(bs));
+    }
+
+    @Override
+    public boolean mightContains(long element) {
+        return mightContainsHash(murmur3.hash128(element));
+    }
+
+    @Override
+    public boolean mightContains(CharSequence element) {
+        return mightContainsHash(murmur3.hash128(element));
+    }
+
+    private boolean mightContainsHash(long[] hash) {
+        int k = murmur3.k();
+        int base = blockOffset(hash[0]);
+        long combined = hash[1];
+        long step = step(hash[0]);
+        for (int i = 0; i < k; i++) {
+            int pos = (int) (combined >>> BLOCK_SHIFT);
+            combined = combined * LCG_MULTIPLIER + step;
+            long word = (long) LONGS.getVolatile(blocks, base + ((pos >>> 6) << 3));
+            if ((word & (1L << pos)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Batch query, all elements are hashed first then probed, the k bits of an element are accumulated without
+     * early exit so the block loads of different elements overlap
+     *
+     * @param elements elements want to know
+     * @param out      out[i] is {@code true} if elements[i] might be present
+     */
+    @Override
+    public void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    @Override
+    public void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    private void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        int k = murmur3.k();
+        for (int j = 0; j < count; j++) {
+            long h1 = hashes[j << 1];
+            int base = blockOffset(h1);
+            long combined = hashes[(j << 1) + 1];
+            long step = step(h1);
+            long found = 1;
+            for (int i = 0; i < k; i++) {
+                int pos = (int) (combined >>> BLOCK_SHIFT);
+                combined = combined * LCG_MULTIPLIER + step;
+                found &= (long) LONGS.getVolatile(blocks, base + ((pos >>> 6) << 3)) >>> pos;
+            }
+            out[j] = found != 0;
+        }
+    }
+
+    /**
+     * Byte offset of the block, the high 32 bits of h1 are mapped to [0, numOfBlocks) by multiply-shift
+     */
+    private int blockOffset(long h1) {
+        return (int) (((h1 >>> 32) * numOfBlocks) >>> 32) * BLOCK_BYTES;
+    }
+
+    /**
+     * Increment of the LCG, taken from the low 32 bits of h1 which don't pick the block, must be odd
+     */
+    private static long step(long h1) {
+        return Long.rotateLeft(h1, 32) | 1;
+    }
+
+    private boolean setBit(int offset, long mask) {
+        long bits;
+        do {
+            bits = (long) LONGS.getVolatile(blocks, offset);
+            if ((bits & mask) != 0) {
+                return false;
+            }
+        } while (!LONGS.compareAndSet(blocks, offset, bits, bits | mask));
+        return true;
+    }
+
+    public int getCurrentSize() {
+        return this.currentSize.intValue();
+    }
+
+    public long getBitCount() {
+        return bitCount.longValue();
+    }
+
+    public int numOfBlocks() {
+        return this.numOfBlocks;
+    }
+
+    public static <R> BlockedBloomFilter<R> create() {
+        return new BlockedBloomFilter<>();
+    }
+
+    public static <R> BlockedBloomFilter<R> create(String name, FilterConfig configuration) {
+        return new BlockedBloomFilter<>(name, configuration);
+    }
+
+    public static <R> BlockedBloomFilter<R> create(String name, int n, double p) {
+        return new BlockedBloomFilter<>(name, FilterConfig.blockedConfig(n, p, BLOCK_BITS));
+    }
+}
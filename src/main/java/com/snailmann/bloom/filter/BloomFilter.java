@@ -1,26 +1,31 @@
 package com.snailmann.bloom.filter;
 
 import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.basic.Instrumented;
 import com.snailmann.bloom.filter.config.FilterConfig;
-import com.snailmann.bloom.hash.Hash;
-import com.snailmann.bloom.hash.Murmur3Hash;
+import com.snailmann.bloom.filter.metrics.FilterStats;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import com.snailmann.bloom.utils.BloomUtils;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.atomic.LongAdder;
 
-import static com.snailmann.bloom.filter.config.FilterConfig.charset;
-
 /**
+ * Bloom filter, the bits are kept in a {@link BitStorage} on the heap, off-heap or in a memory-mapped file
+ *
  * @author liwenjie
  */
 @Slf4j
-public final class BloomFilter<E> extends BaseFilter<E> {
+public final class BloomFilter<E> extends BaseFilter<E> implements Instrumented, AutoCloseable {
 
     /**
      * Data field of bloom filter
      */
-    private byte[] bytes;
+    private final BitStorage bits;
 
     /**
      * Current number of bits 1
@@ -33,50 +38,73 @@ public final class BloomFilter<E> extends BaseFilter<E> {
     private LongAdder currentSize;
 
     /**
-     * Murmur3 hash functions
+     * Murmur3 double hashing, one 128-bit pass for all k hash functions
      */
-    private final Hash murmur3 = new Murmur3Hash();
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private final FilterStats stats = new FilterStats();
 
     private BloomFilter() {
         this(null, FilterConfig.defaultConfig());
     }
 
     private BloomFilter(String name, FilterConfig configuration) {
+        this(name, configuration, BitStorage.heap(configuration.getM()));
+    }
+
+    private BloomFilter(String name, FilterConfig configuration, BitStorage storage) {
         super(name, configuration);
+        if (storage.bitSize() < configuration.getM()) {
+            throw new IllegalArgumentException("storage is smaller than m");
+        }
         bitCount = new LongAdder();
         currentSize = new LongAdder();
         // hashes
         murmur3.createHashes(configuration.getK());
-        // fill bytes
-        this.bytes = new byte[(int) Math.ceil((double) configuration.getM() / B)];
+        this.bits = storage;
+    }
+
+    /**
+     * Put a raw element to bloom filter
+     *
+     * @param bs bytes of element
+     */
+    @Override
+    public synchronized void put(byte[] bs) {
+        long start = stats.start();
+        putIndexes(murmur3.indexes(bs, config().getM()));
+        stats.put(start);
     }
 
     /**
-     * Put a element to bloom filter
+     * Put a long element to bloom filter, its bits are hashed directly
      *
      * @param element element
      */
     @Override
-    public void put(E element) {
-        byte[] bs = element.toString().getBytes(charset());
-        put(bs);
+    public synchronized void put(long element) {
+        long start = stats.start();
+        putIndexes(murmur3.indexes(element, config().getM()));
+        stats.put(start);
     }
 
     /**
-     * Put a raw element to bloom filter
+     * Put a char sequence to bloom filter, hashed as UTF-8 without creating a String
      *
-     * @param bs bytes of element
+     * @param element element
      */
     @Override
-    public synchronized void put(byte[] bs) {
-        int m = config().getM();
-        int[] indexs = murmur3.hashes(bs, m);
-        for (int index : indexs) {
-            byte bits = this.bytes[index / B];
-            byte t = (byte) (1 << (B_MASK - (index % B)));
-            this.bytes[index / B] = (byte) (bits | t);
+    public synchronized void put(CharSequence element) {
+        long start = stats.start();
+        putIndexes(murmur3.indexes(element, config().getM()));
+        stats.put(start);
+    }
+
+    private void putIndexes(long[] indexs) {
+        int k = murmur3.k();
+        for (int i = 0; i < k; i++) {
             // bit count
-            if ((bits & t) == 0) {
+            if (this.bits.set(indexs[i])) {
                 this.bitCount.increment();
             }
         }
@@ -86,47 +114,159 @@ public final class BloomFilter<E> extends BaseFilter<E> {
     }
 
     /**
-     * Put a batch of elements to bloom filter
+     * Put a batch of elements to bloom filter, all elements are hashed first and the lock is taken once
      *
      * @param elements elements
      */
     @Override
     public void putAll(List<E> elements) {
-        for (E o : elements) {
-            try {
-                put(o);
-            } catch (Exception e) {
-                log.error("put element [{}] error", o, e);
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+        stats.puts(count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+        stats.puts(elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+        stats.puts(elements.length);
+    }
+
+    private synchronized void putHashes(long[] hashes, int count) {
+        loadHashes(hashes, count);
+    }
+
+    /**
+     * Put hashed elements without the monitor, for loaders putting from many threads. Bits are set with CAS, so
+     * bitCount counts each bit once
+     *
+     * @param hashes the j-th element is at hashes[2j] and hashes[2j + 1]
+     * @param count  number of elements
+     */
+    void loadHashes(long[] hashes, int count) {
+        long m = config().getM();
+        int k = murmur3.k();
+        long changed = 0;
+        for (int j = 0; j < count; j++) {
+            long combined = hashes[j << 1];
+            long h2 = hashes[(j << 1) + 1];
+            for (int i = 0; i < k; i++) {
+                if (this.bits.set(Murmur3DoubleHash.index(combined, m))) {
+                    changed++;
+                }
+                combined += h2;
             }
         }
+        this.bitCount.add(changed);
+        this.currentSize.add(count);
+        this.config().setCreateDate(System.currentTimeMillis());
     }
 
     /**
      * Element may have appeared in bloom filter. The probability of fpp will misjudge the non-existent element
      *
-     * @param element element
+     * @param bs bytes of element
      * @return whether element exists
      */
     @Override
-    public boolean mightContains(E element) {
-        byte[] bs = element.toString().getBytes(charset());
-        return mightContains(bs);
+    public synchronized boolean mightContains(byte[] bs) {
+        long start = stats.start();
+        return stats.query(start, mightContainsIndexes(murmur3.indexes(bs, config().getM())));
     }
 
     @Override
-    public synchronized boolean mightContains(byte[] bs) {
-        int m = config().getM();
-        int[] indexs = murmur3.hashes(bs, m);
-        for (int index : indexs) {
-            byte bits = bytes[index / B];
-            byte t = (byte) (1 << (B_MASK - (index % B)));
-            if ((bits & t) == 0) {
+    public synchronized boolean mightContains(long element) {
+        long start = stats.start();
+        return stats.query(start, mightContainsIndexes(murmur3.indexes(element, config().getM())));
+    }
+
+    @Override
+    public synchronized boolean mightContains(CharSequence element) {
+        long start = stats.start();
+        return stats.query(start, mightContainsIndexes(murmur3.indexes(element, config().getM())));
+    }
+
+    /**
+     * Batch query, all elements are hashed first, then probed under one lock. The k bits of an element are
+     * accumulated without early exit, so the loads are independent and their cache misses overlap
+     *
+     * @param elements elements want to know
+     * @param out      out[i] is {@code true} if elements[i] might be present
+     */
+    @Override
+    public void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+        stats.queries(out, elements.length);
+    }
+
+    @Override
+    public void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+        stats.queries(out, elements.length);
+    }
+
+    synchronized void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        long m = config().getM();
+        int k = murmur3.k();
+        for (int j = 0; j < count; j++) {
+            long combined = hashes[j << 1];
+            long h2 = hashes[(j << 1) + 1];
+            long found = 1;
+            for (int i = 0; i < k; i++) {
+                long index = Murmur3DoubleHash.index(combined, m);
+                combined += h2;
+                found &= bits.getWord(index >>> BitStorage.WORD_SHIFT) >>> index;
+            }
+            out[j] = found != 0;
+        }
+    }
+
+    /**
+     * Probe the k indexes of an element, e.g. an index set shared by LRU generations of the same shape, the caller holds the lock guarding the generation
+     *
+     * @param indexs indexs of the element, only the first k are read
+     * @return whether element exists
+     */
+    boolean mightContainsIndexes(long[] indexs) {
+        int k = murmur3.k();
+        for (int i = 0; i < k; i++) {
+            if (!bits.get(indexs[i])) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Probe an element by its 128-bit hash, the indexes are derived for this filter's m and k
+     */
+    boolean mightContainsHash(long h1, long h2) {
+        long m = config().getM();
+        int k = murmur3.k();
+        long combined = h1;
+        for (int i = 0; i < k; i++) {
+            if (!bits.get(Murmur3DoubleHash.index(combined, m))) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
     public int getCurrentSize() {
         return this.currentSize.intValue();
     }
@@ -135,6 +275,85 @@ public final class BloomFilter<E> extends BaseFilter<E> {
         return bitCount.longValue();
     }
 
+    /**
+     * OR the bits of another filter of the same m and k into this filter, see {@link FilterMerger}
+     *
+     * @param other filter merged from
+     * @throws IllegalArgumentException if the filters are of different m or k
+     */
+    public void mergeFrom(Filter<E> other) {
+        FilterMerger.create().mergeFrom(this, other);
+    }
+
+    /**
+     * Count the bits and elements OR-ed into the storage by a merge
+     */
+    void merged(long bits, long elements) {
+        this.bitCount.add(bits);
+        this.currentSize.add(elements);
+    }
+
+    @Override
+    public FilterStats stats() {
+        return stats;
+    }
+
+    @Override
+    public long size() {
+        return currentSize.longValue();
+    }
+
+    @Override
+    public long expectedSize() {
+        return config().getN();
+    }
+
+    @Override
+    public int numOfGenerations() {
+        return 1;
+    }
+
+    @Override
+    public double fillRatio() {
+        return (double) bitCount.longValue() / config().getM();
+    }
+
+    @Override
+    public double estimatedFpp() {
+        return BloomUtils.estimatedFpp(bitCount.longValue(), config().getM(), config().getK());
+    }
+
+    @Override
+    public double configuredFpp() {
+        return config().getP();
+    }
+
+    /**
+     * Clear the bits and counters in place, so the filter can be reused without allocating a new bitset
+     */
+    public synchronized void clear() {
+        this.bits.clear();
+        this.bitCount.reset();
+        this.currentSize.reset();
+    }
+
+    /**
+     * Get the storage of bits
+     *
+     * @return storage
+     */
+    public BitStorage storage() {
+        return this.bits;
+    }
+
+    /**
+     * Release the storage, e.g. unmap the file of a mapped storage
+     */
+    @Override
+    public void close() throws IOException {
+        bits.close();
+    }
+
     public static <R> BloomFilter<R> create() {
         return new BloomFilter<>();
     }
@@ -143,6 +362,37 @@ public final class BloomFilter<E> extends BaseFilter<E> {
         return new BloomFilter<>(name, configuration);
     }
 
+    /**
+     * Create a bloom filter on the given storage, e.g. {@link BitStorage#direct(long)} or
+     * {@link BitStorage#mapped(java.nio.file.Path, long)} for filters outside the java heap
+     *
+     * @param name          name of filter
+     * @param configuration configuration
+     * @param storage       storage of at least m bits
+     * @return bloom filter
+     */
+    public static <R> BloomFilter<R> create(String name, FilterConfig configuration, BitStorage storage) {
+        return new BloomFilter<>(name, configuration, storage);
+    }
+
+    /**
+     * Restore a filter from its bits and counts, e.g. a snapshot mapped by {@code FilterSnapshots}
+     *
+     * @param name          name of filter
+     * @param configuration configuration
+     * @param storage       storage of at least m bits
+     * @param currentSize   number of elements
+     * @param bitCount      number of bits 1
+     * @return filter
+     */
+    public static <R> BloomFilter<R> restore(String name, FilterConfig configuration, BitStorage storage,
+            long currentSize, long bitCount) {
+        BloomFilter<R> filter = new BloomFilter<>(name, configuration, storage);
+        filter.currentSize.add(currentSize);
+        filter.bitCount.add(bitCount);
+        return filter;
+    }
+
     public static <R> BloomFilter<R> create(String name, int n, double p) {
         return new BloomFilter<>(name, FilterConfig.config(n, p));
     }
@@ -150,4 +400,16 @@ public final class BloomFilter<E> extends BaseFilter<E> {
     public static <R> BloomFilter<R> create(String name, int n, int k, double b) {
         return new BloomFilter<>(name, FilterConfig.config(n, k, b));
     }
+
+    /**
+     * Create a split-block bloom filter, inserts and probes are vectorized when the vector api is available
+     *
+     * @param name name of filter
+     * @param n    expected elements
+     * @param p    fpp
+     * @return split-block bloom filter
+     */
+    public static <R> SplitBlockBloomFilter<R> createSplitBlock(String name, int n, double p) {
+        return SplitBlockBloomFilter.create(name, n, p);
+    }
 }
@@ -0,0 +1,398 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.hash.Murmur3;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Parallel loader of a {@link BloomFilter} or {@link ConcurrentBloomFilter}, for building a huge filter at start:
+ * <ul>
+ *     <li>a stream or iterator is cut into batches on the calling thread, the batches are hashed and put by the
+ *     tasks of a {@link ForkJoinPool}, at most 2 batches per worker are in flight</li>
+ *     <li>a file is split into ranges of 64 MB read by the tasks themselves, a file of lines (UTF-8, hashed as
+ *     {@code put(CharSequence)}) or of 8-byte little-endian longs (hashed as {@code put(long)})</li>
+ * </ul>
+ * The tasks OR the bits into the storage of the filter with CAS instead of merging per-thread bitsets, which would
+ * take m bits per worker. A bit is counted by the task that sets it, so bitCount and currentSize are exact
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class BulkLoader {
+
+    /**
+     * Elements hashed and put by a task
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1 << 14;
+
+    private static final long SPLIT_BYTES = 64L << 20;
+
+    private static final int READ_BUFFER = 1 << 20;
+
+    private final ForkJoinPool pool;
+
+    private final int batchSize;
+
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private BulkLoader(ForkJoinPool pool, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be more than 0");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Load the elements, hashed as {@code Filter.put(T)}
+     *
+     * @param filter   filter
+     * @param elements elements
+     * @return number of elements loaded
+     */
+    public <E> long load(Filter<E> filter, Stream<? extends E> elements) {
+        return load(filter, elements.iterator());
+    }
+
+    public <E> long load(Filter<E> filter, Iterator<? extends E> elements) {
+        HashSink sink = sinkOf(filter);
+        Batches batches = new Batches();
+        while (elements.hasNext()) {
+            Object[] batch = new Object[batchSize];
+            int size = 0;
+            while (size < batchSize && elements.hasNext()) {
+                batch[size++] = elements.next();
+            }
+            int count = size;
+            batches.submit(() -> {
+                long[] hashes = new long[count << 1];
+                int hashed = 0;
+                for (int i = 0; i < count; i++) {
+                    try {
+                        murmur3.hash128(batch[i], hashes, hashed << 1);
+                        hashed++;
+                    } catch (Exception e) {
+                        log.error("put element [{}] error", batch[i], e);
+                    }
+                }
+                sink.put(hashes, hashed);
+                return hashed;
+            });
+        }
+        return batches.join();
+    }
+
+    /**
+     * Load long elements, hashed as {@code Filter.put(long)}
+     *
+     * @param filter   filter
+     * @param elements elements
+     * @return number of elements loaded
+     */
+    public long load(Filter<?> filter, LongStream elements) {
+        HashSink sink = sinkOf(filter);
+        Batches batches = new Batches();
+        PrimitiveIterator.OfLong iterator = elements.iterator();
+        while (iterator.hasNext()) {
+            long[] batch = new long[batchSize];
+            int size = 0;
+            while (size < batchSize && iterator.hasNext()) {
+                batch[size++] = iterator.nextLong();
+            }
+            long[] keys = size == batchSize ? batch : Arrays.copyOf(batch, size);
+            batches.submit(() -> {
+                long[] hashes = new long[keys.length << 1];
+                murmur3.hash128(keys, hashes);
+                sink.put(hashes, keys.length);
+                return keys.length;
+            });
+        }
+        return batches.join();
+    }
+
+    /**
+     * Load a file of lines, a line is hashed as {@code Filter.put(CharSequence)} of its UTF-8 text. A trailing
+     * '\r' is dropped and empty lines are skipped
+     *
+     * @param filter filter
+     * @param file   file
+     * @return number of elements loaded
+     * @throws IOException if the file can't be read
+     */
+    public long loadLines(Filter<?> filter, Path file) throws IOException {
+        return loadFile(filter, file, false);
+    }
+
+    /**
+     * Load a file of 8-byte little-endian longs, hashed as {@code Filter.put(long)}
+     *
+     * @param filter filter
+     * @param file   file, its size is a multiple of 8
+     * @return number of elements loaded
+     * @throws IOException if the file can't be read
+     */
+    public long loadLongs(Filter<?> filter, Path file) throws IOException {
+        return loadFile(filter, file, true);
+    }
+
+    private long loadFile(Filter<?> filter, Path file, boolean longs) throws IOException {
+        HashSink sink = sinkOf(filter);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (longs && (size & 7) != 0) {
+                throw new IOException("size of a file of longs must be a multiple of 8: " + size);
+            }
+            LongAdder loaded = new LongAdder();
+            try {
+                pool.invoke(new FileTask(channel, 0, size, longs, sink, loaded));
+            } catch (UncheckedIOException e) {
+                // the pool may rethrow a copy of the exception of the task, the IOException is the deepest cause
+                Throwable cause = e;
+                while (!(cause instanceof IOException) && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                throw cause instanceof IOException ? (IOException) cause : new IOException(e);
+            }
+            return loaded.sum();
+        }
+    }
+
+    private static HashSink sinkOf(Filter<?> filter) {
+        if (filter instanceof BloomFilter) {
+            return ((BloomFilter<?>) filter)::loadHashes;
+        } else if (filter instanceof ConcurrentBloomFilter) {
+            return ((ConcurrentBloomFilter<?>) filter)::loadHashes;
+        }
+        throw new IllegalArgumentException("bulk load is not supported: " + filter.getClass().getName());
+    }
+
+    public static BulkLoader create() {
+        return new BulkLoader(ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+    }
+
+    public static BulkLoader create(ForkJoinPool pool) {
+        return new BulkLoader(pool, DEFAULT_BATCH_SIZE);
+    }
+
+    public static BulkLoader create(ForkJoinPool pool, int batchSize) {
+        return new BulkLoader(pool, batchSize);
+    }
+
+    private interface HashSink {
+
+        void put(long[] hashes, int count);
+    }
+
+    private interface Batch {
+
+        int run();
+    }
+
+    /**
+     * Batches in flight, the producer blocks when 2 batches per worker are waiting
+     */
+    private final class Batches {
+
+        private final Semaphore permits = new Semaphore(pool.getParallelism() * 2);
+
+        private final List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+
+        private void submit(Batch batch) {
+            permits.acquireUninterruptibly();
+            tasks.add(pool.submit(() -> {
+                try {
+                    return batch.run();
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        private long join() {
+            long loaded = 0;
+            for (ForkJoinTask<Integer> task : tasks) {
+                loaded += task.join();
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * Range [from, to) of a file, a line belongs to the range of its first byte
+     */
+    private final class FileTask extends RecursiveAction {
+
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+        private final boolean longs;
+        private final HashSink sink;
+        private final LongAdder loaded;
+
+        private FileTask(FileChannel channel, long from, long to, boolean longs, HashSink sink, LongAdder loaded) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.longs = longs;
+            this.sink = sink;
+            this.loaded = loaded;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_BYTES) {
+                // split at a multiple of 8, a long never crosses ranges
+                long middle = (from + (to - from) / 2) & ~7L;
+                invokeAll(new FileTask(channel, from, middle, longs, sink, loaded),
+                        new FileTask(channel, middle, to, longs, sink, loaded));
+                return;
+            }
+            try {
+                if (longs) {
+                    loadLongs();
+                } else {
+                    loadLines();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void loadLongs() throws IOException {
+            Reader reader = new Reader(channel, from, to);
+            long[] hashes = new long[batchSize << 1];
+            int count = 0;
+            while (reader.position < to) {
+                Murmur3.hash128(reader.readLong(), Murmur3DoubleHash.DEFAULT_SEED, hashes, count << 1);
+                if (++count == batchSize) {
+                    flush(hashes, count);
+                    count = 0;
+                }
+            }
+            flush(hashes, count);
+        }
+
+        private void loadLines() throws IOException {
+            Reader reader = new Reader(channel, from == 0 ? 0 : from - 1, channel.size());
+            if (from > 0) {
+                // the line before is of the range before, unless the byte before is its end
+                int b;
+                do {
+                    b = reader.read();
+                } while (b >= 0 && b != '\n');
+            }
+            long[] hashes = new long[batchSize << 1];
+            byte[] line = new byte[256];
+            int count = 0;
+            while (reader.position < to) {
+                int length = 0;
+                int b;
+                while ((b = reader.read()) >= 0 && b != '\n') {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length << 1);
+                    }
+                    line[length++] = (byte) b;
+                }
+                if (length > 0 && line[length - 1] == '\r') {
+                    length--;
+                }
+                if (length > 0) {
+                    Murmur3.hash128(line, 0, length, Murmur3DoubleHash.DEFAULT_SEED, hashes, count << 1);
+                    if (++count == batchSize) {
+                        flush(hashes, count);
+                        count = 0;
+                    }
+                }
+                if (b < 0) {
+                    break;
+                }
+            }
+            flush(hashes, count);
+        }
+
+        private void flush(long[] hashes, int count) {
+            if (count > 0) {
+                sink.put(hashes, count);
+                loaded.add(count);
+            }
+        }
+    }
+
+    /**
+     * Buffered positional reader of [position, limit) of a channel shared by the tasks
+     */
+    private static final class Reader {
+
+        private final FileChannel channel;
+        private final long limit;
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+        private long filled;
+
+        private Reader(FileChannel channel, long position, long limit) {
+            this.channel = channel;
+            this.position = position;
+            this.filled = position;
+            this.limit = limit;
+            buffer.limit(0);
+        }
+
+        private int read() throws IOException {
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            position++;
+            return buffer.get() & 0xff;
+        }
+
+        private long readLong() throws IOException {
+            if (buffer.remaining() < Long.BYTES) {
+                fill();
+                if (buffer.remaining() < Long.BYTES) {
+                    throw new IOException("file is truncated");
+                }
+            }
+            position += Long.BYTES;
+            return buffer.getLong();
+        }
+
+        /**
+         * Read the next block, the remaining bytes are kept
+         */
+        private boolean fill() throws IOException {
+            buffer.compact();
+            int want = (int) Math.min(buffer.remaining(), limit - filled);
+            buffer.limit(buffer.position() + want);
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, filled);
+                if (n < 0) {
+                    break;
+                }
+                filled += n;
+            }
+            buffer.flip();
+            return buffer.hasRemaining();
+        }
+    }
+}
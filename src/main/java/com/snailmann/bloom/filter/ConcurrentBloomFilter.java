@@ -0,0 +1,408 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.basic.Instrumented;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.metrics.FilterStats;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import com.snailmann.bloom.utils.BloomUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free bloom filter, bits are stored in 64-bit words and set with CAS, reads take no lock
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class ConcurrentBloomFilter<E> extends BaseFilter<E> implements Instrumented, AutoCloseable {
+
+    /**
+     * Data field of bloom filter
+     */
+    private final BitStorage words;
+
+    /**
+     * Current number of bits 1
+     */
+    private final LongAdder bitCount;
+
+    /**
+     * Current number of elements
+     */
+    private final LongAdder currentSize;
+
+    /**
+     * Murmur3 double hashing, one 128-bit pass for all k hash functions
+     */
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private final FilterStats stats = new FilterStats();
+
+    private ConcurrentBloomFilter() {
+        this(null, FilterConfig.defaultConfig());
+    }
+
+    private ConcurrentBloomFilter(String name, FilterConfig configuration) {
+        this(name, configuration, BitStorage.heap(configuration.getM()));
+    }
+
+    private ConcurrentBloomFilter(String name, FilterConfig configuration, BitStorage storage) {
+        super(name, configuration);
+        if (storage.bitSize() < configuration.getM()) {
+            throw new IllegalArgumentException("storage is smaller than m");
+        }
+        bitCount = new LongAdder();
+        currentSize = new LongAdder();
+        // hashes
+        murmur3.createHashes(configuration.getK());
+        this.words = storage;
+    }
+
+    /**
+     * Put a raw element to bloom filter
+     *
+     * @param bs bytes of element
+     */
+    @Override
+    public void put(byte[] bs) {
+        long start = stats.start();
+        putIndexes(murmur3.indexes(bs, config().getM()));
+        stats.put(start);
+    }
+
+    /**
+     * Put a long element to bloom filter, its bits are hashed directly
+     *
+     * @param element element
+     */
+    @Override
+    public void put(long element) {
+        long start = stats.start();
+        putIndexes(murmur3.indexes(element, config().getM()));
+        stats.put(start);
+    }
+
+    /**
+     * Put a char sequence to bloom filter, hashed as UTF-8 without creating a String
+     *
+     * @param element element
+     */
+    @Override
+    public void put(CharSequence element) {
+        long start = stats.start();
+        putIndexes(murmur3.indexes(element, config().getM()));
+        stats.put(start);
+    }
+
+    private void putIndexes(long[] indexs) {
+        int k = murmur3.k();
+        for (int i = 0; i < k; i++) {
+            // bit count, only the thread that flips the bit counts it
+            if (words.set(indexs[i])) {
+                this.bitCount.increment();
+            }
+        }
+        this.currentSize.increment();
+    }
+
+    /**
+     * Put a batch of elements to bloom filter, all elements are hashed first then the bits are set
+     *
+     * @param elements elements
+     */
+    @Override
+    public void putAll(List<E> elements) {
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+        stats.puts(count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+        stats.puts(elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+        stats.puts(elements.length);
+    }
+
+    /**
+     * Put hashed elements, lock-free so a loader may call it from many threads
+     *
+     * @param hashes the j-th element is at hashes[2j] and hashes[2j + 1]
+     * @param count  number of elements
+     */
+    void loadHashes(long[] hashes, int count) {
+        putHashes(hashes, count);
+    }
+
+    private void putHashes(long[] hashes, int count) {
+        long m = config().getM();
+        int k = murmur3.k();
+        long changed = 0;
+        for (int j = 0; j < count; j++) {
+            long combined = hashes[j << 1];
+            long h2 = hashes[(j << 1) + 1];
+            for (int i = 0; i < k; i++) {
+                if (words.set(Murmur3DoubleHash.index(combined, m))) {
+                    changed++;
+                }
+                combined += h2;
+            }
+        }
+        this.bitCount.add(changed);
+        this.currentSize.add(count);
+    }
+
+    /**
+     * Put an element by its 128-bit hash
+     *
+     * @return {@code true} if any bit was 0 before and this call set it
+     */
+    boolean putHash(long h1, long h2) {
+        long m = config().getM();
+        int k = murmur3.k();
+        long combined = h1;
+        int changed = 0;
+        for (int i = 0; i < k; i++) {
+            if (words.set(Murmur3DoubleHash.index(combined, m))) {
+                changed++;
+            }
+            combined += h2;
+        }
+        this.bitCount.add(changed);
+        this.currentSize.increment();
+        return changed > 0;
+    }
+
+    /**
+     * OR bits into a word, the elements of the bits are not counted
+     *
+     * @param wordIndex index of word
+     * @param bits      bits to set
+     */
+    void orWord(long wordIndex, long bits) {
+        long before = words.orWord(wordIndex, bits);
+        int changed = Long.bitCount(bits & ~before);
+        if (changed > 0) {
+            this.bitCount.add(changed);
+        }
+    }
+
+    /**
+     * Element may have appeared in bloom filter. The probability of fpp will misjudge the non-existent element
+     *
+     * @param bs bytes of element
+     * @return whether element exists
+     */
+    @Override
+    public boolean mightContains(byte[] bs) {
+        long start = stats.start();
+        return stats.query(start, mightContainsIndexes(murmur3.indexes(bs, config().getM())));
+    }
+
+    @Override
+    public boolean mightContains(long element) {
+        long start = stats.start();
+        return stats.query(start, mightContainsIndexes(murmur3.indexes(element, config().getM())));
+    }
+
+    @Override
+    public boolean mightContains(CharSequence element) {
+        long start = stats.start();
+        return stats.query(start, mightContainsIndexes(murmur3.indexes(element, config().getM())));
+    }
+
+    /**
+     * Batch query, all elements are hashed first then probed. The k bits of an element are accumulated without
+     * early exit, so the loads are independent and their cache misses overlap
+     *
+     * @param elements elements want to know
+     * @param out      out[i] is {@code true} if elements[i] might be present
+     */
+    @Override
+    public void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+        stats.queries(out, elements.length);
+    }
+
+    @Override
+    public void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+        stats.queries(out, elements.length);
+    }
+
+    void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        long m = config().getM();
+        int k = murmur3.k();
+        for (int j = 0; j < count; j++) {
+            long combined = hashes[j << 1];
+            long h2 = hashes[(j << 1) + 1];
+            long found = 1;
+            for (int i = 0; i < k; i++) {
+                long index = Murmur3DoubleHash.index(combined, m);
+                combined += h2;
+                found &= words.getWord(index >>> BitStorage.WORD_SHIFT) >>> index;
+            }
+            out[j] = found != 0;
+        }
+    }
+
+    /**
+     * Probe the k indexes of an element, e.g. an index set shared by LRU generations of the same shape
+     *
+     * @param indexs indexs of the element, only the first k are read
+     * @return whether element exists
+     */
+    boolean mightContainsIndexes(long[] indexs) {
+        int k = murmur3.k();
+        for (int i = 0; i < k; i++) {
+            if (!words.get(indexs[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Probe an element by its 128-bit hash, the indexes are derived for this filter's m and k
+     */
+    boolean mightContainsHash(long h1, long h2) {
+        long m = config().getM();
+        int k = murmur3.k();
+        long combined = h1;
+        for (int i = 0; i < k; i++) {
+            if (!words.get(Murmur3DoubleHash.index(combined, m))) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
+    public int getCurrentSize() {
+        return this.currentSize.intValue();
+    }
+
+    public long getBitCount() {
+        return bitCount.longValue();
+    }
+
+    /**
+     * OR the bits of another filter of the same m and k into this filter, see {@link FilterMerger}
+     *
+     * @param other filter merged from
+     * @throws IllegalArgumentException if the filters are of different m or k
+     */
+    public void mergeFrom(Filter<E> other) {
+        FilterMerger.create().mergeFrom(this, other);
+    }
+
+    /**
+     * Count the bits and elements OR-ed into the storage by a merge
+     */
+    void merged(long bits, long elements) {
+        this.bitCount.add(bits);
+        this.currentSize.add(elements);
+    }
+
+    @Override
+    public FilterStats stats() {
+        return stats;
+    }
+
+    @Override
+    public long size() {
+        return currentSize.longValue();
+    }
+
+    @Override
+    public long expectedSize() {
+        return config().getN();
+    }
+
+    @Override
+    public int numOfGenerations() {
+        return 1;
+    }
+
+    @Override
+    public double fillRatio() {
+        return (double) bitCount.longValue() / config().getM();
+    }
+
+    @Override
+    public double estimatedFpp() {
+        return BloomUtils.estimatedFpp(bitCount.longValue(), config().getM(), config().getK());
+    }
+
+    @Override
+    public double configuredFpp() {
+        return config().getP();
+    }
+
+    public BitStorage storage() {
+        return this.words;
+    }
+
+    @Override
+    public void close() throws IOException {
+        words.close();
+    }
+
+    public static <R> ConcurrentBloomFilter<R> create() {
+        return new ConcurrentBloomFilter<>();
+    }
+
+    public static <R> ConcurrentBloomFilter<R> create(String name, FilterConfig configuration) {
+        return new ConcurrentBloomFilter<>(name, configuration);
+    }
+
+    public static <R> ConcurrentBloomFilter<R> create(String name, FilterConfig configuration, BitStorage storage) {
+        return new ConcurrentBloomFilter<>(name, configuration, storage);
+    }
+
+    /**
+     * Restore a filter from its bits and counts, e.g. a snapshot mapped by {@code FilterSnapshots}
+     *
+     * @param name          name of filter
+     * @param configuration configuration
+     * @param storage       storage of at least m bits
+     * @param currentSize   number of elements
+     * @param bitCount      number of bits 1
+     * @return filter
+     */
+    public static <R> ConcurrentBloomFilter<R> restore(String name, FilterConfig configuration, BitStorage storage,
+            long currentSize, long bitCount) {
+        ConcurrentBloomFilter<R> filter = new ConcurrentBloomFilter<>(name, configuration, storage);
+        filter.currentSize.add(currentSize);
+        filter.bitCount.add(bitCount);
+        return filter;
+    }
+
+    public static <R> ConcurrentBloomFilter<R> create(String name, int n, double p) {
+        return new ConcurrentBloomFilter<>(name, FilterConfig.config(n, p));
+    }
+
+    public static <R> ConcurrentBloomFilter<R> create(String name, int n, int k, double b) {
+        return new ConcurrentBloomFilter<>(name, FilterConfig.config(n, k, b));
+    }
+}
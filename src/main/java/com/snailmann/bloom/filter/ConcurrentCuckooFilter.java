@@ -0,0 +1,298 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.snailmann.bloom.filter.config.FilterConfig.charset;
+
+/**
+ * Concurrent cuckoo filter, see {@link CuckooFilter}. Buckets are guarded by {@link #STRIPES} striped locks:
+ * <ul>
+ *     <li>put, remove and mightContains lock the stripes of the 2 buckets of an element in stripe order</li>
+ *     <li>a put into 2 full buckets relocates fingerprints across the table, it takes all stripes in order, so
+ *     a query never misses a fingerprint on the move</li>
+ *     <li>the stash is only changed with all stripes held</li>
+ * </ul>
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class ConcurrentCuckooFilter<E> extends BaseFilter<E> {
+
+    /**
+     * Number of striped locks, a power of 2
+     */
+    public static final int STRIPES = 64;
+
+    private final CuckooTable table;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    /**
+     * Current number of elements
+     */
+    private final LongAdder currentSize = new LongAdder();
+
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private ConcurrentCuckooFilter(String name, FilterConfig configuration) {
+        super(name, configuration);
+        this.table = new CuckooTable(configuration);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Put an element
+     *
+     * @param bs bytes of element
+     * @throws IllegalStateException if the filter is full
+     */
+    @Override
+    public void put(byte[] bs) {
+        long[] h = murmur3.hash128(bs);
+        putHash(h[0], h[1]);
+    }
+
+    @Override
+    public void put(long element) {
+        long[] h = murmur3.hash128(element);
+        putHash(h[0], h[1]);
+    }
+
+    @Override
+    public void put(CharSequence element) {
+        long[] h = murmur3.hash128(element);
+        putHash(h[0], h[1]);
+    }
+
+    /**
+     * Put a batch of elements, all elements are hashed first
+     *
+     * @param elements elements
+     * @throws IllegalStateException if the filter is full, the elements before are put
+     */
+    @Override
+    public void putAll(List<E> elements) {
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    private void putHashes(long[] hashes, int count) {
+        for (int j = 0; j < count; j++) {
+            putHash(hashes[j << 1], hashes[(j << 1) + 1]);
+        }
+    }
+
+    private void putHash(long h1, long h2) {
+        long fp = table.fingerprint(h2);
+        long i1 = table.index(h1);
+        long i2 = table.alt(i1, fp);
+        boolean inserted;
+        lock(i1, i2);
+        try {
+            inserted = table.insert(i1, i2, fp);
+        } finally {
+            unlock(i1, i2);
+        }
+        if (!inserted) {
+            // both buckets full, relocate with the whole table held
+            lockAll();
+            try {
+                inserted = table.put(i1, i2, fp);
+            } finally {
+                unlockAll();
+            }
+            if (!inserted) {
+                throw new IllegalStateException("cuckoo filter [" + name() + "] is full, size: " + getCurrentSize());
+            }
+        }
+        currentSize.increment();
+    }
+
+    /**
+     * Remove an element, see {@link #put(Object)} for how the element is hashed
+     *
+     * @param element element want to remove
+     * @return {@code true} if a fingerprint of the element is removed
+     */
+    public boolean remove(E element) {
+        if (element instanceof Long) {
+            return remove(((Long) element).longValue());
+        } else if (element instanceof Integer) {
+            return remove((long) (Integer) element);
+        } else if (element instanceof CharSequence) {
+            return remove((CharSequence) element);
+        }
+        return remove(element.toString().getBytes(charset()));
+    }
+
+    public boolean remove(byte[] bs) {
+        long[] h = murmur3.hash128(bs);
+        return removeHash(h[0], h[1]);
+    }
+
+    public boolean remove(long element) {
+        long[] h = murmur3.hash128(element);
+        return removeHash(h[0], h[1]);
+    }
+
+    public boolean remove(CharSequence element) {
+        long[] h = murmur3.hash128(element);
+        return removeHash(h[0], h[1]);
+    }
+
+    private boolean removeHash(long h1, long h2) {
+        long fp = table.fingerprint(h2);
+        long i1 = table.index(h1);
+        long i2 = table.alt(i1, fp);
+        boolean removed;
+        boolean stashed;
+        lock(i1, i2);
+        try {
+            removed = table.delete(i1, i2, fp);
+            stashed = !removed && table.stashContains(i1, i2, fp);
+        } finally {
+            unlock(i1, i2);
+        }
+        if (stashed) {
+            lockAll();
+            try {
+                // removed by another thread in between, look again with the whole table held
+                removed = table.delete(i1, i2, fp) || table.stashDelete(i1, i2, fp);
+            } finally {
+                unlockAll();
+            }
+        }
+        if (removed) {
+            currentSize.decrement();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean mightContains(byte[] bs) {
+        long[] h = murmur3.hash128(bs);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    @Override
+    public boolean mightContains(long element) {
+        long[] h = murmur3.hash128(element);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    @Override
+    public boolean mightContains(CharSequence element) {
+        long[] h = murmur3.hash128(element);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    private boolean mightContainsHash(long h1, long h2) {
+        long fp = table.fingerprint(h2);
+        long i1 = table.index(h1);
+        long i2 = table.alt(i1, fp);
+        lock(i1, i2);
+        try {
+            return table.contains(i1, i2, fp);
+        } finally {
+            unlock(i1, i2);
+        }
+    }
+
+    private void lock(long i1, long i2) {
+        int s1 = stripeOf(i1);
+        int s2 = stripeOf(i2);
+        locks[Math.min(s1, s2)].lock();
+        if (s1 != s2) {
+            locks[Math.max(s1, s2)].lock();
+        }
+    }
+
+    private void unlock(long i1, long i2) {
+        int s1 = stripeOf(i1);
+        int s2 = stripeOf(i2);
+        if (s1 != s2) {
+            locks[Math.max(s1, s2)].unlock();
+        }
+        locks[Math.min(s1, s2)].unlock();
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private static int stripeOf(long bucket) {
+        return (int) (bucket & (STRIPES - 1));
+    }
+
+    public int getCurrentSize() {
+        return currentSize.intValue();
+    }
+
+    /**
+     * Fill of the slots
+     *
+     * @return size / (numOfBuckets * 4)
+     */
+    public double loadFactor() {
+        return (double) currentSize.longValue() / (table.numOfBuckets() * CuckooTable.BUCKET_SIZE);
+    }
+
+    public long numOfBuckets() {
+        return table.numOfBuckets();
+    }
+
+    public int fingerprintBits() {
+        return table.fingerprintBits();
+    }
+
+    public static <R> ConcurrentCuckooFilter<R> create() {
+        return create(null, 10000, 0.00046);
+    }
+
+    /**
+     * Create a filter
+     *
+     * @param name          name of filter
+     * @param configuration configuration of {@link FilterConfig#cuckooConfig(int, double)}
+     * @return filter
+     */
+    public static <R> ConcurrentCuckooFilter<R> create(String name, FilterConfig configuration) {
+        return new ConcurrentCuckooFilter<>(name, configuration);
+    }
+
+    public static <R> ConcurrentCuckooFilter<R> create(String name, int n, double p) {
+        return new ConcurrentCuckooFilter<>(name, FilterConfig.cuckooConfig(n, p));
+    }
+}
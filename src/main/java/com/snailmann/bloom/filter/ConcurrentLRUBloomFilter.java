@@ -0,0 +1,476 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseLRUFilter;
+import com.snailmann.bloom.filter.basic.Instrumented;
+import com.snailmann.bloom.filter.basic.Maintainable;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.config.LRUFilterConfig;
+import com.snailmann.bloom.filter.metrics.FilterStats;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrent LRU bloom filter. The generations are {@link ConcurrentBloomFilter}s kept in a ring of maxSize slots,
+ * the ring is an immutable snapshot published by an {@link AtomicReference}:
+ * <ul>
+ *     <li>put and mightContains read the snapshot and take no lock, a queried element is hashed once for all
+ *     generations</li>
+ *     <li>rotation replaces the oldest slot in a new snapshot and publishes it with one pointer swap, rotations are
+ *     serialized so only one new generation is allocated when many writers see a full generation</li>
+ *     <li>the ttl is checked against the expiry time of the oldest generation, no scan of the generations</li>
+ * </ul>
+ * A writer that read the snapshot before a rotation may still put to the previous generation, which is still queried
+ * until it becomes the oldest and is evicted
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public class ConcurrentLRUBloomFilter<E> extends BaseLRUFilter<E> implements Maintainable, Instrumented {
+
+    private final AtomicInteger v = new AtomicInteger(0);
+
+    private final AtomicReference<Ring<E>> ring;
+
+    /**
+     * Next generation allocated in the background, taken by the next rotation
+     */
+    private final AtomicReference<ConcurrentBloomFilter<E>> spare = new AtomicReference<>();
+
+    private final Object rotateLock = new Object();
+
+    /**
+     * Maintained by a {@code FilterMaintainer}, the write path doesn't check the ttl
+     */
+    private volatile boolean scheduled;
+
+    /**
+     * Hashes a queried element once for all generations, k of the template
+     */
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private final FilterStats stats = new FilterStats();
+
+    private ConcurrentLRUBloomFilter() {
+        this(null, LRUFilterConfig.defaultConfig());
+    }
+
+    private ConcurrentLRUBloomFilter(String name, LRUFilterConfig config) {
+        super(name, config);
+        murmur3.createHashes(config.getTemplateConfig().getK());
+        Ring<E> empty = new Ring<>(newSlots(config.getMaxSize()), 0, 0, ttlMillis());
+        var first = newFilter(FilterConfig.copyOf(config.getTemplateConfig()));
+        this.ring = new AtomicReference<>(empty.push(first, ttlMillis()));
+    }
+
+    @Override
+    public void put(byte[] bs) {
+        long start = stats.start();
+        currentFilter().put(bs);
+        stats.put(start);
+    }
+
+    @Override
+    public void put(long element) {
+        long start = stats.start();
+        currentFilter().put(element);
+        stats.put(start);
+    }
+
+    @Override
+    public void put(CharSequence element) {
+        long start = stats.start();
+        currentFilter().put(element);
+        stats.put(start);
+    }
+
+    /**
+     * Put a batch of elements, the batch is split at generation boundaries and each part is put in bulk
+     *
+     * @param elements elements
+     */
+    @Override
+    public void putAll(List<E> elements) {
+        int size = elements.size();
+        int from = 0;
+        while (from < size) {
+            var filter = currentFilter();
+            int to = (int) Math.min(size, (long) from + remainingOf(filter));
+            filter.putAll(elements.subList(from, to));
+            from = to;
+        }
+        stats.puts(size);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        int from = 0;
+        while (from < elements.length) {
+            var filter = currentFilter();
+            int to = (int) Math.min(elements.length, (long) from + remainingOf(filter));
+            filter.putAll(from == 0 && to == elements.length ? elements : Arrays.copyOfRange(elements, from, to));
+            from = to;
+        }
+        stats.puts(elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        int from = 0;
+        while (from < elements.length) {
+            var filter = currentFilter();
+            int to = (int) Math.min(elements.length, (long) from + remainingOf(filter));
+            filter.putAll(from == 0 && to == elements.length ? elements : Arrays.copyOfRange(elements, from, to));
+            from = to;
+        }
+        stats.puts(elements.length);
+    }
+
+    /**
+     * Get the generation to write, rotate if the newest is full or the oldest is expired
+     *
+     * @return the newest generation
+     */
+    private ConcurrentBloomFilter<E> currentFilter() {
+        Ring<E> r = ring.get();
+        if (!scheduled && r.expiresAt != Long.MAX_VALUE && System.currentTimeMillis() >= r.expiresAt) {
+            r = evict();
+        }
+        var filter = r.newest();
+        if (filter == null || isFull(filter)) {
+            r = rotate(r);
+            filter = r.newest();
+        }
+        return filter;
+    }
+
+    private boolean isFull(ConcurrentBloomFilter<E> filter) {
+        return config.getMaxSize() > 1 && filter.getCurrentSize() >= filter.config().getN();
+    }
+
+    /**
+     * Number of elements the generation can still take before rolling
+     */
+    private int remainingOf(ConcurrentBloomFilter<E> filter) {
+        if (config.getMaxSize() <= 1) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(1, filter.config().getN() - filter.getCurrentSize());
+    }
+
+    /**
+     * Push a new generation if the ring is still the one seen by the caller and its newest generation is full
+     *
+     * @param seen ring seen by the caller
+     * @return the current ring
+     */
+    private Ring<E> rotate(Ring<E> seen) {
+        synchronized (rotateLock) {
+            Ring<E> r = ring.get();
+            if (r != seen && r.newest() != null && !isFull(r.newest())) {
+                // rotated by another writer
+                return r;
+            }
+            Ring<E> next = r.push(nextFilter(), ttlMillis());
+            ring.set(next);
+            return next;
+        }
+    }
+
+    /**
+     * Remove the expired generations
+     */
+    @Override
+    public void evictExpired() {
+        evict();
+    }
+
+    /**
+     * Roll a new generation if the newest is full, an empty filter stays empty until the next write
+     */
+    @Override
+    public void rotateIfFull() {
+        Ring<E> r = ring.get();
+        if (r.newest() != null && isFull(r.newest())) {
+            rotate(r);
+        }
+    }
+
+    @Override
+    public void preallocate() {
+        if (spare.get() == null && config.getMaxSize() > 1) {
+            spare.compareAndSet(null, newFilter(FilterConfig.copyOf(config.getTemplateConfig())));
+        }
+    }
+
+    @Override
+    public void setScheduled(boolean scheduled) {
+        this.scheduled = scheduled;
+    }
+
+    /**
+     * The preallocated generation if any, its ttl starts from now
+     */
+    private ConcurrentBloomFilter<E> nextFilter() {
+        var next = spare.getAndSet(null);
+        if (next == null) {
+            return newFilter(FilterConfig.copyOf(config.getTemplateConfig()));
+        }
+        long now = System.currentTimeMillis();
+        next.config().setCreateDate(now);
+        next.config().setModifyDate(now);
+        return next;
+    }
+
+    private Ring<E> evict() {
+        synchronized (rotateLock) {
+            Ring<E> r = ring.get();
+            long now = System.currentTimeMillis();
+            long ttl = ttlMillis();
+            while (r.count > 0 && now - r.oldest().config().getModifyDate() > ttl) {
+                r = r.poll(ttl);
+            }
+            ring.set(r);
+            return r;
+        }
+    }
+
+    @Override
+    public boolean mightContains(byte[] bs) {
+        long start = stats.start();
+        long[] h = murmur3.hash128(bs);
+        return stats.query(start, mightContainsHash(ring.get(), h[0], h[1]));
+    }
+
+    @Override
+    public boolean mightContains(long element) {
+        long start = stats.start();
+        long[] h = murmur3.hash128(element);
+        return stats.query(start, mightContainsHash(ring.get(), h[0], h[1]));
+    }
+
+    @Override
+    public boolean mightContains(CharSequence element) {
+        long start = stats.start();
+        long[] h = murmur3.hash128(element);
+        return stats.query(start, mightContainsHash(ring.get(), h[0], h[1]));
+    }
+
+    /**
+     * The element is hashed once, the generations of the template shape are probed with the same index set
+     */
+    private boolean mightContainsHash(Ring<E> r, long h1, long h2) {
+        FilterConfig template = config.getTemplateConfig();
+        long[] indexs = murmur3.indexes(h1, h2, template.getM());
+        // newest first, recent elements are found earlier
+        for (int i = r.count - 1; i >= 0; i--) {
+            var filter = r.get(i);
+            boolean found = sameIndexes(filter.config(), template)
+                    ? filter.mightContainsIndexes(indexs)
+                    : filter.mightContainsHash(h1, h2);
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+        stats.queries(out, elements.length);
+    }
+
+    @Override
+    public void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+        stats.queries(out, elements.length);
+    }
+
+    private void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        Ring<E> r = ring.get();
+        Arrays.fill(out, 0, count, false);
+        boolean[] present = new boolean[count];
+        for (int g = r.count - 1; g >= 0; g--) {
+            r.get(g).mightContainsHashes(hashes, count, present);
+            for (int i = 0; i < count; i++) {
+                out[i] |= present[i];
+            }
+        }
+    }
+
+    /**
+     * Filters of the same m and k map an element to the same indexes
+     */
+    private static boolean sameIndexes(FilterConfig a, FilterConfig b) {
+        return a.getM() == b.getM() && a.getK() == b.getK();
+    }
+
+    /**
+     * Snapshot of the generations, oldest first
+     *
+     * @return generations
+     */
+    public List<ConcurrentBloomFilter<E>> generations() {
+        Ring<E> r = ring.get();
+        List<ConcurrentBloomFilter<E>> generations = new ArrayList<>(r.count);
+        for (int i = 0; i < r.count; i++) {
+            generations.add(r.get(i));
+        }
+        return generations;
+    }
+
+    @Override
+    public int numOfGenerations() {
+        return ring.get().count;
+    }
+
+    @Override
+    public FilterStats stats() {
+        return stats;
+    }
+
+    @Override
+    public long size() {
+        Ring<E> r = ring.get();
+        long size = 0;
+        for (int i = 0; i < r.count; i++) {
+            size += r.get(i).size();
+        }
+        return size;
+    }
+
+    @Override
+    public long expectedSize() {
+        return (long) config.getTemplateConfig().getN() * config.getMaxSize();
+    }
+
+    @Override
+    public double fillRatio() {
+        var newest = ring.get().newest();
+        return newest == null ? 0 : newest.fillRatio();
+    }
+
+    /**
+     * A query is a false positive if any generation answers one, sfpp = 1 - (1 - p1)(1 - p2)...
+     */
+    @Override
+    public double estimatedFpp() {
+        Ring<E> r = ring.get();
+        double negative = 1;
+        for (int i = 0; i < r.count; i++) {
+            negative *= 1 - r.get(i).estimatedFpp();
+        }
+        return 1 - negative;
+    }
+
+    @Override
+    public double configuredFpp() {
+        return config.getSfpp();
+    }
+
+    private long ttlMillis() {
+        return config.getTtl().toMillis();
+    }
+
+    private ConcurrentBloomFilter<E> newFilter(FilterConfig configuration) {
+        return ConcurrentBloomFilter.create(String.valueOf(v.getAndIncrement()), configuration);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> ConcurrentBloomFilter<R>[] newSlots(int capacity) {
+        return new ConcurrentBloomFilter[capacity];
+    }
+
+    public static <R> ConcurrentLRUBloomFilter<R> create() {
+        return new ConcurrentLRUBloomFilter<>();
+    }
+
+    public static <R> ConcurrentLRUBloomFilter<R> create(String name, LRUFilterConfig configuration) {
+        return new ConcurrentLRUBloomFilter<>(name, configuration);
+    }
+
+    public static <R> ConcurrentLRUBloomFilter<R> create(String name, int sn, double sfpp, int maxSize) {
+        return new ConcurrentLRUBloomFilter<>(name, LRUFilterConfig.config(sn, sfpp, maxSize));
+    }
+
+    public static <R> ConcurrentLRUBloomFilter<R> create(String name, int sn, double sfpp, int maxSize, Duration ttl) {
+        return new ConcurrentLRUBloomFilter<>(name, LRUFilterConfig.config(sn, sfpp, maxSize, ttl));
+    }
+
+    /**
+     * Immutable ring of generations, slot (head + i) % capacity is the i-th oldest generation. A new ring copies at
+     * most maxSize references, the generations are shared
+     */
+    private static final class Ring<E> {
+
+        private final ConcurrentBloomFilter<E>[] slots;
+
+        private final int head;
+
+        private final int count;
+
+        /**
+         * Expiry time of the oldest generation, Long.MAX_VALUE if never
+         */
+        private final long expiresAt;
+
+        private Ring(ConcurrentBloomFilter<E>[] slots, int head, int count, long ttl) {
+            this.slots = slots;
+            this.head = head;
+            this.count = count;
+            ConcurrentBloomFilter<E> oldest = oldest();
+            if (oldest == null || ttl == LRUFilterConfig.NEVER_EXPIRED.toMillis()) {
+                this.expiresAt = Long.MAX_VALUE;
+            } else {
+                // expired if now - modifyDate > ttl, saturate instead of overflow
+                long modifyDate = oldest.config().getModifyDate();
+                this.expiresAt = ttl >= Long.MAX_VALUE - modifyDate ? Long.MAX_VALUE : modifyDate + ttl + 1;
+            }
+        }
+
+        private ConcurrentBloomFilter<E> get(int i) {
+            return slots[(head + i) % slots.length];
+        }
+
+        private ConcurrentBloomFilter<E> oldest() {
+            return count == 0 ? null : get(0);
+        }
+
+        private ConcurrentBloomFilter<E> newest() {
+            return count == 0 ? null : get(count - 1);
+        }
+
+        /**
+         * Append a generation, the oldest is dropped if the ring is full
+         */
+        private Ring<E> push(ConcurrentBloomFilter<E> filter, long ttl) {
+            ConcurrentBloomFilter<E>[] copy = slots.clone();
+            if (count == slots.length) {
+                copy[head] = filter;
+                return new Ring<>(copy, (head + 1) % slots.length, count, ttl);
+            }
+            copy[(head + count) % slots.length] = filter;
+            return new Ring<>(copy, head, count + 1, ttl);
+        }
+
+        /**
+         * Drop the oldest generation
+         */
+        private Ring<E> poll(long ttl) {
+            ConcurrentBloomFilter<E>[] copy = slots.clone();
+            copy[head] = null;
+            return new Ring<>(copy, (head + 1) % slots.length, count - 1, ttl);
+        }
+    }
+}
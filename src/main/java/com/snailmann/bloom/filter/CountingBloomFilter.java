@@ -0,0 +1,271 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.snailmann.bloom.filter.config.FilterConfig.charset;
+
+/**
+ * Counting bloom filter, each of the m positions is a 4-bit counter instead of a bit, so an element can be removed.
+ * 16 counters are packed in a long, the memory is 4 times of a {@link BloomFilter} of the same configuration:
+ * <ul>
+ *     <li>a put increments the k counters, a counter saturates at 15 and then never changes</li>
+ *     <li>a remove decrements the k counters if the element might be present, a saturated counter is not
+ *     decremented since its real count is unknown</li>
+ * </ul>
+ * Removing an element never put may remove another element, remove only what was put
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class CountingBloomFilter<E> extends BaseFilter<E> {
+
+    private static final int COUNTER_BITS = 4;
+
+    /**
+     * 16 counters in a word
+     */
+    private static final int COUNTER_SHIFT = 4;
+
+    private static final int COUNTER_MASK = (1 << COUNTER_SHIFT) - 1;
+
+    private static final long MAX_COUNT = (1 << COUNTER_BITS) - 1;
+
+    private static final int MAX_WORDS = Integer.MAX_VALUE - 8;
+
+    /**
+     * Data field of counting bloom filter, counter i is bits [4 * (i % 16), 4 * (i % 16) + 4) of words[i / 16]
+     */
+    private final long[] words;
+
+    /**
+     * Current number of elements
+     */
+    private final LongAdder currentSize = new LongAdder();
+
+    /**
+     * Number of increments lost by saturated counters
+     */
+    private final LongAdder saturated = new LongAdder();
+
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private CountingBloomFilter(String name, FilterConfig configuration) {
+        super(name, configuration);
+        long numOfWords = (configuration.getM() + COUNTER_MASK) >>> COUNTER_SHIFT;
+        if (numOfWords > MAX_WORDS) {
+            throw new IllegalArgumentException("too many counters: " + configuration.getM());
+        }
+        this.words = new long[(int) numOfWords];
+        murmur3.createHashes(configuration.getK());
+    }
+
+    @Override
+    public synchronized void put(byte[] bs) {
+        increment(murmur3.indexes(bs, config().getM()));
+    }
+
+    @Override
+    public synchronized void put(long element) {
+        increment(murmur3.indexes(element, config().getM()));
+    }
+
+    @Override
+    public synchronized void put(CharSequence element) {
+        increment(murmur3.indexes(element, config().getM()));
+    }
+
+    /**
+     * Put a batch of elements, all elements are hashed first and the lock is taken once
+     *
+     * @param elements elements
+     */
+    @Override
+    public void putAll(List<E> elements) {
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    private synchronized void putHashes(long[] hashes, int count) {
+        long m = config().getM();
+        int k = murmur3.k();
+        long lost = 0;
+        for (int j = 0; j < count; j++) {
+            long combined = hashes[j << 1];
+            long h2 = hashes[(j << 1) + 1];
+            for (int i = 0; i < k; i++) {
+                if (!incrementCounter(Murmur3DoubleHash.index(combined, m))) {
+                    lost++;
+                }
+                combined += h2;
+            }
+        }
+        saturated.add(lost);
+        currentSize.add(count);
+        config().setModifyDate(System.currentTimeMillis());
+    }
+
+    private void increment(long[] indexs) {
+        int k = murmur3.k();
+        for (int i = 0; i < k; i++) {
+            if (!incrementCounter(indexs[i])) {
+                saturated.increment();
+            }
+        }
+        currentSize.increment();
+        config().setModifyDate(System.currentTimeMillis());
+    }
+
+    /**
+     * Remove an element, see {@link #put(Object)} for how the element is hashed
+     *
+     * @param element element want to remove
+     * @return {@code true} if the element might be present and is removed
+     */
+    public boolean remove(E element) {
+        if (element instanceof Long) {
+            return remove(((Long) element).longValue());
+        } else if (element instanceof Integer) {
+            return remove((long) (Integer) element);
+        } else if (element instanceof CharSequence) {
+            return remove((CharSequence) element);
+        }
+        return remove(element.toString().getBytes(charset()));
+    }
+
+    public synchronized boolean remove(byte[] bs) {
+        return decrement(murmur3.indexes(bs, config().getM()));
+    }
+
+    public synchronized boolean remove(long element) {
+        return decrement(murmur3.indexes(element, config().getM()));
+    }
+
+    public synchronized boolean remove(CharSequence element) {
+        return decrement(murmur3.indexes(element, config().getM()));
+    }
+
+    /**
+     * Decrement the k counters if all are positive, nothing changes otherwise. The k indexes may repeat, a counter is
+     * re-read before each decrement and one already down to 0 is skipped, it would borrow from its neighbour
+     */
+    private boolean decrement(long[] indexs) {
+        if (!mightContainsIndexes(indexs)) {
+            return false;
+        }
+        int k = murmur3.k();
+        for (int i = 0; i < k; i++) {
+            long index = indexs[i];
+            long count = counter(index);
+            // a saturated counter stays, its real count is unknown
+            if (count != 0 && count != MAX_COUNT) {
+                int word = (int) (index >>> COUNTER_SHIFT);
+                words[word] -= 1L << shiftOf(index);
+            }
+        }
+        currentSize.decrement();
+        config().setModifyDate(System.currentTimeMillis());
+        return true;
+    }
+
+    @Override
+    public synchronized boolean mightContains(byte[] bs) {
+        return mightContainsIndexes(murmur3.indexes(bs, config().getM()));
+    }
+
+    @Override
+    public synchronized boolean mightContains(long element) {
+        return mightContainsIndexes(murmur3.indexes(element, config().getM()));
+    }
+
+    @Override
+    public synchronized boolean mightContains(CharSequence element) {
+        return mightContainsIndexes(murmur3.indexes(element, config().getM()));
+    }
+
+    private boolean mightContainsIndexes(long[] indexs) {
+        int k = murmur3.k();
+        for (int i = 0; i < k; i++) {
+            if (counter(indexs[i]) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Increment a counter unless saturated
+     *
+     * @return {@code false} if the counter is saturated
+     */
+    private boolean incrementCounter(long index) {
+        if (counter(index) == MAX_COUNT) {
+            return false;
+        }
+        words[(int) (index >>> COUNTER_SHIFT)] += 1L << shiftOf(index);
+        return true;
+    }
+
+    private long counter(long index) {
+        return (words[(int) (index >>> COUNTER_SHIFT)] >>> shiftOf(index)) & MAX_COUNT;
+    }
+
+    private static int shiftOf(long index) {
+        return (int) (index & COUNTER_MASK) * COUNTER_BITS;
+    }
+
+    /**
+     * Current count of a position, for tests and diagnosis
+     *
+     * @param index position in [0, m)
+     * @return count in [0, 15]
+     */
+    public synchronized int countOf(long index) {
+        return (int) counter(index);
+    }
+
+    public int getCurrentSize() {
+        return currentSize.intValue();
+    }
+
+    /**
+     * Number of increments lost by saturated counters, removes of their elements are not exact
+     *
+     * @return number of lost increments
+     */
+    public long getSaturated() {
+        return saturated.longValue();
+    }
+
+    public static <R> CountingBloomFilter<R> create() {
+        return new CountingBloomFilter<>(null, FilterConfig.defaultConfig());
+    }
+
+    public static <R> CountingBloomFilter<R> create(String name, FilterConfig configuration) {
+        return new CountingBloomFilter<>(name, configuration);
+    }
+
+    public static <R> CountingBloomFilter<R> create(String name, int n, double p) {
+        return new CountingBloomFilter<>(name, FilterConfig.config(n, p));
+    }
+}
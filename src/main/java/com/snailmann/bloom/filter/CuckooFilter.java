@@ -0,0 +1,216 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.snailmann.bloom.filter.config.FilterConfig.charset;
+
+/**
+ * Cuckoo filter, an element is an f-bit fingerprint in one of its 2 buckets of 4 slots. Below an fpp of about 3% it
+ * takes fewer bits per element than a bloom filter, a query reads 2 buckets instead of k positions and an element
+ * can be removed
+ * <ul>
+ *     <li>bucket i1 is from h1 and the fingerprint from h2 of the Murmur3 128-bit hash, i2 = (hash(fingerprint) - i1) mod numOfBuckets</li>
+ *     <li>an insert into 2 full buckets relocates fingerprints at most 500 times, then the last one goes to a stash
+ *     of 8; the filter is full when the stash is full</li>
+ *     <li>a put of the same element takes another slot, each put can be removed once</li>
+ * </ul>
+ * {@link "https://www.cs.cmu.edu/~dga/papers/cuckoo-conext2014.pdf"}
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class CuckooFilter<E> extends BaseFilter<E> {
+
+    private final CuckooTable table;
+
+    /**
+     * Current number of elements
+     */
+    private final LongAdder currentSize = new LongAdder();
+
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private CuckooFilter(String name, FilterConfig configuration) {
+        super(name, configuration);
+        this.table = new CuckooTable(configuration);
+    }
+
+    /**
+     * Put an element
+     *
+     * @param bs bytes of element
+     * @throws IllegalStateException if the filter is full
+     */
+    @Override
+    public synchronized void put(byte[] bs) {
+        long[] h = murmur3.hash128(bs);
+        putHash(h[0], h[1]);
+    }
+
+    @Override
+    public synchronized void put(long element) {
+        long[] h = murmur3.hash128(element);
+        putHash(h[0], h[1]);
+    }
+
+    @Override
+    public synchronized void put(CharSequence element) {
+        long[] h = murmur3.hash128(element);
+        putHash(h[0], h[1]);
+    }
+
+    /**
+     * Put a batch of elements, all elements are hashed first and the lock is taken once
+     *
+     * @param elements elements
+     * @throws IllegalStateException if the filter is full, the elements before are put
+     */
+    @Override
+    public void putAll(List<E> elements) {
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    private synchronized void putHashes(long[] hashes, int count) {
+        for (int j = 0; j < count; j++) {
+            putHash(hashes[j << 1], hashes[(j << 1) + 1]);
+        }
+    }
+
+    private void putHash(long h1, long h2) {
+        long fp = table.fingerprint(h2);
+        long i1 = table.index(h1);
+        if (!table.put(i1, table.alt(i1, fp), fp)) {
+            throw new IllegalStateException("cuckoo filter [" + name() + "] is full, size: " + getCurrentSize());
+        }
+        currentSize.increment();
+    }
+
+    /**
+     * Remove an element, see {@link #put(Object)} for how the element is hashed
+     *
+     * @param element element want to remove
+     * @return {@code true} if a fingerprint of the element is removed
+     */
+    public boolean remove(E element) {
+        if (element instanceof Long) {
+            return remove(((Long) element).longValue());
+        } else if (element instanceof Integer) {
+            return remove((long) (Integer) element);
+        } else if (element instanceof CharSequence) {
+            return remove((CharSequence) element);
+        }
+        return remove(element.toString().getBytes(charset()));
+    }
+
+    public synchronized boolean remove(byte[] bs) {
+        long[] h = murmur3.hash128(bs);
+        return removeHash(h[0], h[1]);
+    }
+
+    public synchronized boolean remove(long element) {
+        long[] h = murmur3.hash128(element);
+        return removeHash(h[0], h[1]);
+    }
+
+    public synchronized boolean remove(CharSequence element) {
+        long[] h = murmur3.hash128(element);
+        return removeHash(h[0], h[1]);
+    }
+
+    private boolean removeHash(long h1, long h2) {
+        long fp = table.fingerprint(h2);
+        long i1 = table.index(h1);
+        long i2 = table.alt(i1, fp);
+        if (table.delete(i1, i2, fp) || table.stashDelete(i1, i2, fp)) {
+            currentSize.decrement();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean mightContains(byte[] bs) {
+        long[] h = murmur3.hash128(bs);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    @Override
+    public synchronized boolean mightContains(long element) {
+        long[] h = murmur3.hash128(element);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    @Override
+    public synchronized boolean mightContains(CharSequence element) {
+        long[] h = murmur3.hash128(element);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    private boolean mightContainsHash(long h1, long h2) {
+        long fp = table.fingerprint(h2);
+        long i1 = table.index(h1);
+        return table.contains(i1, table.alt(i1, fp), fp);
+    }
+
+    public int getCurrentSize() {
+        return currentSize.intValue();
+    }
+
+    /**
+     * Fill of the slots
+     *
+     * @return size / (numOfBuckets * 4)
+     */
+    public double loadFactor() {
+        return (double) currentSize.longValue() / (table.numOfBuckets() * CuckooTable.BUCKET_SIZE);
+    }
+
+    public long numOfBuckets() {
+        return table.numOfBuckets();
+    }
+
+    public int fingerprintBits() {
+        return table.fingerprintBits();
+    }
+
+    public static <R> CuckooFilter<R> create() {
+        return create(null, 10000, 0.00046);
+    }
+
+    /**
+     * Create a filter
+     *
+     * @param name          name of filter
+     * @param configuration configuration of {@link FilterConfig#cuckooConfig(int, double)}
+     * @return filter
+     */
+    public static <R> CuckooFilter<R> create(String name, FilterConfig configuration) {
+        return new CuckooFilter<>(name, configuration);
+    }
+
+    public static <R> CuckooFilter<R> create(String name, int n, double p) {
+        return new CuckooFilter<>(name, FilterConfig.cuckooConfig(n, p));
+    }
+}
@@ -0,0 +1,244 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.utils.BloomUtils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bucket table of the cuckoo filters, buckets of {@link #BUCKET_SIZE} fingerprints of f bits packed in a long[],
+ * slot s is bits [s * f, s * f + f). A fingerprint is never 0, 0 is an empty slot
+ * <p>
+ * A slot is written with CAS on its words since slots of different buckets may share a word, the caller guards the
+ * buckets it touches. An insert that fails after {@link #MAX_KICKS} relocations leaves the last kicked fingerprint
+ * in a small stash, so no element is lost; the table is full when the stash is full
+ *
+ * @author liwenjie
+ */
+final class CuckooTable {
+
+    static final int BUCKET_SIZE = BloomUtils.CUCKOO_BUCKET_SIZE;
+
+    static final int MAX_KICKS = 500;
+
+    static final int STASH_SIZE = 8;
+
+    private static final int MAX_WORDS = Integer.MAX_VALUE - 8;
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] words;
+
+    private final int fingerprintBits;
+
+    private final long fingerprintMask;
+
+    private final long numOfBuckets;
+
+    private final long[] stashBuckets = new long[STASH_SIZE];
+
+    private final long[] stashFingerprints = new long[STASH_SIZE];
+
+    private int stashSize;
+
+    CuckooTable(FilterConfig configuration) {
+        long numOfBuckets = BloomUtils.optimalNumOfBuckets(configuration.getN(), BUCKET_SIZE);
+        long bits = configuration.getM();
+        if (bits % (numOfBuckets * BUCKET_SIZE) != 0) {
+            throw new IllegalArgumentException("not a cuckoo configuration, see FilterConfig.cuckooConfig");
+        }
+        this.fingerprintBits = (int) (bits / (numOfBuckets * BUCKET_SIZE));
+        if (fingerprintBits < 1 || fingerprintBits > Integer.SIZE) {
+            throw new IllegalArgumentException("fingerprint bits must be in [1, 32]: " + fingerprintBits);
+        }
+        long numOfWords = (bits + Long.SIZE - 1) / Long.SIZE;
+        if (numOfWords > MAX_WORDS) {
+            throw new IllegalArgumentException("too many buckets: " + numOfBuckets);
+        }
+        this.words = new long[(int) numOfWords];
+        this.fingerprintMask = (1L << fingerprintBits) - 1;
+        this.numOfBuckets = numOfBuckets;
+    }
+
+    long index(long h1) {
+        return reduce(h1);
+    }
+
+    /**
+     * The top f bits of h2, 0 is taken as 1
+     */
+    long fingerprint(long h2) {
+        long fp = h2 >>> (Long.SIZE - fingerprintBits);
+        return fp == 0 ? 1 : fp;
+    }
+
+    /**
+     * The other bucket of a fingerprint, (hash(fp) - i) mod numOfBuckets, so alt(alt(i, fp), fp) == i for any number
+     * of buckets
+     */
+    long alt(long bucket, long fp) {
+        long h = fp * 0xc6a4a7935bd1e995L;
+        h ^= h >>> 47;
+        long other = reduce(h) - bucket;
+        return other < 0 ? other + numOfBuckets : other;
+    }
+
+    /**
+     * Map a hash to [0, numOfBuckets) by multiply-shift instead of a modulo
+     */
+    private long reduce(long hash) {
+        return Math.multiplyHigh(hash >>> 1, numOfBuckets << 1);
+    }
+
+    boolean contains(long i1, long i2, long fp) {
+        return bucketContains(i1, fp) || bucketContains(i2, fp) || (stashSize > 0 && stashContains(i1, i2, fp));
+    }
+
+    /**
+     * Put a fingerprint to a free slot of one of its buckets
+     */
+    boolean insert(long i1, long i2, long fp) {
+        return bucketInsert(i1, fp) || bucketInsert(i2, fp);
+    }
+
+    /**
+     * Put a fingerprint, relocating others when both buckets are full. The caller guards the whole table
+     *
+     * @return {@code false} if the table is full, nothing is changed then
+     */
+    boolean put(long i1, long i2, long fp) {
+        if (insert(i1, i2, fp)) {
+            return true;
+        }
+        if (stashSize == STASH_SIZE) {
+            return false;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long bucket = random.nextBoolean() ? i1 : i2;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            long slot = bucket * BUCKET_SIZE + random.nextInt(BUCKET_SIZE);
+            long victim = get(slot);
+            set(slot, fp);
+            fp = victim;
+            bucket = alt(bucket, fp);
+            if (bucketInsert(bucket, fp)) {
+                return true;
+            }
+        }
+        stashBuckets[stashSize] = bucket;
+        stashFingerprints[stashSize] = fp;
+        stashSize++;
+        return true;
+    }
+
+    /**
+     * Remove a fingerprint from one of its buckets
+     */
+    boolean delete(long i1, long i2, long fp) {
+        return bucketDelete(i1, fp) || bucketDelete(i2, fp);
+    }
+
+    /**
+     * Remove a fingerprint from the stash. The caller guards the whole table
+     */
+    boolean stashDelete(long i1, long i2, long fp) {
+        for (int i = 0; i < stashSize; i++) {
+            long bucket = stashBuckets[i];
+            if (stashFingerprints[i] == fp && (bucket == i1 || bucket == i2)) {
+                stashSize--;
+                stashBuckets[i] = stashBuckets[stashSize];
+                stashFingerprints[i] = stashFingerprints[stashSize];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean stashContains(long i1, long i2, long fp) {
+        for (int i = 0; i < stashSize; i++) {
+            long bucket = stashBuckets[i];
+            if (stashFingerprints[i] == fp && (bucket == i1 || bucket == i2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int stashSize() {
+        return stashSize;
+    }
+
+    long numOfBuckets() {
+        return numOfBuckets;
+    }
+
+    int fingerprintBits() {
+        return fingerprintBits;
+    }
+
+    private boolean bucketContains(long bucket, long fp) {
+        long slot = bucket * BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (get(slot + i) == fp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean bucketInsert(long bucket, long fp) {
+        long slot = bucket * BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (get(slot + i) == 0) {
+                set(slot + i, fp);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean bucketDelete(long bucket, long fp) {
+        long slot = bucket * BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (get(slot + i) == fp) {
+                set(slot + i, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long get(long slot) {
+        long bit = slot * fingerprintBits;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long value = (long) WORDS.getAcquire(words, word) >>> shift;
+        if (shift + fingerprintBits > Long.SIZE) {
+            value |= (long) WORDS.getAcquire(words, word + 1) << (Long.SIZE - shift);
+        }
+        return value & fingerprintMask;
+    }
+
+    private void set(long slot, long fp) {
+        long bit = slot * fingerprintBits;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        setBits(word, fingerprintMask << shift, fp << shift);
+        if (shift + fingerprintBits > Long.SIZE) {
+            int high = Long.SIZE - shift;
+            setBits(word + 1, fingerprintMask >>> high, fp >>> high);
+        }
+    }
+
+    /**
+     * Replace the masked bits of a word, other bits may be set by the owners of other buckets at the same time
+     */
+    private void setBits(int word, long mask, long bits) {
+        long before;
+        do {
+            before = (long) WORDS.getVolatile(words, word);
+        } while (!WORDS.compareAndSet(words, word, before, (before & ~mask) | (bits & mask)));
+    }
+}
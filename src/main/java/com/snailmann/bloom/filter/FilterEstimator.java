@@ -0,0 +1,258 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Estimates of a filter from its bit population instead of its counters, which count every put including
+ * duplicates. The bits are counted a word at a time with {@link Long#bitCount(long)}, on the calling thread or split
+ * into ranges of 65536 words on a {@link ForkJoinPool}
+ * <ul>
+ *     <li>distinct elements, Swamidass–Baldi: n = -(m / k) * ln(1 - X / m), X is the number of bits 1</li>
+ *     <li>fpp of the filter as it is now: (X / m)^k</li>
+ *     <li>union of 2 filters: the estimate of the OR of the bitsets; intersection: n(A) + n(B) - n(A ∪ B)</li>
+ * </ul>
+ * An LRU filter is the union of its generations, generations of the same m and k are counted as one OR-ed bitset so
+ * an element put to many generations is counted once
+ * <p>
+ * {@link "https://doi.org/10.1021/ci600358f"}
+ *
+ * @author liwenjie
+ */
+public final class FilterEstimator {
+
+    private final WordRanges ranges;
+
+    private FilterEstimator(ForkJoinPool pool) {
+        this.ranges = new WordRanges(pool);
+    }
+
+    /**
+     * Number of bits 1 of a filter, the OR of the generations of an LRU filter
+     *
+     * @param filter filter
+     * @return bits 1
+     */
+    public long bitCount(Filter<?> filter) {
+        return read(filter, generations -> {
+            long count = 0;
+            for (List<Bits> group : groupByShape(generations)) {
+                count += bitCount(group);
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Estimated number of distinct elements, {@link Double#POSITIVE_INFINITY} if all bits are 1
+     *
+     * @param filter filter
+     * @return distinct elements
+     */
+    public double estimateSize(Filter<?> filter) {
+        return read(filter, generations -> {
+            double size = 0;
+            for (List<Bits> group : groupByShape(generations)) {
+                Bits shape = group.get(0);
+                size += size(bitCount(group), shape.m, shape.k);
+            }
+            return size;
+        });
+    }
+
+    /**
+     * Fpp of the filter as it is now, of all generations of an LRU filter
+     *
+     * @param filter filter
+     * @return fpp
+     */
+    public double estimateFpp(Filter<?> filter) {
+        return read(filter, generations -> {
+            double negative = 1;
+            for (Bits bits : generations) {
+                negative *= 1 - Math.pow((double) bitCount(List.of(bits)) / bits.m, bits.k);
+            }
+            return 1 - negative;
+        });
+    }
+
+    /**
+     * Estimated number of distinct elements of either filter
+     *
+     * @param a filter
+     * @param b filter of the same m and k
+     * @return distinct elements of a ∪ b
+     * @throws IllegalArgumentException if the filters are of different m or k
+     */
+    public double estimateUnionSize(Filter<?> a, Filter<?> b) {
+        Bits x = single(a);
+        Bits y = single(b);
+        checkCompatible(x, y);
+        return size(bitCount(List.of(x, y)), x.m, x.k);
+    }
+
+    /**
+     * Estimated number of distinct elements of both filters, n(A) + n(B) - n(A ∪ B), 0 if negative
+     *
+     * @param a filter
+     * @param b filter of the same m and k
+     * @return distinct elements of a ∩ b
+     * @throws IllegalArgumentException if the filters are of different m or k
+     */
+    public double estimateIntersectionSize(Filter<?> a, Filter<?> b) {
+        Bits x = single(a);
+        Bits y = single(b);
+        checkCompatible(x, y);
+        double union = size(bitCount(List.of(x, y)), x.m, x.k);
+        double intersection = size(bitCount(List.of(x)), x.m, x.k) + size(bitCount(List.of(y)), y.m, y.k) - union;
+        return Double.isNaN(intersection) ? Double.POSITIVE_INFINITY : Math.max(0, intersection);
+    }
+
+    /**
+     * Swamidass–Baldi estimate
+     *
+     * @param bitCount bits 1
+     * @param m        bits
+     * @param k        number of hash functions
+     * @return distinct elements
+     */
+    public static double size(long bitCount, long m, int k) {
+        if (bitCount >= m) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -((double) m / k) * Math.log1p(-(double) bitCount / m);
+    }
+
+    /**
+     * Count the bits 1 of the OR of bitsets of the same m
+     */
+    private long bitCount(List<Bits> group) {
+        long words = BitStorage.wordsOf(group.get(0).m);
+        BitStorage[] storages = new BitStorage[group.size()];
+        for (int i = 0; i < storages.length; i++) {
+            storages[i] = group.get(i).storage;
+        }
+        return ranges.run(words, (from, to) -> count(storages, from, to));
+    }
+
+    private static long count(BitStorage[] storages, long from, long to) {
+        if (storages.length == 1) {
+            return storages[0].bitCount(from, to);
+        }
+        long count = 0;
+        for (long i = from; i < to; i++) {
+            long word = 0;
+            for (BitStorage storage : storages) {
+                word |= storage.getWord(i);
+            }
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Read the bitsets of a filter, the generations of an LRU filter are pinned meanwhile so none is recycled
+     */
+    private static <R> R read(Filter<?> filter, Function<List<Bits>, R> reader) {
+        if (filter instanceof LRUBloomFilter) {
+            try (var pinned = ((LRUBloomFilter<?>) filter).pin()) {
+                List<Bits> bits = new ArrayList<>();
+                for (BloomFilter<?> generation : pinned.generations()) {
+                    bits.add(new Bits(generation.storage(), generation.config()));
+                }
+                return reader.apply(bits);
+            }
+        }
+        return reader.apply(bitsOf(filter));
+    }
+
+    private static List<Bits> bitsOf(Filter<?> filter) {
+        List<Bits> bits = new ArrayList<>();
+        if (filter instanceof BloomFilter || filter instanceof ConcurrentBloomFilter) {
+            bits.add(single(filter));
+        } else if (filter instanceof ConcurrentLRUBloomFilter) {
+            for (ConcurrentBloomFilter<?> generation : ((ConcurrentLRUBloomFilter<?>) filter).generations()) {
+                bits.add(new Bits(generation.storage(), generation.config()));
+            }
+        } else {
+            throw new IllegalArgumentException("estimate is not supported: " + filter.getClass().getName());
+        }
+        return bits;
+    }
+
+    private static Bits single(Filter<?> filter) {
+        if (filter instanceof BloomFilter) {
+            BloomFilter<?> bloom = (BloomFilter<?>) filter;
+            return new Bits(bloom.storage(), bloom.config());
+        } else if (filter instanceof ConcurrentBloomFilter) {
+            ConcurrentBloomFilter<?> bloom = (ConcurrentBloomFilter<?>) filter;
+            return new Bits(bloom.storage(), bloom.config());
+        }
+        throw new IllegalArgumentException("not a single bloom filter: " + filter.getClass().getName());
+    }
+
+    /**
+     * Generations of the same m and k, in order of first appearance
+     */
+    private static List<List<Bits>> groupByShape(List<Bits> generations) {
+        List<List<Bits>> groups = new ArrayList<>();
+        for (Bits bits : generations) {
+            List<Bits> group = null;
+            for (List<Bits> g : groups) {
+                if (g.get(0).m == bits.m && g.get(0).k == bits.k) {
+                    group = g;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+            }
+            group.add(bits);
+        }
+        return groups;
+    }
+
+    private static void checkCompatible(Bits x, Bits y) {
+        if (x.m != y.m || x.k != y.k) {
+            throw new IllegalArgumentException("filters of different m or k: " + x.m + "/" + x.k + ", " + y.m + "/" + y.k);
+        }
+    }
+
+    /**
+     * Count on the calling thread
+     */
+    public static FilterEstimator create() {
+        return new FilterEstimator(null);
+    }
+
+    /**
+     * Count on the common pool
+     */
+    public static FilterEstimator parallel() {
+        return new FilterEstimator(ForkJoinPool.commonPool());
+    }
+
+    public static FilterEstimator create(ForkJoinPool pool) {
+        return new FilterEstimator(pool);
+    }
+
+    private static final class Bits {
+
+        private final BitStorage storage;
+        private final long m;
+        private final int k;
+
+        private Bits(BitStorage storage, FilterConfig config) {
+            this.storage = storage;
+            this.m = config.getM();
+            this.k = config.getK();
+        }
+    }
+}
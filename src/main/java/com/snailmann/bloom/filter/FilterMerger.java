@@ -0,0 +1,178 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bitwise union, intersection and in-place merge of {@link BloomFilter}s and {@link ConcurrentBloomFilter}s of the
+ * same m and k, e.g. filters built by shard workers and merged centrally. The bitsets are combined a word at a time
+ * over any {@link BitStorage}, on the calling thread or split into ranges of 65536 words on a {@link ForkJoinPool}
+ * <ul>
+ *     <li>union: an element of either filter is present, the size is the sum of the sizes</li>
+ *     <li>intersection: an element of both filters is present, bits set by different elements of each filter
+ *     also match, so the fpp is higher than of a filter of the common elements only</li>
+ *     <li>merge: the words of the source are OR-ed into the target with CAS, the target may take puts meanwhile</li>
+ * </ul>
+ * The source is read without a lock, elements put to it during a merge may be missed
+ *
+ * @author liwenjie
+ */
+public final class FilterMerger {
+
+    private final WordRanges ranges;
+
+    private FilterMerger(ForkJoinPool pool) {
+        this.ranges = new WordRanges(pool);
+    }
+
+    /**
+     * A new filter of the elements of either filter, on the java heap
+     *
+     * @param name name of the new filter
+     * @param a    filter
+     * @param b    filter of the same m and k
+     * @return union
+     * @throws IllegalArgumentException if the filters are of different m or k
+     */
+    public <E> BloomFilter<E> union(String name, Filter<E> a, Filter<E> b) {
+        return union(name, a, b, BitStorage.heap(configOf(a).getM()));
+    }
+
+    /**
+     * A new filter of the elements of either filter, on the given storage
+     *
+     * @param storage empty storage of at least m bits
+     */
+    public <E> BloomFilter<E> union(String name, Filter<E> a, Filter<E> b, BitStorage storage) {
+        return combine(name, a, b, storage, false);
+    }
+
+    /**
+     * A new filter of the elements of both filters, on the java heap
+     *
+     * @param name name of the new filter
+     * @param a    filter
+     * @param b    filter of the same m and k
+     * @return intersection
+     * @throws IllegalArgumentException if the filters are of different m or k
+     */
+    public <E> BloomFilter<E> intersect(String name, Filter<E> a, Filter<E> b) {
+        return intersect(name, a, b, BitStorage.heap(configOf(a).getM()));
+    }
+
+    /**
+     * A new filter of the elements of both filters, on the given storage
+     *
+     * @param storage empty storage of at least m bits
+     */
+    public <E> BloomFilter<E> intersect(String name, Filter<E> a, Filter<E> b, BitStorage storage) {
+        return combine(name, a, b, storage, true);
+    }
+
+    /**
+     * OR the bits of the source into the target, the target then holds the elements of both
+     *
+     * @param target filter merged into
+     * @param source filter of the same m and k
+     * @throws IllegalArgumentException if the filters are of different m or k
+     */
+    public void mergeFrom(Filter<?> target, Filter<?> source) {
+        FilterConfig config = configOf(target);
+        checkCompatible(config, configOf(source));
+        BitStorage to = storageOf(target);
+        BitStorage from = storageOf(source);
+        long changed = ranges.run(BitStorage.wordsOf(config.getM()), (start, end) -> {
+            long count = 0;
+            for (long i = start; i < end; i++) {
+                long bits = from.getWord(i);
+                if (bits != 0) {
+                    count += Long.bitCount(bits & ~to.orWord(i, bits));
+                }
+            }
+            return count;
+        });
+        long size = sizeOf(source);
+        if (target instanceof BloomFilter) {
+            ((BloomFilter<?>) target).merged(changed, size);
+        } else {
+            ((ConcurrentBloomFilter<?>) target).merged(changed, size);
+        }
+    }
+
+    private <E> BloomFilter<E> combine(String name, Filter<E> a, Filter<E> b, BitStorage storage, boolean and) {
+        FilterConfig config = configOf(a);
+        checkCompatible(config, configOf(b));
+        if (storage.bitSize() < config.getM()) {
+            throw new IllegalArgumentException("storage is smaller than m");
+        }
+        BitStorage x = storageOf(a);
+        BitStorage y = storageOf(b);
+        long bitCount = ranges.run(BitStorage.wordsOf(config.getM()), (start, end) -> {
+            long count = 0;
+            for (long i = start; i < end; i++) {
+                long bits = and ? x.getWord(i) & y.getWord(i) : x.getWord(i) | y.getWord(i);
+                if (bits != 0) {
+                    storage.orWord(i, bits);
+                    count += Long.bitCount(bits);
+                }
+            }
+            return count;
+        });
+        long size = and
+                ? Math.min(Math.min(sizeOf(a), sizeOf(b)), Math.round(FilterEstimator.size(bitCount, config.getM(), config.getK())))
+                : sizeOf(a) + sizeOf(b);
+        return BloomFilter.restore(name, FilterConfig.copyOf(config), storage, size, bitCount);
+    }
+
+    private static FilterConfig configOf(Filter<?> filter) {
+        if (filter instanceof BloomFilter) {
+            return ((BloomFilter<?>) filter).config();
+        } else if (filter instanceof ConcurrentBloomFilter) {
+            return ((ConcurrentBloomFilter<?>) filter).config();
+        }
+        throw new IllegalArgumentException("merge is not supported: " + filter.getClass().getName());
+    }
+
+    private static BitStorage storageOf(Filter<?> filter) {
+        return filter instanceof BloomFilter
+                ? ((BloomFilter<?>) filter).storage()
+                : ((ConcurrentBloomFilter<?>) filter).storage();
+    }
+
+    private static long sizeOf(Filter<?> filter) {
+        return filter instanceof BloomFilter
+                ? ((BloomFilter<?>) filter).size()
+                : ((ConcurrentBloomFilter<?>) filter).size();
+    }
+
+    /**
+     * Filters of the same m and k map an element to the same bits, the hash seed is fixed
+     */
+    private static void checkCompatible(FilterConfig a, FilterConfig b) {
+        if (a.getM() != b.getM() || a.getK() != b.getK()) {
+            throw new IllegalArgumentException("filters of different m or k: " + a.getM() + "/" + a.getK() + ", "
+                    + b.getM() + "/" + b.getK());
+        }
+    }
+
+    /**
+     * Run on the calling thread
+     */
+    public static FilterMerger create() {
+        return new FilterMerger(null);
+    }
+
+    /**
+     * Run on the common pool
+     */
+    public static FilterMerger parallel() {
+        return new FilterMerger(ForkJoinPool.commonPool());
+    }
+
+    public static FilterMerger create(ForkJoinPool pool) {
+        return new FilterMerger(pool);
+    }
+}
@@ -0,0 +1,376 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis-backed bloom filter with a local replica. Reads are answered by the local {@link ConcurrentBloomFilter},
+ * writes are applied locally at once and flushed to the {@link RedisBloomFilter} in batches by a background thread.
+ * The remote bits are pulled and OR-merged into the replica periodically, so the replicas of all instances converge.
+ * <p>
+ * Only elements that set a new local bit are flushed, a bit already set locally is either pulled from redis or
+ * waiting to be flushed. An element put by a peer is seen after the next flush of the peer and the next pull here.
+ * If redis is down the pending elements are kept up to {@code maxPending} and retried, the rest are dropped. A
+ * dropped element has its local bits set, so it is never pending again: the next successful flush runs a
+ * {@link #resync()}, which ORs the local bits missing in redis back into redis. The size in redis only counts the
+ * flushed elements
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class HybridBloomFilter<E> extends BaseFilter<E> implements Closeable {
+
+    /**
+     * Words read from redis in one pipeline, 1 MB
+     */
+    private static final int PULL_WORDS = 128 * 1024;
+
+    private static final int DEFAULT_MAX_PENDING = 1 << 20;
+
+    private final ConcurrentBloomFilter<E> local;
+
+    private final RedisBloomFilter<E> remote;
+
+    private final Pending pending;
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Flushes and pulls are serialized separately, a long pull of the whole bitset doesn't hold back the flushes
+     */
+    private final Object flushLock = new Object();
+
+    private final Object pullLock = new Object();
+
+    /**
+     * Murmur3 double hashing, same as the local and remote filters
+     */
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private HybridBloomFilter(String name, FilterConfig configuration, RedisOperations<?, ?> redis,
+                              Duration flushInterval, Duration pullInterval, int maxPending) {
+        super(name, configuration);
+        this.local = ConcurrentBloomFilter.create(name, configuration);
+        this.remote = RedisBloomFilter.create(name, configuration, redis);
+        this.pending = new Pending(maxPending);
+        murmur3.createHashes(configuration.getK());
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bloom-hybrid-" + name());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flush = flushInterval.toMillis();
+        long pull = pullInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::flushQuietly, flush, flush, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::pullQuietly, 0, pull, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void put(byte[] bs) {
+        putHash(murmur3.hash128(bs));
+    }
+
+    @Override
+    public void put(long element) {
+        putHash(murmur3.hash128(element));
+    }
+
+    @Override
+    public void put(CharSequence element) {
+        putHash(murmur3.hash128(element));
+    }
+
+    private void putHash(long[] hash) {
+        if (local.putHash(hash[0], hash[1])) {
+            pending.add(hash[0], hash[1]);
+        }
+    }
+
+    @Override
+    public void putAll(List<E> elements) {
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    private void putHashes(long[] hashes, int count) {
+        int changed = 0;
+        for (int j = 0; j < count; j++) {
+            long h1 = hashes[j << 1];
+            long h2 = hashes[(j << 1) + 1];
+            if (local.putHash(h1, h2)) {
+                // compact the changed elements to the front
+                hashes[changed << 1] = h1;
+                hashes[(changed << 1) + 1] = h2;
+                changed++;
+            }
+        }
+        pending.addAll(hashes, changed);
+    }
+
+    @Override
+    public boolean mightContains(byte[] bs) {
+        return local.mightContains(bs);
+    }
+
+    @Override
+    public boolean mightContains(long element) {
+        return local.mightContains(element);
+    }
+
+    @Override
+    public boolean mightContains(CharSequence element) {
+        return local.mightContains(element);
+    }
+
+    @Override
+    public void mightContainsAll(long[] elements, boolean[] out) {
+        local.mightContainsAll(elements, out);
+    }
+
+    @Override
+    public void mightContainsAll(byte[][] elements, boolean[] out) {
+        local.mightContainsAll(elements, out);
+    }
+
+    /**
+     * Flush the pending elements to redis in one pipeline, they are kept for the next flush if it fails. Resync if
+     * elements were dropped
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            long[] hashes = pending.drain();
+            int count = hashes.length >>> 1;
+            if (count > 0) {
+                try {
+                    remote.putHashes(hashes, count);
+                } catch (RuntimeException e) {
+                    pending.addAll(hashes, count);
+                    throw e;
+                }
+            }
+            if (pending.takeDropped()) {
+                try {
+                    resync();
+                } catch (RuntimeException e) {
+                    pending.markDropped();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * OR the local bits missing in redis into redis, after elements were dropped or the redis keys were lost. Every
+     * local bit is set by an element put to this instance or pulled from redis, so redis then holds all of them
+     */
+    public void resync() {
+        synchronized (pullLock) {
+            BitStorage storage = local.storage();
+            long words = remote.numOfWords();
+            for (long from = 0; from < words; from += PULL_WORDS) {
+                int count = (int) Math.min(PULL_WORDS, words - from);
+                long[] missing = remote.getWords(from, count);
+                for (int i = 0; i < count; i++) {
+                    missing[i] = storage.getWord(from + i) & ~missing[i];
+                }
+                remote.orWords(from, missing, count);
+            }
+            log.info("filter [{}] resynced to redis", name());
+        }
+    }
+
+    /**
+     * Pull the bits of redis and OR them into the local replica, the words are OR-ed with CAS so puts and flushes
+     * go on meanwhile
+     */
+    public void pull() {
+        synchronized (pullLock) {
+            long words = remote.numOfWords();
+            for (long from = 0; from < words; from += PULL_WORDS) {
+                int count = (int) Math.min(PULL_WORDS, words - from);
+                long[] remoteWords = remote.getWords(from, count);
+                for (int i = 0; i < count; i++) {
+                    if (remoteWords[i] != 0) {
+                        local.orWord(from + i, remoteWords[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("flush filter [{}] error, pending: {}", name(), pending.size(), e);
+        }
+    }
+
+    private void pullQuietly() {
+        try {
+            pull();
+        } catch (Exception e) {
+            log.error("pull filter [{}] error", name(), e);
+        }
+    }
+
+    /**
+     * Number of elements put to this instance
+     *
+     * @return current size
+     */
+    public int getCurrentSize() {
+        return local.getCurrentSize();
+    }
+
+    public long getBitCount() {
+        return local.getBitCount();
+    }
+
+    /**
+     * Number of elements waiting to be flushed
+     *
+     * @return pending
+     */
+    public int numOfPending() {
+        return pending.size();
+    }
+
+    public ConcurrentBloomFilter<E> local() {
+        return this.local;
+    }
+
+    public RedisBloomFilter<E> remote() {
+        return this.remote;
+    }
+
+    /**
+     * Stop the background thread and flush the pending elements
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    public static <R> HybridBloomFilter<R> create(String name, FilterConfig configuration, RedisOperations<?, ?> redis,
+                                                  Duration flushInterval, Duration pullInterval) {
+        return new HybridBloomFilter<>(name, configuration, redis, flushInterval, pullInterval, DEFAULT_MAX_PENDING);
+    }
+
+    public static <R> HybridBloomFilter<R> create(String name, FilterConfig configuration, RedisOperations<?, ?> redis,
+                                                  Duration flushInterval, Duration pullInterval, int maxPending) {
+        return new HybridBloomFilter<>(name, configuration, redis, flushInterval, pullInterval, maxPending);
+    }
+
+    /**
+     * Hashes of the elements waiting to be flushed, h1 and h2 of an element are adjacent
+     */
+    private static final class Pending {
+
+        private final int maxPending;
+
+        private long[] hashes = new long[64];
+
+        private int size;
+
+        private long dropped;
+
+        /**
+         * Elements were dropped since the last resync
+         */
+        private boolean lost;
+
+        private Pending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+
+        private synchronized void add(long h1, long h2) {
+            if (size >= maxPending) {
+                drop(1);
+                return;
+            }
+            ensureCapacity(size + 1);
+            hashes[size << 1] = h1;
+            hashes[(size << 1) + 1] = h2;
+            size++;
+        }
+
+        private synchronized void addAll(long[] elements, int count) {
+            int accepted = Math.max(0, Math.min(count, maxPending - size));
+            if (accepted < count) {
+                drop(count - accepted);
+            }
+            ensureCapacity(size + accepted);
+            System.arraycopy(elements, 0, hashes, size << 1, accepted << 1);
+            size += accepted;
+        }
+
+        private void ensureCapacity(int elements) {
+            if (elements << 1 > hashes.length) {
+                hashes = Arrays.copyOf(hashes, Math.max(elements << 1, hashes.length << 1));
+            }
+        }
+
+        private void drop(int count) {
+            // log once in a while, a dropped element is missing in redis until the next resync
+            lost = true;
+            if (dropped / 10000 != (dropped + count) / 10000 || dropped == 0) {
+                log.warn("too many pending elements, dropped: {}", dropped + count);
+            }
+            dropped += count;
+        }
+
+        private synchronized boolean takeDropped() {
+            boolean dropped = lost;
+            lost = false;
+            return dropped;
+        }
+
+        private synchronized void markDropped() {
+            lost = true;
+        }
+
+        private synchronized long[] drain() {
+            long[] drained = Arrays.copyOf(hashes, size << 1);
+            size = 0;
+            return drained;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+    }
+}
@@ -1,57 +1,126 @@
 package com.snailmann.bloom.filter;
 
 import com.snailmann.bloom.filter.basic.BaseLRUFilter;
+import com.snailmann.bloom.filter.basic.Instrumented;
+import com.snailmann.bloom.filter.basic.Maintainable;
 import com.snailmann.bloom.filter.config.FilterConfig;
 import com.snailmann.bloom.filter.config.LRUFilterConfig;
+import com.snailmann.bloom.filter.metrics.FilterStats;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static com.snailmann.bloom.filter.config.FilterConfig.charset;
-
 /**
  * @author liwenjie
  */
 @Slf4j
-public class LRUBloomFilter<E> extends BaseLRUFilter<E> {
+public class LRUBloomFilter<E> extends BaseLRUFilter<E> implements Maintainable, Instrumented {
 
     private AtomicInteger v = new AtomicInteger(0);
     private List<BloomFilter<E>> filters;
 
+    /**
+     * Next generation allocated in the background or recycled from an evicted one, taken by the next rotation
+     */
+    private BloomFilter<E> spare;
+
+    /**
+     * The spare is an evicted generation not cleared yet, it is cleared by {@link #preallocate()} before reuse
+     */
+    private boolean spareDirty;
+
+    /**
+     * Pins of the generations read by a snapshot or an estimate, see {@link #pin()}
+     */
+    private final Map<BloomFilter<E>, Integer> pins = new IdentityHashMap<>();
+
+    /**
+     * Generations evicted while pinned, recycled when the last pin is closed
+     */
+    private final Set<BloomFilter<E>> evictedPinned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Maintained by a {@code FilterMaintainer}, the write path doesn't evict
+     */
+    private volatile boolean scheduled;
+
+    /**
+     * Hashes a queried element once for all generations, k of the template
+     */
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private final FilterStats stats = new FilterStats();
+
     private LRUBloomFilter() {
         this(null, LRUFilterConfig.defaultConfig());
     }
 
     private LRUBloomFilter(String name, LRUFilterConfig config) {
         super(name, config);
+        murmur3.createHashes(config.getTemplateConfig().getK());
         this.filters = new ArrayList<>(config.getMaxSize());
         FilterConfig template = config.getTemplateConfig();
         for (int i = 0; i < config.getSize(); i++) {
             String childName = String.valueOf(v.incrementAndGet());
-            this.filters.add(BloomFilter.create(childName, template));
+            this.filters.add(BloomFilter.create(childName, FilterConfig.copyOf(template)));
         }
     }
 
-    @Override
-    public void put(E element) {
-        byte[] bs = element.toString().getBytes(charset());
-        put(bs);
+    private LRUBloomFilter(String name, LRUFilterConfig config, List<BloomFilter<E>> generations, int version) {
+        super(name, config);
+        murmur3.createHashes(config.getTemplateConfig().getK());
+        this.filters = new ArrayList<>(Math.max(config.getMaxSize(), generations.size()));
+        this.filters.addAll(generations);
+        this.v.set(version);
     }
 
     @Override
     public synchronized void put(byte[] bs) {
+        long start = stats.start();
+        currentFilter().put(bs);
+        stats.put(start);
+    }
+
+    @Override
+    public synchronized void put(long element) {
+        long start = stats.start();
+        currentFilter().put(element);
+        stats.put(start);
+    }
+
+    @Override
+    public synchronized void put(CharSequence element) {
+        long start = stats.start();
+        currentFilter().put(element);
+        stats.put(start);
+    }
+
+    /**
+     * Get the filter to write, expired filters are removed and a new filter is rolled when the last is full
+     *
+     * @return the newest filter
+     */
+    private BloomFilter<E> currentFilter() {
         // remove expired filter
-        removeInvaild();
+        if (!scheduled) {
+            removeInvaild();
+        }
 
         // initialize filter
         if (CollectionUtils.isEmpty(filters)) {
             log.info("new filter");
             FilterConfig c = FilterConfig.copyOf(this.config.templateConfig);
-            var newFilter = newFilter(c);
+            var newFilter = nextFilter(c);
             filters.add(newFilter);
         }
         // filter
@@ -60,62 +129,360 @@ public class LRUBloomFilter<E> extends BaseLRUFilter<E> {
             var filter = filters.get(size - 1);
             if (filter.getCurrentSize() >= filter.config().getN()) {
                 if (size >= config.getMaxSize()) {
-                    filters.remove(0);
+                    recycle(filters.remove(0));
                 }
                 FilterConfig config = FilterConfig.copyOf(filter.config());
-                var newFilter = newFilter(config);
+                var newFilter = nextFilter(config);
                 filters.add(newFilter);
             }
         }
-        var filter = filters.get(size - 1);
-        filter.put(bs);
+        return filters.get(filters.size() - 1);
     }
 
+    /**
+     * Put a batch of elements, the lock is taken once and the batch is split at generation boundaries, each part is
+     * put to its generation in bulk
+     *
+     * @param elements elements
+     */
     @Override
     public synchronized void putAll(List<E> elements) {
-        for (E o : elements) {
-            try {
-                put(o);
-            } catch (Exception e) {
-                log.error("put a element [{}] error", o, e);
-            }
+        int size = elements.size();
+        int from = 0;
+        while (from < size) {
+            var filter = currentFilter();
+            int to = (int) Math.min(size, (long) from + remainingOf(filter));
+            filter.putAll(elements.subList(from, to));
+            from = to;
         }
+        stats.puts(size);
     }
 
     @Override
-    public boolean mightContains(E element) {
-        byte[] bs = element.toString().getBytes(charset());
-        return mightContains(bs);
+    public synchronized void putAll(long[] elements) {
+        int from = 0;
+        while (from < elements.length) {
+            var filter = currentFilter();
+            int to = (int) Math.min(elements.length, (long) from + remainingOf(filter));
+            filter.putAll(from == 0 && to == elements.length ? elements : Arrays.copyOfRange(elements, from, to));
+            from = to;
+        }
+        stats.puts(elements.length);
     }
 
     @Override
-    public synchronized boolean mightContains(byte[] bs) {
-        if (CollectionUtils.isEmpty(filters)) {
-            return false;
+    public synchronized void putAll(byte[][] elements) {
+        int from = 0;
+        while (from < elements.length) {
+            var filter = currentFilter();
+            int to = (int) Math.min(elements.length, (long) from + remainingOf(filter));
+            filter.putAll(from == 0 && to == elements.length ? elements : Arrays.copyOfRange(elements, from, to));
+            from = to;
         }
-        for (var filter : filters) {
-            boolean flag = filter.mightContains(bs);
-            if (flag) {
+        stats.puts(elements.length);
+    }
+
+    /**
+     * Number of elements the generation can still take before rolling
+     */
+    private int remainingOf(BloomFilter<E> filter) {
+        if (config.getMaxSize() <= 1) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(1, filter.config().getN() - filter.getCurrentSize());
+    }
+
+    @Override
+    public synchronized boolean mightContains(byte[] bs) {
+        long start = stats.start();
+        long[] h = murmur3.hash128(bs);
+        return stats.query(start, mightContainsHash(h[0], h[1]));
+    }
+
+    @Override
+    public synchronized boolean mightContains(long element) {
+        long start = stats.start();
+        long[] h = murmur3.hash128(element);
+        return stats.query(start, mightContainsHash(h[0], h[1]));
+    }
+
+    @Override
+    public synchronized boolean mightContains(CharSequence element) {
+        long start = stats.start();
+        long[] h = murmur3.hash128(element);
+        return stats.query(start, mightContainsHash(h[0], h[1]));
+    }
+
+    /**
+     * The element is hashed once, the generations of the template shape are probed with the same index set, newest
+     * first. A generation of another shape, e.g. restored from an older configuration, derives its own indexes from
+     * the same hash
+     */
+    private boolean mightContainsHash(long h1, long h2) {
+        FilterConfig template = config.getTemplateConfig();
+        long[] indexs = murmur3.indexes(h1, h2, template.getM());
+        for (int i = filters.size() - 1; i >= 0; i--) {
+            var filter = filters.get(i);
+            boolean found = sameIndexes(filter.config(), template)
+                    ? filter.mightContainsIndexes(indexs)
+                    : filter.mightContainsHash(h1, h2);
+            if (found) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Batch query, the elements are hashed once for all generations
+     */
+    @Override
+    public synchronized void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+        stats.queries(out, elements.length);
+    }
+
+    @Override
+    public synchronized void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+        stats.queries(out, elements.length);
+    }
+
+    private void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        Arrays.fill(out, 0, count, false);
+        boolean[] present = new boolean[count];
+        for (int g = filters.size() - 1; g >= 0; g--) {
+            filters.get(g).mightContainsHashes(hashes, count, present);
+            for (int i = 0; i < count; i++) {
+                out[i] |= present[i];
+            }
+        }
+    }
+
     private void removeInvaild() {
         long timestamp = System.currentTimeMillis();
-        filters.removeIf(filter -> {
+        var ttl = config.getTtl().toMillis();
+        for (var iterator = filters.iterator(); iterator.hasNext(); ) {
+            var filter = iterator.next();
             var u = filter.config().getModifyDate();
-            var ttl = config.getTtl().toMillis();
             // Note: Do not compare "ttl + u < timestamp", which will cause long overflow
-            return timestamp - u > ttl;
-        });
+            if (timestamp - u > ttl) {
+                iterator.remove();
+                recycle(filter);
+            }
+        }
+    }
+
+    /**
+     * Keep an evicted generation as the dirty spare if recycling is on and a maintainer clears it, a pinned one is
+     * kept once unpinned
+     */
+    private void recycle(BloomFilter<E> evicted) {
+        if (pins.containsKey(evicted)) {
+            evictedPinned.add(evicted);
+            return;
+        }
+        if (config.isRecycle() && scheduled && spare == null) {
+            spare = evicted;
+            spareDirty = true;
+        }
+    }
+
+    @Override
+    public synchronized void evictExpired() {
+        removeInvaild();
+    }
+
+    /**
+     * Roll a new generation if the newest is full, an empty filter stays empty until the next write
+     */
+    @Override
+    public synchronized void rotateIfFull() {
+        if (!filters.isEmpty()) {
+            currentFilter();
+        }
+    }
+
+    /**
+     * Allocate the next generation, or clear the recycled one, outside the lock so writers don't wait for it
+     */
+    @Override
+    public void preallocate() {
+        BloomFilter<E> dirty;
+        synchronized (this) {
+            if (config.getMaxSize() <= 1 || (spare != null && !spareDirty)) {
+                return;
+            }
+            // take the dirty spare out while clearing it
+            dirty = spare;
+            spare = null;
+            spareDirty = false;
+        }
+        BloomFilter<E> next;
+        if (dirty != null) {
+            dirty.clear();
+            next = dirty;
+        } else {
+            next = newFilter(FilterConfig.copyOf(config.getTemplateConfig()));
+        }
+        synchronized (this) {
+            if (spare == null) {
+                spare = next;
+            }
+        }
+    }
+
+    /**
+     * Without a maintainer nothing clears a dirty spare, it is dropped
+     */
+    @Override
+    public synchronized void setScheduled(boolean scheduled) {
+        this.scheduled = scheduled;
+        if (!scheduled && spareDirty) {
+            spare = null;
+            spareDirty = false;
+        }
+    }
+
+    /**
+     * The preallocated or cleared spare if any, its ttl starts from now. A dirty spare is never cleared here, on the
+     * write path, a new generation is allocated until the maintainer has cleared it
+     */
+    private BloomFilter<E> nextFilter(FilterConfig configuration) {
+        var next = spare;
+        if (next == null || spareDirty || !sameShape(next.config(), configuration)) {
+            return newFilter(configuration);
+        }
+        spare = null;
+        long now = System.currentTimeMillis();
+        next.config().setCreateDate(now);
+        next.config().setModifyDate(now);
+        return next;
+    }
+
+    private static boolean sameShape(FilterConfig a, FilterConfig b) {
+        return a.getN() == b.getN() && sameIndexes(a, b);
+    }
+
+    /**
+     * Filters of the same m and k map an element to the same indexes
+     */
+    private static boolean sameIndexes(FilterConfig a, FilterConfig b) {
+        return a.getM() == b.getM() && a.getK() == b.getK();
     }
 
     private BloomFilter<E> newFilter(FilterConfig configuration) {
         return BloomFilter.create(String.valueOf(v.getAndIncrement()), configuration);
     }
 
+    @Override
+    public FilterStats stats() {
+        return stats;
+    }
+
+    @Override
+    public synchronized long size() {
+        long size = 0;
+        for (var filter : filters) {
+            size += filter.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long expectedSize() {
+        return (long) config.getTemplateConfig().getN() * config.getMaxSize();
+    }
+
+    @Override
+    public synchronized int numOfGenerations() {
+        return filters.size();
+    }
+
+    @Override
+    public synchronized double fillRatio() {
+        return filters.isEmpty() ? 0 : filters.get(filters.size() - 1).fillRatio();
+    }
+
+    /**
+     * A query is a false positive if any generation answers one, sfpp = 1 - (1 - p1)(1 - p2)...
+     */
+    @Override
+    public synchronized double estimatedFpp() {
+        double negative = 1;
+        for (var filter : filters) {
+            negative *= 1 - filter.estimatedFpp();
+        }
+        return 1 - negative;
+    }
+
+    @Override
+    public double configuredFpp() {
+        return config.getSfpp();
+    }
+
+    /**
+     * Snapshot of the generations, oldest first. The generations are live and not pinned, with recycling on a
+     * generation evicted later may be cleared while the caller holds it, read the bits through {@link #pin()}
+     *
+     * @return generations
+     */
+    public synchronized List<BloomFilter<E>> generations() {
+        return new ArrayList<>(filters);
+    }
+
+    /**
+     * Pin the generations for a reader of their bits, e.g. a snapshot or an estimate. A pinned generation evicted
+     * meanwhile is not recycled until the pin is closed, so its bits are only set while they are read
+     *
+     * @return pinned generations, close it when done
+     */
+    public synchronized Pinned pin() {
+        List<BloomFilter<E>> pinned = new ArrayList<>(filters);
+        for (var filter : pinned) {
+            pins.merge(filter, 1, Integer::sum);
+        }
+        return new Pinned(pinned);
+    }
+
+    private synchronized void unpin(List<BloomFilter<E>> pinned) {
+        for (var filter : pinned) {
+            if (pins.merge(filter, -1, Integer::sum) == 0) {
+                pins.remove(filter);
+                if (evictedPinned.remove(filter)) {
+                    recycle(filter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Next generation number, the name of the next generation
+     *
+     * @return version
+     */
+    public int version() {
+        return v.get();
+    }
+
+    /**
+     * Restore a filter from its generations, e.g. generations mapped by {@code FilterSnapshots}
+     *
+     * @param name          name of filter
+     * @param configuration configuration
+     * @param generations   generations, oldest first
+     * @param version       next generation number
+     * @return filter
+     */
+    public static <R> LRUBloomFilter<R> restore(String name, LRUFilterConfig configuration,
+                                                List<BloomFilter<R>> generations, int version) {
+        return new LRUBloomFilter<>(name, configuration, generations, version);
+    }
+
     public static <R> LRUBloomFilter<R> create() {
         return new LRUBloomFilter<>();
     }
@@ -132,4 +499,29 @@ public class LRUBloomFilter<E> extends BaseLRUFilter<E> {
         return new LRUBloomFilter<>(name, LRUFilterConfig.config(sn, sfpp, maxSize, ttl));
     }
 
+    /**
+     * Generations pinned by {@link #pin()}, oldest first
+     */
+    public final class Pinned implements AutoCloseable {
+
+        private final List<BloomFilter<E>> generations;
+
+        private boolean closed;
+
+        private Pinned(List<BloomFilter<E>> generations) {
+            this.generations = generations;
+        }
+
+        public List<BloomFilter<E>> generations() {
+            return generations;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                unpin(generations);
+            }
+        }
+    }
 }
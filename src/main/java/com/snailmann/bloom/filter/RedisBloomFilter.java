@@ -0,0 +1,358 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Distributed bloom filter, the bits are kept in redis strings so the filter is shared by all instances of the service.
+ * The k bits of an element, or all bits of a batch, are sent in one pipeline, so an operation costs one round trip.
+ * <p>
+ * A redis string holds at most 512 MB = 2^32 bits, larger filters are split in shards of {@code shardBits} bits.
+ * Keys are {@code bloom:{name}:bits:i} and {@code bloom:{name}:size}, the hash tag keeps a filter in one slot of a
+ * cluster. All instances must create the filter with the same configuration
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class RedisBloomFilter<E> extends BaseFilter<E> {
+
+    /**
+     * Max bits of a redis string, 512 MB
+     */
+    public static final long MAX_SHARD_BITS = 1L << 32;
+
+    private static final String KEY_PREFIX = "bloom:";
+
+    private final RedisOperations<?, ?> redis;
+
+    private final long shardBits;
+
+    private final byte[][] shardKeys;
+
+    private final byte[] sizeKey;
+
+    /**
+     * Murmur3 double hashing, one 128-bit pass for all k hash functions
+     */
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private RedisBloomFilter(String name, FilterConfig configuration, RedisOperations<?, ?> redis, long shardBits) {
+        super(name, configuration);
+        if (shardBits < 1 || shardBits > MAX_SHARD_BITS) {
+            throw new IllegalArgumentException("shardBits must be in the range of 1 to MAX_SHARD_BITS");
+        }
+        this.redis = redis;
+        this.shardBits = shardBits;
+        murmur3.createHashes(configuration.getK());
+        String prefix = KEY_PREFIX + "{" + name() + "}:";
+        int shards = Math.toIntExact((configuration.getM() + shardBits - 1) / shardBits);
+        this.shardKeys = new byte[shards][];
+        for (int i = 0; i < shards; i++) {
+            this.shardKeys[i] = (prefix + "bits:" + i).getBytes(StandardCharsets.UTF_8);
+        }
+        this.sizeKey = (prefix + "size").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void put(byte[] bs) {
+        putIndexes(murmur3.indexes(bs, config().getM()));
+    }
+
+    @Override
+    public void put(long element) {
+        putIndexes(murmur3.indexes(element, config().getM()));
+    }
+
+    @Override
+    public void put(CharSequence element) {
+        putIndexes(murmur3.indexes(element, config().getM()));
+    }
+
+    private void putIndexes(long[] indexs) {
+        int k = murmur3.k();
+        redis.executePipelined((RedisConnection connection) -> {
+            for (int i = 0; i < k; i++) {
+                setBit(connection, indexs[i]);
+            }
+            connection.incr(sizeKey);
+            return null;
+        });
+    }
+
+    /**
+     * Put a batch of elements in one pipeline, all elements are hashed first
+     *
+     * @param elements elements
+     */
+    @Override
+    public void putAll(List<E> elements) {
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    void putHashes(long[] hashes, int count) {
+        if (count == 0) {
+            return;
+        }
+        long m = config().getM();
+        int k = murmur3.k();
+        redis.executePipelined((RedisConnection connection) -> {
+            for (int j = 0; j < count; j++) {
+                long combined = hashes[j << 1];
+                long h2 = hashes[(j << 1) + 1];
+                for (int i = 0; i < k; i++) {
+                    setBit(connection, Murmur3DoubleHash.index(combined, m));
+                    combined += h2;
+                }
+            }
+            connection.incrBy(sizeKey, count);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean mightContains(byte[] bs) {
+        return mightContainsIndexes(murmur3.indexes(bs, config().getM()));
+    }
+
+    @Override
+    public boolean mightContains(long element) {
+        return mightContainsIndexes(murmur3.indexes(element, config().getM()));
+    }
+
+    @Override
+    public boolean mightContains(CharSequence element) {
+        return mightContainsIndexes(murmur3.indexes(element, config().getM()));
+    }
+
+    private boolean mightContainsIndexes(long[] indexs) {
+        int k = murmur3.k();
+        List<Object> bits = redis.executePipelined((RedisConnection connection) -> {
+            for (int i = 0; i < k; i++) {
+                getBit(connection, indexs[i]);
+            }
+            return null;
+        });
+        for (Object bit : bits) {
+            if (!Boolean.TRUE.equals(bit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Batch query in one pipeline
+     *
+     * @param elements elements want to know
+     * @param out      out[i] is {@code true} if elements[i] might be present
+     */
+    @Override
+    public void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    @Override
+    public void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    private void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        if (count == 0) {
+            return;
+        }
+        long m = config().getM();
+        int k = murmur3.k();
+        List<Object> bits = redis.executePipelined((RedisConnection connection) -> {
+            for (int j = 0; j < count; j++) {
+                long combined = hashes[j << 1];
+                long h2 = hashes[(j << 1) + 1];
+                for (int i = 0; i < k; i++) {
+                    getBit(connection, Murmur3DoubleHash.index(combined, m));
+                    combined += h2;
+                }
+            }
+            return null;
+        });
+        for (int j = 0; j < count; j++) {
+            boolean found = true;
+            for (int i = j * k; i < (j + 1) * k; i++) {
+                found &= Boolean.TRUE.equals(bits.get(i));
+            }
+            out[j] = found;
+        }
+    }
+
+    /**
+     * Read words of the bitset in one pipeline, the bits are in the order of {@code BitStorage}: bit i is bit (i & 63)
+     * of word (i >>> 6). Redis strings are MSB first, so a word is the reverse of 8 big-endian bytes. Bits beyond
+     * the end of a redis string are 0
+     *
+     * @param fromWord index of the first word
+     * @param count    number of words
+     * @return words
+     */
+    public long[] getWords(long fromWord, int count) {
+        if (shardBits % Long.SIZE != 0) {
+            throw new IllegalStateException("shardBits must be a multiple of 64");
+        }
+        long shardWords = shardBits / Long.SIZE;
+        List<Object> ranges = redis.executePipelined((RedisConnection connection) -> {
+            long word = fromWord;
+            long end = fromWord + count;
+            while (word < end) {
+                int shard = (int) (word / shardWords);
+                long to = Math.min(end, (shard + 1) * shardWords);
+                long offset = word - shard * shardWords;
+                connection.getRange(shardKeys[shard], offset << 3, ((offset + to - word) << 3) - 1);
+                word = to;
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+        long[] words = new long[count];
+        int w = 0;
+        long word = fromWord;
+        for (Object range : ranges) {
+            int shard = (int) (word / shardWords);
+            long to = Math.min(fromWord + count, (shard + 1) * shardWords);
+            byte[] bytes = range == null ? new byte[0] : (byte[]) range;
+            for (int i = 0; i < to - word; i++, w++) {
+                long bigEndian = 0;
+                for (int j = 0; j < Long.BYTES; j++) {
+                    int b = (i << 3) + j;
+                    bigEndian = (bigEndian << 8) | (b < bytes.length ? bytes[b] & 0xff : 0);
+                }
+                words[w] = Long.reverse(bigEndian);
+            }
+            word = to;
+        }
+        return words;
+    }
+
+    /**
+     * OR words into the bitset in one pipeline, a SETBIT per bit 1, the bits already set stay. The size is not
+     * changed, e.g. to restore bits lost in redis from a replica
+     *
+     * @param fromWord index of the first word
+     * @param words    words in the order of {@link #getWords(long, int)}
+     * @param count    number of words
+     */
+    public void orWords(long fromWord, long[] words, int count) {
+        redis.executePipelined((RedisConnection connection) -> {
+            for (int i = 0; i < count; i++) {
+                long word = words[i];
+                long base = (fromWord + i) << 6;
+                while (word != 0) {
+                    setBit(connection, base + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Number of 64-bit words of the bitset
+     *
+     * @return words
+     */
+    public long numOfWords() {
+        return (config().getM() + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private void setBit(RedisConnection connection, long index) {
+        connection.setBit(shardKeys[(int) (index / shardBits)], index % shardBits, true);
+    }
+
+    private void getBit(RedisConnection connection, long index) {
+        connection.getBit(shardKeys[(int) (index / shardBits)], index % shardBits);
+    }
+
+    /**
+     * Number of elements put by all instances
+     *
+     * @return current size
+     */
+    public long getCurrentSize() {
+        List<Object> result = redis.executePipelined((RedisConnection connection) -> {
+            connection.get(sizeKey);
+            return null;
+        }, RedisSerializer.string());
+        Object size = result.get(0);
+        return size == null ? 0 : Long.parseLong(size.toString());
+    }
+
+    /**
+     * Number of bits 1, counted by BITCOUNT of all shards
+     *
+     * @return bit count
+     */
+    public long getBitCount() {
+        List<Object> counts = redis.executePipelined((RedisConnection connection) -> {
+            for (byte[] key : shardKeys) {
+                connection.bitCount(key);
+            }
+            return null;
+        });
+        long bitCount = 0;
+        for (Object count : counts) {
+            bitCount += count == null ? 0 : (Long) count;
+        }
+        return bitCount;
+    }
+
+    /**
+     * Delete all keys of the filter
+     */
+    public void clear() {
+        redis.executePipelined((RedisConnection connection) -> {
+            connection.del(shardKeys);
+            connection.del(sizeKey);
+            return null;
+        });
+    }
+
+    public int numOfShards() {
+        return shardKeys.length;
+    }
+
+    public static <R> RedisBloomFilter<R> create(String name, FilterConfig configuration, RedisOperations<?, ?> redis) {
+        return new RedisBloomFilter<>(name, configuration, redis, MAX_SHARD_BITS);
+    }
+
+    public static <R> RedisBloomFilter<R> create(String name, FilterConfig configuration, RedisOperations<?, ?> redis,
+                                                 long shardBits) {
+        return new RedisBloomFilter<>(name, configuration, redis, shardBits);
+    }
+
+    public static <R> RedisBloomFilter<R> create(String name, int n, double p, RedisOperations<?, ?> redis) {
+        return new RedisBloomFilter<>(name, FilterConfig.config(n, p), redis, MAX_SHARD_BITS);
+    }
+}
@@ -0,0 +1,284 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scalable bloom filter (Almeida et al.), grows by stages instead of a fixed n. Stage i is a {@link BloomFilter} of
+ * {@code FilterConfig.config(n0 * s^i, p0 * r^i)}:
+ * <ul>
+ *     <li>an element is put to the newest stage, a new stage is added when the fill ratio (bitCount / m) of the
+ *     newest passes the threshold</li>
+ *     <li>the fpp of a stage tightens by r, so the compounded fpp stays under p0 / (1 - r) = p however many stages
+ *     are added</li>
+ *     <li>a queried element is hashed once, each stage derives its indexes for its own m and k</li>
+ * </ul>
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public class ScalableBloomFilter<E> implements Filter<E> {
+
+    /**
+     * A stage is about half filled at its n with the optimal k
+     */
+    public static final double DEFAULT_FILL_RATIO = 0.5d;
+
+    public static final int DEFAULT_GROWTH = 2;
+
+    public static final double DEFAULT_TIGHTENING = 0.5d;
+
+    private final String name;
+
+    /**
+     * Target fpp of the whole filter
+     */
+    private final double p;
+
+    private final int growth;
+
+    private final double tightening;
+
+    private final double fillRatio;
+
+    private final List<BloomFilter<E>> stages = new ArrayList<>();
+
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private ScalableBloomFilter(String name, int n, double p, int growth, double tightening, double fillRatio) {
+        if (n <= 0 || p <= 0 || p >= 1) {
+            throw new IllegalArgumentException("n must be more than 0 and p in (0, 1)");
+        }
+        if (growth < 1 || tightening <= 0 || tightening >= 1 || fillRatio <= 0 || fillRatio >= 1) {
+            throw new IllegalArgumentException("growth must be at least 1, tightening and fill ratio in (0, 1)");
+        }
+        this.name = StringUtils.isBlank(name) ? DEFAULT_NAME : name;
+        this.p = p;
+        this.growth = growth;
+        this.tightening = tightening;
+        this.fillRatio = fillRatio;
+        stages.add(BloomFilter.create("0", FilterConfig.config(n, p * (1 - tightening))));
+    }
+
+    @Override
+    public synchronized void put(byte[] bs) {
+        currentStage().put(bs);
+    }
+
+    @Override
+    public synchronized void put(long element) {
+        currentStage().put(element);
+    }
+
+    @Override
+    public synchronized void put(CharSequence element) {
+        currentStage().put(element);
+    }
+
+    /**
+     * Put a batch of elements, the batch is split by the room left in the newest stage and each part is put in bulk
+     *
+     * @param elements elements
+     */
+    @Override
+    public synchronized void putAll(List<E> elements) {
+        int size = elements.size();
+        int from = 0;
+        while (from < size) {
+            var stage = currentStage();
+            int to = (int) Math.min(size, (long) from + remainingOf(stage));
+            stage.putAll(elements.subList(from, to));
+            from = to;
+        }
+    }
+
+    @Override
+    public synchronized void putAll(long[] elements) {
+        int from = 0;
+        while (from < elements.length) {
+            var stage = currentStage();
+            int to = (int) Math.min(elements.length, (long) from + remainingOf(stage));
+            stage.putAll(from == 0 && to == elements.length ? elements : Arrays.copyOfRange(elements, from, to));
+            from = to;
+        }
+    }
+
+    @Override
+    public synchronized void putAll(byte[][] elements) {
+        int from = 0;
+        while (from < elements.length) {
+            var stage = currentStage();
+            int to = (int) Math.min(elements.length, (long) from + remainingOf(stage));
+            stage.putAll(from == 0 && to == elements.length ? elements : Arrays.copyOfRange(elements, from, to));
+            from = to;
+        }
+    }
+
+    /**
+     * Get the stage to write, a larger stage is added when the newest passes the fill ratio
+     *
+     * @return the newest stage
+     */
+    private BloomFilter<E> currentStage() {
+        var stage = stages.get(stages.size() - 1);
+        if (fillOf(stage) < fillRatio) {
+            return stage;
+        }
+        FilterConfig last = stage.config();
+        int n = (int) Math.min(Integer.MAX_VALUE, (long) last.getN() * growth);
+        double stageFpp = last.getP() * tightening;
+        var next = BloomFilter.<E>create(String.valueOf(stages.size()), FilterConfig.config(n, stageFpp));
+        stages.add(next);
+        log.info("filter [{}] grows to {} stages, n: {}, p: {}", name, stages.size(), n, stageFpp);
+        return next;
+    }
+
+    private static double fillOf(BloomFilter<?> stage) {
+        return (double) stage.getBitCount() / stage.config().getM();
+    }
+
+    /**
+     * Elements the newest stage can still take before its fill is checked again, n of the stage at least
+     */
+    private static int remainingOf(BloomFilter<?> stage) {
+        return Math.max(1, stage.config().getN() - stage.getCurrentSize());
+    }
+
+    @Override
+    public synchronized boolean mightContains(byte[] bs) {
+        long[] h = murmur3.hash128(bs);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    @Override
+    public synchronized boolean mightContains(long element) {
+        long[] h = murmur3.hash128(element);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    @Override
+    public synchronized boolean mightContains(CharSequence element) {
+        long[] h = murmur3.hash128(element);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    /**
+     * Newest first, the newest stage holds most of the elements
+     */
+    private boolean mightContainsHash(long h1, long h2) {
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            if (stages.get(i).mightContainsHash(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    @Override
+    public synchronized void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    private void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        Arrays.fill(out, 0, count, false);
+        boolean[] present = new boolean[count];
+        for (int s = stages.size() - 1; s >= 0; s--) {
+            stages.get(s).mightContainsHashes(hashes, count, present);
+            for (int i = 0; i < count; i++) {
+                out[i] |= present[i];
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * Target fpp of the whole filter
+     *
+     * @return p
+     */
+    public double fpp() {
+        return this.p;
+    }
+
+    /**
+     * Compounded fpp of the stages so far, 1 - prod(1 - p_i)
+     *
+     * @return fpp
+     */
+    public synchronized double currentFpp() {
+        double none = 1;
+        for (var stage : stages) {
+            none *= 1 - stage.config().getP();
+        }
+        return 1 - none;
+    }
+
+    public synchronized long getCurrentSize() {
+        long size = 0;
+        for (var stage : stages) {
+            size += stage.getCurrentSize();
+        }
+        return size;
+    }
+
+    public synchronized long bitsOfFilter() {
+        long m = 0;
+        for (var stage : stages) {
+            m += stage.config().getM();
+        }
+        return m;
+    }
+
+    public synchronized int numOfStages() {
+        return stages.size();
+    }
+
+    /**
+     * Snapshot of the stages, oldest first
+     *
+     * @return stages
+     */
+    public synchronized List<BloomFilter<E>> stages() {
+        return new ArrayList<>(stages);
+    }
+
+    public static <R> ScalableBloomFilter<R> create(String name, int n, double p) {
+        return new ScalableBloomFilter<>(name, n, p, DEFAULT_GROWTH, DEFAULT_TIGHTENING, DEFAULT_FILL_RATIO);
+    }
+
+    /**
+     * Create a scalable filter
+     *
+     * @param name       name of filter
+     * @param n          n of the first stage
+     * @param p          fpp of the whole filter
+     * @param growth     n of a stage is growth times the previous one
+     * @param tightening fpp of a stage is tightening times the previous one
+     * @param fillRatio  a new stage is added when the newest passes this fill ratio
+     * @return filter
+     */
+    public static <R> ScalableBloomFilter<R> create(String name, int n, double p, int growth, double tightening,
+                                                    double fillRatio) {
+        return new ScalableBloomFilter<>(name, n, p, growth, tightening, fillRatio);
+    }
+}
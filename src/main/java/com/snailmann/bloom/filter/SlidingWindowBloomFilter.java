@@ -0,0 +1,288 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseLRUFilter;
+import com.snailmann.bloom.filter.basic.Maintainable;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.config.LRUFilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sliding window bloom filter, the generations are time slices instead of count based. The window is cut into
+ * {@code slices} slices of window / slices, slice e covers [e * slice, (e + 1) * slice) of the clock:
+ * <ul>
+ *     <li>a put goes to the slice of now</li>
+ *     <li>a query probes the slice of now and the last {@code slices} ones, so an element is found for at least the
+ *     window after its put and never after window + slice</li>
+ *     <li>older slices are expired by the clock, the slot of an expired slice is cleared and reused</li>
+ * </ul>
+ * The slots are a ring of slices + 2 filters, the extra slot is the next slice, cleared ahead by
+ * {@link #preallocate()} so a put on a slice boundary doesn't clear a bitset. All slices share the template, a
+ * queried element is hashed once
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public class SlidingWindowBloomFilter<E> extends BaseLRUFilter<E> implements Maintainable {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final Clock clock;
+
+    private final long sliceMillis;
+
+    /**
+     * Number of slices in a window
+     */
+    private final int slices;
+
+    private final BloomFilter<E>[] slots;
+
+    /**
+     * Slice held by each slot, {@link #EMPTY} if the slot is clear
+     */
+    private final long[] epochs;
+
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    @SuppressWarnings("unchecked")
+    private SlidingWindowBloomFilter(String name, LRUFilterConfig config, Clock clock) {
+        super(name, config);
+        this.clock = clock;
+        this.slices = config.getMaxSize() - 1;
+        if (slices < 1) {
+            throw new IllegalArgumentException("a window needs at least one slice");
+        }
+        this.sliceMillis = config.getTtl().toMillis() / slices;
+        this.slots = new BloomFilter[slices + 2];
+        this.epochs = new long[slices + 2];
+        Arrays.fill(epochs, EMPTY);
+        murmur3.createHashes(config.getTemplateConfig().getK());
+    }
+
+    @Override
+    public synchronized void put(byte[] bs) {
+        currentSlice().put(bs);
+    }
+
+    @Override
+    public synchronized void put(long element) {
+        currentSlice().put(element);
+    }
+
+    @Override
+    public synchronized void put(CharSequence element) {
+        currentSlice().put(element);
+    }
+
+    /**
+     * Put a batch of elements to the slice of now, the batch is hashed once under the lock
+     *
+     * @param elements elements
+     */
+    @Override
+    public synchronized void putAll(List<E> elements) {
+        currentSlice().putAll(elements);
+    }
+
+    @Override
+    public synchronized void putAll(long[] elements) {
+        currentSlice().putAll(elements);
+    }
+
+    @Override
+    public synchronized void putAll(byte[][] elements) {
+        currentSlice().putAll(elements);
+    }
+
+    /**
+     * Get the slice of now, its slot is taken over if it still holds an expired slice
+     */
+    private BloomFilter<E> currentSlice() {
+        long epoch = epoch();
+        int slot = slotOf(epoch);
+        if (epochs[slot] != epoch) {
+            take(slot, epoch);
+        }
+        return slots[slot];
+    }
+
+    private void take(int slot, long epoch) {
+        if (slots[slot] == null) {
+            slots[slot] = BloomFilter.create(String.valueOf(slot), FilterConfig.copyOf(config.getTemplateConfig()));
+        } else if (epochs[slot] != EMPTY) {
+            slots[slot].clear();
+        }
+        epochs[slot] = epoch;
+        long start = epoch * sliceMillis;
+        slots[slot].config().setCreateDate(start);
+        slots[slot].config().setModifyDate(start);
+    }
+
+    @Override
+    public synchronized boolean mightContains(byte[] bs) {
+        long[] h = murmur3.hash128(bs);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    @Override
+    public synchronized boolean mightContains(long element) {
+        long[] h = murmur3.hash128(element);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    @Override
+    public synchronized boolean mightContains(CharSequence element) {
+        long[] h = murmur3.hash128(element);
+        return mightContainsHash(h[0], h[1]);
+    }
+
+    /**
+     * Probe the live slices newest first with one index set
+     */
+    private boolean mightContainsHash(long h1, long h2) {
+        long[] indexs = murmur3.indexes(h1, h2, config.getTemplateConfig().getM());
+        long epoch = epoch();
+        for (long e = epoch; e >= epoch - slices; e--) {
+            int slot = slotOf(e);
+            if (epochs[slot] == e && slots[slot].mightContainsIndexes(indexs)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    @Override
+    public synchronized void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    private void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        Arrays.fill(out, 0, count, false);
+        boolean[] present = new boolean[count];
+        long epoch = epoch();
+        for (long e = epoch; e >= epoch - slices; e--) {
+            int slot = slotOf(e);
+            if (epochs[slot] != e) {
+                continue;
+            }
+            slots[slot].mightContainsHashes(hashes, count, present);
+            for (int i = 0; i < count; i++) {
+                out[i] |= present[i];
+            }
+        }
+    }
+
+    /**
+     * Clear the slots of expired slices
+     */
+    @Override
+    public synchronized void evictExpired() {
+        long oldest = epoch() - slices;
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (epochs[slot] != EMPTY && epochs[slot] < oldest) {
+                slots[slot].clear();
+                epochs[slot] = EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Allocate or clear the slot of the next slice, the slice it holds is already expired
+     */
+    @Override
+    public synchronized void preallocate() {
+        long next = epoch() + 1;
+        int slot = slotOf(next);
+        if (slots[slot] == null) {
+            slots[slot] = BloomFilter.create(String.valueOf(slot), FilterConfig.copyOf(config.getTemplateConfig()));
+        } else if (epochs[slot] != EMPTY && epochs[slot] != next) {
+            slots[slot].clear();
+            epochs[slot] = EMPTY;
+        }
+    }
+
+    /**
+     * Slices roll by the clock, never by count
+     */
+    @Override
+    public void rotateIfFull() {
+    }
+
+    /**
+     * The write path takes over expired slots whether scheduled or not, a maintainer only clears them ahead
+     */
+    @Override
+    public void setScheduled(boolean scheduled) {
+    }
+
+    /**
+     * Live slices, oldest first
+     *
+     * @return slices
+     */
+    public synchronized List<BloomFilter<E>> generations() {
+        long epoch = epoch();
+        List<BloomFilter<E>> generations = new ArrayList<>(slices + 1);
+        for (long e = epoch - slices; e <= epoch; e++) {
+            int slot = slotOf(e);
+            if (epochs[slot] == e) {
+                generations.add(slots[slot]);
+            }
+        }
+        return generations;
+    }
+
+    public Duration window() {
+        return config.getTtl();
+    }
+
+    public Duration slice() {
+        return Duration.ofMillis(sliceMillis);
+    }
+
+    private long epoch() {
+        return Math.floorDiv(clock.millis(), sliceMillis);
+    }
+
+    private int slotOf(long epoch) {
+        return (int) Math.floorMod(epoch, (long) slots.length);
+    }
+
+    public static <R> SlidingWindowBloomFilter<R> create(String name, LRUFilterConfig configuration) {
+        return create(name, configuration, Clock.systemUTC());
+    }
+
+    public static <R> SlidingWindowBloomFilter<R> create(String name, LRUFilterConfig configuration, Clock clock) {
+        return new SlidingWindowBloomFilter<>(name, configuration, clock);
+    }
+
+    /**
+     * Create a filter of the window
+     *
+     * @param name   name of filter
+     * @param sn     number of elements in a window
+     * @param sfpp   fpp over the window
+     * @param window length of window, e.g. 10 minutes
+     * @param slices number of slices in a window
+     * @return filter
+     */
+    public static <R> SlidingWindowBloomFilter<R> create(String name, int sn, double sfpp, Duration window, int slices) {
+        return create(name, LRUFilterConfig.windowConfig(sn, sfpp, window, slices));
+    }
+}
@@ -0,0 +1,242 @@
+package com.snailmann.bloom.filter;
+
+import com.snailmann.bloom.filter.basic.BaseFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.simd.SplitBlockKernel;
+import com.snailmann.bloom.filter.simd.SplitBlockKernels;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Split-block bloom filter (parquet / impala design), a block is 8 x 32-bit words and an element sets one bit in each
+ * word of one block. Blocks are inserted and probed with the vector api when available, see {@link SplitBlockKernels}.
+ * Writes are serialized, reads take no lock. The kernels access the words plainly, a put publishes its bits by a
+ * volatile write of a put counter and a query reads it first, so a query sees every put that completed before
+ * it started. A put still in progress may be missed
+ * <p>
+ * {@link "https://github.com/apache/parquet-format/blob/master/BloomFilter.md"}
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class SplitBlockBloomFilter<E> extends BaseFilter<E> {
+
+    /**
+     * A block is 8 x 32-bit words = 256 bits
+     */
+    public static final int BLOCK_BITS = SplitBlockKernel.WORDS * Integer.SIZE;
+
+    /**
+     * Blocks of one int[], about 2^28 blocks, m up to 2^36 bits
+     */
+    private static final int MAX_BLOCKS = (Integer.MAX_VALUE - 8) / SplitBlockKernel.WORDS;
+
+    /**
+     * Data field of bloom filter
+     */
+    private final int[] words;
+
+    /**
+     * Number of puts, written after the bits of every put and read before the bits by every query
+     */
+    private volatile long published;
+
+    private final int numOfBlocks;
+
+    private final SplitBlockKernel kernel;
+
+    /**
+     * Current number of bits 1
+     */
+    private final LongAdder bitCount;
+
+    /**
+     * Current number of elements
+     */
+    private final LongAdder currentSize;
+
+    /**
+     * Murmur3 128-bit hash, the high 32 bits of h1 pick the block and the low 32 bits the bits in the block
+     */
+    private final Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+
+    private SplitBlockBloomFilter() {
+        this(null, FilterConfig.splitBlockConfig(10000, 0.00046, BLOCK_BITS), SplitBlockKernels.best());
+    }
+
+    private SplitBlockBloomFilter(String name, FilterConfig configuration, SplitBlockKernel kernel) {
+        super(name, configuration);
+        bitCount = new LongAdder();
+        currentSize = new LongAdder();
+        this.kernel = kernel;
+        long count = Math.max(1, (configuration.getM() + BLOCK_BITS - 1) / BLOCK_BITS);
+        if (count > MAX_BLOCKS) {
+            throw new IllegalArgumentException("m is too large for a split-block filter: " + configuration.getM());
+        }
+        this.numOfBlocks = (int) count;
+        this.words = new int[numOfBlocks * SplitBlockKernel.WORDS];
+    }
+
+    @Override
+    public void put(byte[] bs) {
+        putHash(murmur3.hash128(bs)[0]);
+    }
+
+    @Override
+    public void put(long element) {
+        putHash(murmur3.hash128(element)[0]);
+    }
+
+    @Override
+    public void put(CharSequence element) {
+        putHash(murmur3.hash128(element)[0]);
+    }
+
+    private synchronized void putHash(long hash) {
+        int changed = kernel.insert(words, blockOffset(hash), (int) hash);
+        published++;
+        if (changed > 0) {
+            this.bitCount.add(changed);
+        }
+        this.currentSize.increment();
+    }
+
+    /**
+     * Put a batch of elements, all elements are hashed first and the lock is taken once
+     *
+     * @param elements elements
+     */
+    @Override
+    public void putAll(List<E> elements) {
+        long[] hashes = new long[elements.size() << 1];
+        int count = hashAll(murmur3, elements, hashes);
+        putHashes(hashes, count);
+    }
+
+    @Override
+    public void putAll(long[] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    @Override
+    public void putAll(byte[][] elements) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        putHashes(hashes, elements.length);
+    }
+
+    private synchronized void putHashes(long[] hashes, int count) {
+        long changed = 0;
+        for (int j = 0; j < count; j++) {
+            long hash = hashes[j << 1];
+            changed += kernel.insert(words, blockOffset(hash), (int) hash);
+        }
+        published += count;
+        this.bitCount.add(changed);
+        this.currentSize.add(count);
+    }
+
+    @Override
+    public boolean mightContains(byte[] bs) {
+        return mightContainsHash(murmur3.hash128(bs)[0]);
+    }
+
+    @Override
+    public boolean mightContains(long element) {
+        return mightContainsHash(murmur3.hash128(element)[0]);
+    }
+
+    @Override
+    public boolean mightContains(CharSequence element) {
+        return mightContainsHash(murmur3.hash128(element)[0]);
+    }
+
+    /**
+     * Batch query, all elements are hashed first then each block is probed by the kernel
+     *
+     * @param elements elements want to know
+     * @param out      out[i] is {@code true} if elements[i] might be present
+     */
+    @Override
+    public void mightContainsAll(long[] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    @Override
+    public void mightContainsAll(byte[][] elements, boolean[] out) {
+        long[] hashes = new long[elements.length << 1];
+        murmur3.hash128(elements, hashes);
+        mightContainsHashes(hashes, elements.length, out);
+    }
+
+    private void mightContainsHashes(long[] hashes, int count, boolean[] out) {
+        acquire();
+        for (int j = 0; j < count; j++) {
+            long hash = hashes[j << 1];
+            out[j] = kernel.check(words, blockOffset(hash), (int) hash);
+        }
+    }
+
+    private boolean mightContainsHash(long hash) {
+        acquire();
+        return kernel.check(words, blockOffset(hash), (int) hash);
+    }
+
+    /**
+     * The volatile read pairs with the write of the puts, the plain reads of the words that follow see their bits
+     */
+    private long acquire() {
+        return published;
+    }
+
+    /**
+     * First word of the block, the high 32 bits of the hash are mapped to [0, numOfBlocks) by multiply-shift
+     */
+    private int blockOffset(long hash) {
+        return (int) (((hash >>> 32) * numOfBlocks) >>> 32) * SplitBlockKernel.WORDS;
+    }
+
+    public int getCurrentSize() {
+        return this.currentSize.intValue();
+    }
+
+    public long getBitCount() {
+        return bitCount.longValue();
+    }
+
+    public int numOfBlocks() {
+        return this.numOfBlocks;
+    }
+
+    /**
+     * Get name of the kernel in use
+     *
+     * @return "scalar" or "vector-256"
+     */
+    public String kernel() {
+        return kernel.name();
+    }
+
+    public static <R> SplitBlockBloomFilter<R> create() {
+        return new SplitBlockBloomFilter<>();
+    }
+
+    public static <R> SplitBlockBloomFilter<R> create(String name, FilterConfig configuration) {
+        return new SplitBlockBloomFilter<>(name, configuration, SplitBlockKernels.best());
+    }
+
+    public static <R> SplitBlockBloomFilter<R> create(String name, int n, double p) {
+        return create(name, FilterConfig.splitBlockConfig(n, p, BLOCK_BITS));
+    }
+
+    public static <R> SplitBlockBloomFilter<R> create(String name, FilterConfig configuration, SplitBlockKernel kernel) {
+        return new SplitBlockBloomFilter<>(name, configuration, kernel);
+    }
+}
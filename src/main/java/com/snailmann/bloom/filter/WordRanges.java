@@ -0,0 +1,69 @@
+package com.snailmann.bloom.filter;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs an operation over the words [0, words) of a bitset, on the calling thread or split into ranges of
+ * {@link #SPLIT_WORDS} words on a {@link ForkJoinPool}, the results of the ranges are summed
+ *
+ * @author liwenjie
+ */
+final class WordRanges {
+
+    /**
+     * Words of a task, 512 KB
+     */
+    static final int SPLIT_WORDS = 1 << 16;
+
+    /**
+     * {@code null} runs on the calling thread
+     */
+    private final ForkJoinPool pool;
+
+    WordRanges(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    long run(long words, RangeOp op) {
+        if (pool == null || words <= SPLIT_WORDS) {
+            return op.apply(0, words);
+        }
+        return pool.invoke(new RangeTask(op, 0, words));
+    }
+
+    interface RangeOp {
+
+        /**
+         * Apply to the words [from, to)
+         *
+         * @return result of the range, e.g. bits counted
+         */
+        long apply(long from, long to);
+    }
+
+    private static final class RangeTask extends RecursiveTask<Long> {
+
+        private final RangeOp op;
+        private final long from;
+        private final long to;
+
+        private RangeTask(RangeOp op, long from, long to) {
+            this.op = op;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= SPLIT_WORDS) {
+                return op.apply(from, to);
+            }
+            long middle = (from + to) >>> 1;
+            RangeTask right = new RangeTask(op, middle, to);
+            right.fork();
+            long left = new RangeTask(op, from, middle).compute();
+            return left + right.join();
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.snailmann.bloom.filter.basic;
 
 import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.List;
+
 /**
  * @author liwenjie
  */
+@Slf4j
 public abstract class BaseFilter<T> implements Filter<T> {
 
 
@@ -38,6 +43,28 @@ public abstract class BaseFilter<T> implements Filter<T> {
         this.config = config;
     }
 
+    /**
+     * Hash a batch of elements before touching the data field, so a batch is hashed outside any lock and the probes
+     * of different elements can overlap. Elements failed to hash are logged and skipped
+     *
+     * @param hash     hash engine
+     * @param elements elements
+     * @param hashes   result holder, the i-th hashed element is at hashes[2i] and hashes[2i + 1]
+     * @return number of hashed elements
+     */
+    protected int hashAll(Murmur3DoubleHash hash, List<T> elements, long[] hashes) {
+        int count = 0;
+        for (T o : elements) {
+            try {
+                hash.hash128(o, hashes, count << 1);
+                count++;
+            } catch (Exception e) {
+                log.error("put element [{}] error", o, e);
+            }
+        }
+        return count;
+    }
+
     /**
      * Get configuration
      *
@@ -62,7 +89,7 @@ public abstract class BaseFilter<T> implements Filter<T> {
      *
      * @return m
      */
-    public int bitsOfFilter() {
+    public long bitsOfFilter() {
         return config().getM();
     }
 
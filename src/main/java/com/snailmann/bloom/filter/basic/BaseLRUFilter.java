@@ -25,6 +25,11 @@ public abstract class BaseLRUFilter<T> implements Filter<T> {
         this.config = config;
     }
 
+    @Override
+    public String name() {
+        return this.name;
+    }
+
     public LRUFilterConfig config() {
         return this.config;
     }
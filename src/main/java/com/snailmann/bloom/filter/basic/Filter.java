@@ -1,7 +1,11 @@
 package com.snailmann.bloom.filter.basic;
 
+import com.snailmann.bloom.utils.ByteUtils;
+
 import java.util.List;
 
+import static com.snailmann.bloom.filter.config.FilterConfig.charset;
+
 /**
  * @author liwenjie
  */
@@ -10,11 +14,22 @@ public interface Filter<T> {
     String DEFAULT_NAME = "default";
 
     /**
-     * Put a element to the filter
+     * Put a element to the filter, Long, Integer and CharSequence go through the primitive fast path,
+     * other elements are encoded by {@code element.toString()}
      *
      * @param element element want to put
      */
-    void put(T element);
+    default void put(T element) {
+        if (element instanceof Long) {
+            put(((Long) element).longValue());
+        } else if (element instanceof Integer) {
+            put(((Integer) element).intValue());
+        } else if (element instanceof CharSequence) {
+            put((CharSequence) element);
+        } else {
+            put(element.toString().getBytes(charset()));
+        }
+    }
 
     /**
      * Put a element to the filter
@@ -23,6 +38,33 @@ public interface Filter<T> {
      */
     void put(byte[] bytes);
 
+    /**
+     * Put a long element to the filter, hashed as its 8 little-endian bytes
+     *
+     * @param element element want to put
+     */
+    default void put(long element) {
+        put(ByteUtils.toBytes(element));
+    }
+
+    /**
+     * Put a int element to the filter, same as the long of the same value
+     *
+     * @param element element want to put
+     */
+    default void put(int element) {
+        put((long) element);
+    }
+
+    /**
+     * Put a char sequence to the filter, hashed as its UTF-8 bytes
+     *
+     * @param element element want to put
+     */
+    default void put(CharSequence element) {
+        put(element.toString().getBytes(charset()));
+    }
+
     /**
      * Performs a bulk put operation for a collection elements
      *
@@ -31,12 +73,43 @@ public interface Filter<T> {
     void putAll(List<T> elements);
 
     /**
-     * Whether an element in present in the filter
+     * Performs a bulk put operation for long elements
+     *
+     * @param elements long elements
+     */
+    default void putAll(long[] elements) {
+        for (long element : elements) {
+            put(element);
+        }
+    }
+
+    /**
+     * Performs a bulk put operation for raw elements
+     *
+     * @param elements raw bytes of elements
+     */
+    default void putAll(byte[][] elements) {
+        for (byte[] element : elements) {
+            put(element);
+        }
+    }
+
+    /**
+     * Whether an element in present in the filter, see {@link #put(Object)} for how the element is hashed
      *
      * @param element element want to know
      * @return {@code true} if the element present in the filter
      */
-    boolean mightContains(T element);
+    default boolean mightContains(T element) {
+        if (element instanceof Long) {
+            return mightContains(((Long) element).longValue());
+        } else if (element instanceof Integer) {
+            return mightContains(((Integer) element).intValue());
+        } else if (element instanceof CharSequence) {
+            return mightContains((CharSequence) element);
+        }
+        return mightContains(element.toString().getBytes(charset()));
+    }
 
     /**
      * Whether an element in present in the filter
@@ -46,6 +119,60 @@ public interface Filter<T> {
      */
     boolean mightContains(byte[] bytes);
 
+    /**
+     * Whether a long element in present in the filter
+     *
+     * @param element element want to know
+     * @return {@code true} if the element present in the filter
+     */
+    default boolean mightContains(long element) {
+        return mightContains(ByteUtils.toBytes(element));
+    }
+
+    /**
+     * Whether a int element in present in the filter
+     *
+     * @param element element want to know
+     * @return {@code true} if the element present in the filter
+     */
+    default boolean mightContains(int element) {
+        return mightContains((long) element);
+    }
+
+    /**
+     * Whether a char sequence in present in the filter
+     *
+     * @param element element want to know
+     * @return {@code true} if the element present in the filter
+     */
+    default boolean mightContains(CharSequence element) {
+        return mightContains(element.toString().getBytes(charset()));
+    }
+
+    /**
+     * Whether each long element in present in the filter
+     *
+     * @param elements elements want to know
+     * @param out      out[i] is {@code true} if elements[i] present in the filter, length >= elements.length
+     */
+    default void mightContainsAll(long[] elements, boolean[] out) {
+        for (int i = 0; i < elements.length; i++) {
+            out[i] = mightContains(elements[i]);
+        }
+    }
+
+    /**
+     * Whether each raw element in present in the filter
+     *
+     * @param elements raw bytes of elements want to know
+     * @param out      out[i] is {@code true} if elements[i] present in the filter, length >= elements.length
+     */
+    default void mightContainsAll(byte[][] elements, boolean[] out) {
+        for (int i = 0; i < elements.length; i++) {
+            out[i] = mightContains(elements[i]);
+        }
+    }
+
     /**
      * Get name of filter
      *
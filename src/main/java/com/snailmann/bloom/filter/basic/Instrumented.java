@@ -0,0 +1,67 @@
+package com.snailmann.bloom.filter.basic;
+
+import com.snailmann.bloom.filter.metrics.FilterStats;
+
+/**
+ * A filter exporting its operations and fill, see {@code FilterMetrics}
+ *
+ * @author liwenjie
+ */
+public interface Instrumented {
+
+    /**
+     * Name of filter, the tag of its meters
+     *
+     * @return name
+     */
+    String name();
+
+    /**
+     * Operation counters of the filter
+     *
+     * @return stats
+     */
+    FilterStats stats();
+
+    /**
+     * Number of elements put, of all generations
+     *
+     * @return size
+     */
+    long size();
+
+    /**
+     * Number of elements the filter is configured for, of all generations
+     *
+     * @return n
+     */
+    long expectedSize();
+
+    /**
+     * Number of live generations, 1 for a single filter
+     *
+     * @return generations
+     */
+    int numOfGenerations();
+
+    /**
+     * Fraction of bits set of the generation being written
+     *
+     * @return bitCount / m
+     */
+    double fillRatio();
+
+    /**
+     * Fpp estimated from the bits set now, of all generations
+     *
+     * @return fpp
+     */
+    double estimatedFpp();
+
+    /**
+     * Fpp the filter is configured for
+     *
+     * @return fpp
+     */
+    double configuredFpp();
+}
@@ -0,0 +1,39 @@
+package com.snailmann.bloom.filter.basic;
+
+/**
+ * A filter of generations maintained in the background, see {@code FilterMaintainer}. When scheduled the write path
+ * leaves ttl eviction to the maintainer and rotates to a preallocated generation, so a roll over costs a pointer swap
+ *
+ * @author liwenjie
+ */
+public interface Maintainable {
+
+    /**
+     * Name of filter, the key of the maintainer
+     *
+     * @return name
+     */
+    String name();
+
+    /**
+     * Remove the expired generations
+     */
+    void evictExpired();
+
+    /**
+     * Allocate the next generation ahead of rotation, no-op if already allocated
+     */
+    void preallocate();
+
+    /**
+     * Roll a new generation if the newest is full
+     */
+    void rotateIfFull();
+
+    /**
+     * Whether the filter is maintained in the background
+     *
+     * @param scheduled {@code true} if maintained by a maintainer
+     */
+    void setScheduled(boolean scheduled);
+}
@@ -27,9 +27,10 @@ public class FilterConfig {
 
     /**
      * Number of filter bit buckets (ps: ot can be considered as the total size of the filter)
-     * range: 1<= m <= Integer.MAX_VALUE, Why not long? Because of the Java language, the maximum data size is Integer.MAX_VALUE
+     * range: 1<= m <= BloomUtils.MAX_BITS, the bits are stored in 64-bit words, so m is not limited by the max size of
+     * a java array (Integer.MAX_VALUE)
      */
-    private int m;
+    private long m;
 
     /**
      * Number of hash functions
@@ -63,13 +64,72 @@ public class FilterConfig {
         FilterConfig configuration = new FilterConfig();
         configuration.setN(n);
         configuration.setP(p);
-        int m = optimalNumOfBits(n, p);
+        long m = optimalNumOfBits(n, p);
         configuration.setM(m);
         configuration.setK(optimalNumOfHashFunctions(n, m));
         configuration.setC(bitsOfElement(n, m));
         return configuration;
     }
 
+    /**
+     * Configuration of a blocked bloom filter, m is enlarged to keep the fpp since all k bits of an element
+     * are in one block
+     *
+     * @param n         expected elements
+     * @param p         fpp
+     * @param blockBits bits of a block
+     * @return configuration
+     */
+    public static FilterConfig blockedConfig(int n, double p, int blockBits) {
+        FilterConfig configuration = new FilterConfig();
+        configuration.setN(n);
+        configuration.setP(p);
+        long m = optimalNumOfBlockedBits(n, p, blockBits);
+        configuration.setM(m);
+        configuration.setK(optimalNumOfHashFunctions(n, m));
+        configuration.setC(bitsOfElement(n, m));
+        return configuration;
+    }
+
+    /**
+     * Configuration of a split-block bloom filter, k is the number of 32-bit words of a block (one bit in each word)
+     *
+     * @param n         expected elements
+     * @param p         fpp
+     * @param blockBits bits of a block
+     * @return configuration
+     */
+    public static FilterConfig splitBlockConfig(int n, double p, int blockBits) {
+        FilterConfig configuration = new FilterConfig();
+        configuration.setN(n);
+        configuration.setP(p);
+        long m = optimalNumOfSplitBlockBits(n, p, blockBits, Integer.SIZE);
+        configuration.setM(m);
+        configuration.setK(blockBits / Integer.SIZE);
+        configuration.setC(bitsOfElement(n, m));
+        return configuration;
+    }
+
+    /**
+     * Configuration of a cuckoo filter of 4 fingerprints a bucket, m is numOfBuckets * 4 * f bits and k is the 2
+     * buckets of an element
+     *
+     * @param n expected elements
+     * @param p fpp
+     * @return configuration, p is the fpp of the fingerprint bits
+     */
+    public static FilterConfig cuckooConfig(int n, double p) {
+        FilterConfig configuration = new FilterConfig();
+        configuration.setN(n);
+        int f = optimalNumOfFingerprintBits(p, CUCKOO_BUCKET_SIZE);
+        long m = optimalNumOfBuckets(n, CUCKOO_BUCKET_SIZE) * CUCKOO_BUCKET_SIZE * f;
+        configuration.setM(m);
+        configuration.setK(2);
+        configuration.setP(cuckooFpp(f, CUCKOO_BUCKET_SIZE));
+        configuration.setC(bitsOfElement(n, m));
+        return configuration;
+    }
+
     public static FilterConfig defaultConfig() {
         return config(10000, 0.00046);
     }
@@ -45,6 +45,13 @@ public class LRUFilterConfig {
      */
     private Duration ttl;
 
+    /**
+     * Reuse evicted generations: an evicted generation is cleared and becomes the next generation, so a rotation
+     * doesn't allocate a new bitset. Needs a {@code FilterMaintainer}, it clears the evicted generation in the
+     * background; a filter without one allocates its generations
+     */
+    private boolean recycle;
+
     /**
      * Template Config of filter
      */
@@ -70,6 +77,34 @@ public class LRUFilterConfig {
         return configuration;
     }
 
+    /**
+     * Configuration of a sliding window filter, the window is cut into slices of window / slices. A query probes
+     * the current slice and the last {@code slices} ones, so maxSize is slices + 1 and the series fpp is kept over
+     * these slices, each slice takes sn / slices elements
+     *
+     * @param sn     number of elements in a window
+     * @param sfpp   fpp over the window
+     * @param window length of window, a multiple of slices in milliseconds
+     * @param slices number of slices in a window
+     * @return configuration, ttl is the window
+     */
+    public static LRUFilterConfig windowConfig(int sn, double sfpp, Duration window, int slices) {
+        Assert.isTrue(slices >= 1 && slices < FILTER_MAX_SIZE, "slices needs to be in the range of 1 to FILTER_MAX_SIZE - 1");
+        Assert.isTrue(window.toMillis() >= slices && window.toMillis() % slices == 0,
+                "window needs to be a multiple of slices in milliseconds");
+        int maxSize = slices + 1;
+        LRUFilterConfig configuration = new LRUFilterConfig();
+        configuration.setSize(maxSize);
+        configuration.setMaxSize(maxSize);
+        configuration.setSfpp(sfpp);
+        configuration.setTtl(window);
+
+        // maxSize slices of sn / slices elements each
+        int total = (int) Math.min(Integer.MAX_VALUE, (long) sn * maxSize / slices);
+        configuration.setTemplateConfig(optimalConfigOfFilter(total, sfpp, maxSize));
+        return configuration;
+    }
+
 
     /**
      * Find the optimal configuration of a single filter according to the total N, the series fpp and the max number of filters you want to support
@@ -103,7 +138,7 @@ public class LRUFilterConfig {
         for (int size = FILTER_INITIAL_SIZE; size <= FILTER_MAX_SIZE; size++) {
             double p = 1 - Math.pow(1 - sfpp, 1d / size);
             int n = sn / size;
-            int m = optimalNumOfBits(n, p);
+            long m = optimalNumOfBits(n, p);
             int k = optimalNumOfHashFunctions(n, m);
             System.out.println(
                     BigDecimal.valueOf(p) + ":k=" + k + ":n=" + n + ":m=" + m
@@ -0,0 +1,140 @@
+package com.snailmann.bloom.filter.maintenance;
+
+import com.snailmann.bloom.filter.basic.Maintainable;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maintain many named filters on one shared {@link ScheduledExecutorService}: every interval a filter evicts its
+ * expired generations, rolls a new generation if the newest is full and preallocates the next generation
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public class FilterMaintainer implements Closeable {
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Shut down the executor on close if created by the maintainer
+     */
+    private final boolean ownsExecutor;
+
+    private final ConcurrentMap<String, Task> tasks = new ConcurrentHashMap<>();
+
+    private FilterMaintainer(ScheduledExecutorService executor, boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Maintain the filter every interval, a filter of the same name is replaced
+     *
+     * @param filter   filter
+     * @param interval interval
+     */
+    public void register(Maintainable filter, Duration interval) {
+        Task task = new Task(filter);
+        filter.setScheduled(true);
+        // run once at once so the next generation is ready before the first roll over
+        long millis = interval.toMillis();
+        task.future = executor.scheduleWithFixedDelay(task, 0, millis, TimeUnit.MILLISECONDS);
+        Task previous = tasks.put(filter.name(), task);
+        if (previous != null) {
+            previous.future.cancel(false);
+            if (previous.filter != filter) {
+                previous.filter.setScheduled(false);
+            }
+        }
+        log.info("filter [{}] is maintained every {} ms", filter.name(), millis);
+    }
+
+    /**
+     * Stop maintaining the filter, its write path evicts and rotates by itself again
+     *
+     * @param name name of filter
+     * @return {@code true} if the filter was maintained
+     */
+    public boolean unregister(String name) {
+        Task task = tasks.remove(name);
+        if (task == null) {
+            return false;
+        }
+        task.cancel();
+        return true;
+    }
+
+    public Set<String> names() {
+        return tasks.keySet();
+    }
+
+    @Override
+    public void close() {
+        for (String name : tasks.keySet()) {
+            unregister(name);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @param threads number of threads
+     * @return maintainer on its own daemon threads
+     */
+    public static FilterMaintainer create(int threads) {
+        AtomicInteger id = new AtomicInteger();
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "bloom-maintainer-" + id.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new FilterMaintainer(executor, true);
+    }
+
+    /**
+     * @param executor shared executor, not shut down on close
+     * @return maintainer
+     */
+    public static FilterMaintainer create(ScheduledExecutorService executor) {
+        return new FilterMaintainer(executor, false);
+    }
+
+    private static final class Task implements Runnable {
+
+        private final Maintainable filter;
+
+        private volatile ScheduledFuture<?> future;
+
+        private Task(Maintainable filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public void run() {
+            // an exception would cancel the periodic task, keep it running
+            try {
+                filter.evictExpired();
+                filter.rotateIfFull();
+                filter.preallocate();
+            } catch (Exception e) {
+                log.error("maintain filter [{}] error", filter.name(), e);
+            }
+        }
+
+        private void cancel() {
+            future.cancel(false);
+            filter.setScheduled(false);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.snailmann.bloom.filter.metrics;
+
+import com.snailmann.bloom.filter.basic.Instrumented;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Export the operations and fill of filters, tagged by the name and type of filter:
+ * <ul>
+ *     <li>bloom.filter.puts, bloom.filter.queries, bloom.filter.positives: counters of operations</li>
+ *     <li>bloom.filter.put.latency, bloom.filter.query.latency: timers of the sampled single operations, see
+ *     {@link FilterStats#SAMPLE_RATE}</li>
+ *     <li>bloom.filter.positive.rate: positives / queries</li>
+ *     <li>bloom.filter.fill.ratio: bitCount / m of the generation being written</li>
+ *     <li>bloom.filter.size, bloom.filter.expected.size: elements put and n, of all generations</li>
+ *     <li>bloom.filter.generations: number of live generations</li>
+ *     <li>bloom.filter.fpp.estimated, bloom.filter.fpp.configured: fpp of the bits set now and the configured fpp,
+ *     a filter is saturated when the estimated fpp passes the configured one</li>
+ * </ul>
+ * Gauges are computed on scrape from the counters the filters keep anyway, nothing is added to the hot path
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class FilterMetrics implements MeterBinder {
+
+    public static final String PREFIX = "bloom.filter";
+
+    private final List<Instrumented> filters;
+
+    private FilterMetrics(List<Instrumented> filters) {
+        this.filters = filters;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Instrumented filter : filters) {
+            bind(filter, registry);
+        }
+    }
+
+    private static void bind(Instrumented filter, MeterRegistry registry) {
+        Tags tags = Tags.of("name", filter.name(), "type", filter.getClass().getSimpleName());
+        FilterStats stats = filter.stats();
+
+        FunctionCounter.builder(PREFIX + ".puts", stats, FilterStats::puts)
+                .description("elements put").tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + ".queries", stats, FilterStats::queries)
+                .description("elements queried").tags(tags).register(registry);
+        FunctionCounter.builder(PREFIX + ".positives", stats, FilterStats::positives)
+                .description("queries answered true").tags(tags).register(registry);
+        Timer putTimer = Timer.builder(PREFIX + ".put.latency")
+                .description("latency of sampled puts").tags(tags)
+                .publishPercentiles(0.5, 0.99, 0.999).register(registry);
+        Timer queryTimer = Timer.builder(PREFIX + ".query.latency")
+                .description("latency of sampled queries").tags(tags)
+                .publishPercentiles(0.5, 0.99, 0.999).register(registry);
+        stats.bind(putTimer, queryTimer);
+
+        Gauge.builder(PREFIX + ".positive.rate", stats, FilterStats::positiveRate)
+                .description("positives / queries").tags(tags).strongReference(true).register(registry);
+        Gauge.builder(PREFIX + ".fill.ratio", filter, Instrumented::fillRatio)
+                .description("bits set / m of the generation being written").tags(tags).strongReference(true)
+                .register(registry);
+        Gauge.builder(PREFIX + ".size", filter, Instrumented::size)
+                .description("elements put").tags(tags).strongReference(true).register(registry);
+        Gauge.builder(PREFIX + ".expected.size", filter, Instrumented::expectedSize)
+                .description("elements configured").tags(tags).strongReference(true).register(registry);
+        Gauge.builder(PREFIX + ".generations", filter, Instrumented::numOfGenerations)
+                .description("live generations").tags(tags).strongReference(true).register(registry);
+        Gauge.builder(PREFIX + ".fpp.estimated", filter, Instrumented::estimatedFpp)
+                .description("fpp of the bits set now").tags(tags).strongReference(true).register(registry);
+        Gauge.builder(PREFIX + ".fpp.configured", filter, Instrumented::configuredFpp)
+                .description("configured fpp").tags(tags).strongReference(true).register(registry);
+        log.info("filter [{}] is bound to metrics", filter.name());
+    }
+
+    /**
+     * Create a binder of the instrumented filters, other filters are skipped
+     *
+     * @param filters filters
+     * @return binder
+     */
+    public static FilterMetrics create(Collection<?> filters) {
+        List<Instrumented> instrumented = new ArrayList<>();
+        for (Object filter : filters) {
+            if (filter instanceof Instrumented) {
+                instrumented.add((Instrumented) filter);
+            }
+        }
+        return new FilterMetrics(instrumented);
+    }
+}
@@ -0,0 +1,115 @@
+package com.snailmann.bloom.filter.metrics;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation counters of a filter, the hot path only adds to striped {@link LongAdder}s. Latency is sampled: one in
+ * {@link #SAMPLE_RATE} single puts and queries reads the clock, and the sample is recorded to the timers bound by
+ * {@link FilterMetrics}, nothing is timed before binding. Batch operations are counted but not timed
+ *
+ * @author liwenjie
+ */
+public final class FilterStats {
+
+    /**
+     * One in SAMPLE_RATE operations is timed, a power of 2
+     */
+    public static final int SAMPLE_RATE = 64;
+
+    private static final int SAMPLE_MASK = SAMPLE_RATE - 1;
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder queries = new LongAdder();
+
+    private final LongAdder positives = new LongAdder();
+
+    private volatile Timer putTimer;
+
+    private volatile Timer queryTimer;
+
+    /**
+     * Start an operation
+     *
+     * @return start time in nanos if the operation is sampled, otherwise 0
+     */
+    public long start() {
+        if (queryTimer == null || (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) != 0) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    public void put(long start) {
+        puts.increment();
+        record(putTimer, start);
+    }
+
+    public void puts(int count) {
+        puts.add(count);
+    }
+
+    /**
+     * Count a query
+     *
+     * @param start  value of {@link #start()}
+     * @param result result of the query
+     * @return result
+     */
+    public boolean query(long start, boolean result) {
+        queries.increment();
+        if (result) {
+            positives.increment();
+        }
+        record(queryTimer, start);
+        return result;
+    }
+
+    public void queries(boolean[] out, int count) {
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (out[i]) {
+                found++;
+            }
+        }
+        queries.add(count);
+        positives.add(found);
+    }
+
+    private static void record(Timer timer, long start) {
+        if (start != 0 && timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void bind(Timer putTimer, Timer queryTimer) {
+        this.putTimer = putTimer;
+        this.queryTimer = queryTimer;
+    }
+
+    public long puts() {
+        return puts.sum();
+    }
+
+    public long queries() {
+        return queries.sum();
+    }
+
+    public long positives() {
+        return positives.sum();
+    }
+
+    /**
+     * Fraction of queries answered {@code true}, hits and false positives
+     *
+     * @return positives / queries, 0 before the first query
+     */
+    public double positiveRate() {
+        long q = queries.sum();
+        return q == 0 ? 0 : (double) positives.sum() / q;
+    }
+}
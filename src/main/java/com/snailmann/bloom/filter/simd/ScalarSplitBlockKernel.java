@@ -0,0 +1,39 @@
+package com.snailmann.bloom.filter.simd;
+
+/**
+ * Scalar kernel, used where the vector api is unavailable
+ *
+ * @author liwenjie
+ */
+public class ScalarSplitBlockKernel implements SplitBlockKernel {
+
+    @Override
+    public int insert(int[] words, int offset, int hash) {
+        int changed = 0;
+        for (int i = 0; i < WORDS; i++) {
+            int mask = 1 << ((hash * SALT[i]) >>> 27);
+            int word = words[offset + i];
+            if ((word & mask) == 0) {
+                words[offset + i] = word | mask;
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean check(int[] words, int offset, int hash) {
+        for (int i = 0; i < WORDS; i++) {
+            int mask = 1 << ((hash * SALT[i]) >>> 27);
+            if ((words[offset + i] & mask) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
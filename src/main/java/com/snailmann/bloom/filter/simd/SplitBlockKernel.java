@@ -0,0 +1,52 @@
+package com.snailmann.bloom.filter.simd;
+
+/**
+ * Block operations of a split-block bloom filter, a block is 8 x 32-bit words and an element sets one bit per word.
+ * The bit of word i is the top 5 bits of {@code hash * SALT[i]}
+ * <p>
+ * {@link "https://github.com/apache/parquet-format/blob/master/BloomFilter.md"}
+ *
+ * @author liwenjie
+ */
+public interface SplitBlockKernel {
+
+    /**
+     * Words of a block
+     */
+    int WORDS = 8;
+
+    /**
+     * Salts of the 8 words, same as parquet
+     */
+    int[] SALT = {
+            0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+            0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31
+    };
+
+    /**
+     * Set the 8 bits of hash in the block
+     *
+     * @param words  data field
+     * @param offset first word of the block
+     * @param hash   low 32 bits of the element hash
+     * @return number of bits changed from 0 to 1
+     */
+    int insert(int[] words, int offset, int hash);
+
+    /**
+     * Whether the 8 bits of hash are all set in the block
+     *
+     * @param words  data field
+     * @param offset first word of the block
+     * @param hash   low 32 bits of the element hash
+     * @return {@code true} if all set
+     */
+    boolean check(int[] words, int offset, int hash);
+
+    /**
+     * Name of the kernel, for logs and metrics
+     *
+     * @return name
+     */
+    String name();
+}
@@ -0,0 +1,57 @@
+package com.snailmann.bloom.filter.simd;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pick the split-block kernel, the vector kernel is only compiled on JDK 17+ (maven profile "vector") and only used
+ * when the jdk.incubator.vector module is resolved at runtime, i.e. the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, otherwise fall back to the scalar kernel
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public class SplitBlockKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "com.snailmann.bloom.filter.simd.VectorSplitBlockKernel";
+
+    private static final SplitBlockKernel BEST = load();
+
+    private SplitBlockKernels() {
+    }
+
+    /**
+     * The fastest kernel available in this JVM
+     *
+     * @return kernel
+     */
+    public static SplitBlockKernel best() {
+        return BEST;
+    }
+
+    public static SplitBlockKernel scalar() {
+        return new ScalarSplitBlockKernel();
+    }
+
+    /**
+     * The vector kernel is used if its class is compiled, the module is resolved and the cpu has 256-bit vectors,
+     * see {@code VectorSplitBlockKernel.isSupported()}. The class is reached by reflection, this class is compiled
+     * for JDK 11
+     */
+    private static SplitBlockKernel load() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                Class<?> type = Class.forName(VECTOR_KERNEL);
+                if ((boolean) type.getMethod("isSupported").invoke(null)) {
+                    SplitBlockKernel kernel = (SplitBlockKernel) type.getDeclaredConstructor().newInstance();
+                    log.info("split block kernel: {}", kernel.name());
+                    return kernel;
+                }
+                log.info("256-bit vectors are not supported by the cpu, split block kernel: scalar");
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("vector split block kernel unavailable, fall back to scalar: {}", e.toString());
+            }
+        }
+        return scalar();
+    }
+}
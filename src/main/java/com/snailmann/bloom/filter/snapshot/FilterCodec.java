@@ -0,0 +1,432 @@
+package com.snailmann.bloom.filter.snapshot;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compressed wire format of a {@link BloomFilter} or {@link ConcurrentBloomFilter}, for shipping filters between
+ * nodes. A lightly filled filter is mostly 0 bits, the bitset is cut into chunks of {@link #CHUNK_BITS} bits and
+ * each chunk is written in the smallest of 4 forms, like the containers of a Roaring bitmap:
+ * <ul>
+ *     <li>empty: no bit set, no payload</li>
+ *     <li>array: cardinality c (u16), then the c positions (u16), 2 + 2c bytes</li>
+ *     <li>runs: number of runs r (u16), then start and length - 1 of each run (u16, u16), 2 + 4r bytes</li>
+ *     <li>raw: the words of the chunk, 8 bytes a word</li>
+ * </ul>
+ * Layout, all numbers little-endian:
+ * <pre>
+ * header:  magic, version, type, k, n, m, p, c, seed, currentSize, createDate, modifyDate, name
+ * chunks:  kind (u8) | payload, for each chunk of ceil(m / 64) words
+ * trailer: bitCount of the chunks, checked on decode
+ * </pre>
+ * The codec streams through a buffer of {@link #BUFFER} bytes and never holds the whole bitset, the decoder reads
+ * exactly the encoded bytes so more data may follow on the same stream. Streams are not closed
+ *
+ * @author liwenjie
+ */
+public final class FilterCodec {
+
+    /**
+     * "BLMW"
+     */
+    public static final int MAGIC = 0x574d4c42;
+
+    public static final int VERSION = 1;
+
+    /**
+     * 2^16 bits, a position in a chunk is an u16
+     */
+    public static final int CHUNK_BITS = 1 << 16;
+
+    static final int CHUNK_WORDS = CHUNK_BITS >>> BitStorage.WORD_SHIFT;
+
+    static final byte EMPTY = 0;
+    static final byte ARRAY = 1;
+    static final byte RUNS = 2;
+    static final byte RAW = 3;
+
+    /**
+     * An array of 4096 positions is as large as the raw chunk
+     */
+    private static final int MAX_ARRAY = 4095;
+
+    private static final int MAX_RUNS = 0xffff;
+
+    private static final int BUFFER = 64 * 1024;
+
+    private static final int MAX_NAME_BYTES = 1024;
+
+    private FilterCodec() {
+    }
+
+    /**
+     * Encode the filter, the counts are read before the bits like {@link FilterSnapshots#write}
+     *
+     * @param filter {@link BloomFilter} or {@link ConcurrentBloomFilter}
+     * @param out    stream
+     * @return bytes written
+     * @throws IOException if the stream can't be written
+     */
+    public static long encode(Filter<?> filter, OutputStream out) throws IOException {
+        return encode(filter, Channels.newChannel(out));
+    }
+
+    public static long encode(Filter<?> filter, WritableByteChannel channel) throws IOException {
+        int type;
+        FilterConfig config;
+        long currentSize;
+        BitStorage storage;
+        if (filter instanceof BloomFilter) {
+            BloomFilter<?> bloomFilter = (BloomFilter<?>) filter;
+            type = FilterSnapshots.TYPE_BLOOM;
+            config = bloomFilter.config();
+            currentSize = bloomFilter.getCurrentSize();
+            storage = bloomFilter.storage();
+        } else if (filter instanceof ConcurrentBloomFilter) {
+            ConcurrentBloomFilter<?> bloomFilter = (ConcurrentBloomFilter<?>) filter;
+            type = FilterSnapshots.TYPE_CONCURRENT_BLOOM;
+            config = bloomFilter.config();
+            currentSize = bloomFilter.getCurrentSize();
+            storage = bloomFilter.storage();
+        } else {
+            throw new IllegalArgumentException("encode is not supported: " + filter.getClass().getName());
+        }
+
+        Writer writer = new Writer(channel);
+        byte[] name = filter.name().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("name is too long");
+        }
+        ByteBuffer header = writer.reserve(128 + name.length);
+        header.putInt(MAGIC).putInt(VERSION).putInt(type);
+        header.putInt(config.getK()).putInt(config.getN()).putLong(config.getM());
+        header.putDouble(config.getP()).putDouble(config.getC());
+        header.putLong(Murmur3DoubleHash.DEFAULT_SEED);
+        header.putLong(currentSize);
+        header.putLong(config.getCreateDate()).putLong(config.getModifyDate());
+        header.putInt(name.length).put(name);
+
+        long words = BitStorage.wordsOf(config.getM());
+        long[] chunk = new long[CHUNK_WORDS];
+        long bitCount = 0;
+        for (long from = 0; from < words; from += CHUNK_WORDS) {
+            int length = (int) Math.min(CHUNK_WORDS, words - from);
+            for (int i = 0; i < length; i++) {
+                chunk[i] = storage.getWord(from + i);
+            }
+            bitCount += writeChunk(writer, chunk, length);
+        }
+        writer.reserve(Long.BYTES).putLong(bitCount);
+        return writer.flush();
+    }
+
+    /**
+     * Decode a filter encoded from a {@link BloomFilter}, on the java heap
+     *
+     * @param in stream
+     * @return filter
+     * @throws IOException if the stream is not an encoded bloom filter
+     */
+    public static <R> BloomFilter<R> decodeBloomFilter(InputStream in) throws IOException {
+        return decodeBloomFilter(Channels.newChannel(in));
+    }
+
+    public static <R> BloomFilter<R> decodeBloomFilter(ReadableByteChannel channel) throws IOException {
+        Decoded decoded = decode(channel, FilterSnapshots.TYPE_BLOOM);
+        return BloomFilter.restore(decoded.name, decoded.config, decoded.storage, decoded.currentSize, decoded.bitCount);
+    }
+
+    public static <R> ConcurrentBloomFilter<R> decodeConcurrentBloomFilter(InputStream in) throws IOException {
+        return decodeConcurrentBloomFilter(Channels.newChannel(in));
+    }
+
+    public static <R> ConcurrentBloomFilter<R> decodeConcurrentBloomFilter(ReadableByteChannel channel) throws IOException {
+        Decoded decoded = decode(channel, FilterSnapshots.TYPE_CONCURRENT_BLOOM);
+        return ConcurrentBloomFilter.restore(decoded.name, decoded.config, decoded.storage, decoded.currentSize,
+                decoded.bitCount);
+    }
+
+    private static Decoded decode(ReadableByteChannel channel, int type) throws IOException {
+        Reader reader = new Reader(channel);
+        ByteBuffer header = reader.read(3 * Integer.BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("not an encoded filter");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("encoding version not supported: " + version);
+        }
+        int actual = header.getInt();
+        if (actual != type) {
+            throw new IOException("encoded type not match, expected: " + type + ", actual: " + actual);
+        }
+        header = reader.read(2 * Integer.BYTES + 7 * Long.BYTES + Integer.BYTES);
+        Decoded decoded = new Decoded();
+        FilterConfig config = new FilterConfig();
+        config.setK(header.getInt());
+        config.setN(header.getInt());
+        config.setM(header.getLong());
+        config.setP(header.getDouble());
+        config.setC(header.getDouble());
+        long seed = header.getLong();
+        if (seed != Murmur3DoubleHash.DEFAULT_SEED) {
+            throw new IOException("hash seed not supported: " + seed);
+        }
+        decoded.currentSize = header.getLong();
+        config.setCreateDate(header.getLong());
+        config.setModifyDate(header.getLong());
+        int nameLength = header.getInt();
+        if (nameLength < 0 || nameLength > MAX_NAME_BYTES || config.getM() <= 0 || config.getK() <= 0) {
+            throw new IOException("encoded filter is corrupted");
+        }
+        byte[] name = new byte[nameLength];
+        reader.read(nameLength).get(name);
+        decoded.name = new String(name, StandardCharsets.UTF_8);
+        decoded.config = config;
+
+        BitStorage storage = BitStorage.heap(config.getM());
+        long words = BitStorage.wordsOf(config.getM());
+        long[] chunk = new long[CHUNK_WORDS];
+        long bitCount = 0;
+        for (long from = 0; from < words; from += CHUNK_WORDS) {
+            int length = (int) Math.min(CHUNK_WORDS, words - from);
+            readChunk(reader, chunk, length);
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] != 0) {
+                    storage.orWord(from + i, chunk[i]);
+                    bitCount += Long.bitCount(chunk[i]);
+                }
+            }
+        }
+        long expected = reader.read(Long.BYTES).getLong();
+        if (expected != bitCount) {
+            throw new IOException("encoded filter is corrupted, bit count: " + bitCount + ", expected: " + expected);
+        }
+        decoded.storage = storage;
+        decoded.bitCount = bitCount;
+        return decoded;
+    }
+
+    /**
+     * Write a chunk in its smallest form
+     *
+     * @return bits 1 of the chunk
+     */
+    private static long writeChunk(Writer writer, long[] chunk, int length) throws IOException {
+        int cardinality = 0;
+        int runs = 0;
+        long carry = 0;
+        for (int i = 0; i < length; i++) {
+            long word = chunk[i];
+            cardinality += Long.bitCount(word);
+            // a run starts at a bit 1 after a bit 0
+            runs += Long.bitCount(word & ~((word << 1) | carry));
+            carry = word >>> 63;
+        }
+        if (cardinality == 0) {
+            writer.reserve(1).put(EMPTY);
+            return 0;
+        }
+        long arrayBytes = cardinality <= MAX_ARRAY ? 2 + 2L * cardinality : Long.MAX_VALUE;
+        long runBytes = runs <= MAX_RUNS ? 2 + 4L * runs : Long.MAX_VALUE;
+        long rawBytes = (long) length << 3;
+        if (arrayBytes <= runBytes && arrayBytes < rawBytes) {
+            ByteBuffer buffer = writer.reserve(1 + (int) arrayBytes);
+            buffer.put(ARRAY).putShort((short) cardinality);
+            for (int i = 0; i < length; i++) {
+                long word = chunk[i];
+                while (word != 0) {
+                    buffer.putShort((short) ((i << BitStorage.WORD_SHIFT) + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        } else if (runBytes < rawBytes) {
+            ByteBuffer buffer = writer.reserve(1 + (int) runBytes);
+            buffer.put(RUNS).putShort((short) runs);
+            int bits = length << BitStorage.WORD_SHIFT;
+            int start = nextBit(chunk, 0, bits, true);
+            while (start < bits) {
+                int end = nextBit(chunk, start, bits, false);
+                buffer.putShort((short) start).putShort((short) (end - start - 1));
+                start = nextBit(chunk, end, bits, true);
+            }
+        } else {
+            ByteBuffer buffer = writer.reserve(1 + (int) rawBytes);
+            buffer.put(RAW);
+            for (int i = 0; i < length; i++) {
+                buffer.putLong(chunk[i]);
+            }
+        }
+        return cardinality;
+    }
+
+    private static void readChunk(Reader reader, long[] chunk, int length) throws IOException {
+        Arrays.fill(chunk, 0, length, 0L);
+        byte kind = reader.read(1).get();
+        int bits = length << BitStorage.WORD_SHIFT;
+        switch (kind) {
+            case EMPTY:
+                return;
+            case ARRAY: {
+                int cardinality = reader.read(Short.BYTES).getShort() & 0xffff;
+                if (cardinality > MAX_ARRAY) {
+                    throw new IOException("encoded filter is corrupted, cardinality: " + cardinality);
+                }
+                ByteBuffer buffer = reader.read(cardinality * Short.BYTES);
+                for (int i = 0; i < cardinality; i++) {
+                    int position = buffer.getShort() & 0xffff;
+                    if (position >= bits) {
+                        throw new IOException("encoded filter is corrupted, position: " + position);
+                    }
+                    chunk[position >>> BitStorage.WORD_SHIFT] |= 1L << position;
+                }
+                return;
+            }
+            case RUNS: {
+                int runs = reader.read(Short.BYTES).getShort() & 0xffff;
+                if (runs > CHUNK_WORDS << 1) {
+                    // never more bytes than the raw chunk
+                    throw new IOException("encoded filter is corrupted, runs: " + runs);
+                }
+                ByteBuffer buffer = reader.read(runs * 2 * Short.BYTES);
+                for (int i = 0; i < runs; i++) {
+                    int start = buffer.getShort() & 0xffff;
+                    int end = start + (buffer.getShort() & 0xffff) + 1;
+                    if (end > bits) {
+                        throw new IOException("encoded filter is corrupted, run: " + start + ", " + end);
+                    }
+                    setRange(chunk, start, end);
+                }
+                return;
+            }
+            case RAW: {
+                ByteBuffer buffer = reader.read(length * Long.BYTES);
+                for (int i = 0; i < length; i++) {
+                    chunk[i] = buffer.getLong();
+                }
+                return;
+            }
+            default:
+                throw new IOException("encoded filter is corrupted, chunk kind: " + kind);
+        }
+    }
+
+    /**
+     * Index of the next bit of the value from the index, limit if none
+     */
+    private static int nextBit(long[] chunk, int from, int limit, boolean one) {
+        if (from >= limit) {
+            return limit;
+        }
+        int i = from >>> BitStorage.WORD_SHIFT;
+        long word = (one ? chunk[i] : ~chunk[i]) & (-1L << from);
+        while (word == 0) {
+            if (++i << BitStorage.WORD_SHIFT >= limit) {
+                return limit;
+            }
+            word = one ? chunk[i] : ~chunk[i];
+        }
+        return Math.min(limit, (i << BitStorage.WORD_SHIFT) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Set bits [from, to)
+     */
+    private static void setRange(long[] chunk, int from, int to) {
+        int first = from >>> BitStorage.WORD_SHIFT;
+        int last = (to - 1) >>> BitStorage.WORD_SHIFT;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            chunk[first] |= firstMask & lastMask;
+            return;
+        }
+        chunk[first] |= firstMask;
+        for (int i = first + 1; i < last; i++) {
+            chunk[i] = -1L;
+        }
+        chunk[last] |= lastMask;
+    }
+
+    /**
+     * Buffered writer, the buffer is flushed when a record doesn't fit
+     */
+    private static final class Writer {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        private Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * The buffer with at least n bytes remaining
+         */
+        private ByteBuffer reserve(int n) throws IOException {
+            if (buffer.remaining() < n) {
+                flush();
+            }
+            return buffer;
+        }
+
+        private long flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+            return written;
+        }
+    }
+
+    /**
+     * Reader of exactly the bytes asked for, nothing beyond the encoded filter is consumed
+     */
+    private static final class Reader {
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Read n bytes, at most {@link #BUFFER}
+         */
+        private ByteBuffer read(int n) throws IOException {
+            buffer.clear().limit(n);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("encoded filter is truncated");
+                }
+            }
+            return buffer.flip();
+        }
+    }
+
+    private static final class Decoded {
+        private String name;
+        private FilterConfig config;
+        private long currentSize;
+        private long bitCount;
+        private BitStorage storage;
+    }
+}
@@ -0,0 +1,372 @@
+package com.snailmann.bloom.filter.snapshot;
+
+import com.snailmann.bloom.filter.BinaryFuseFilter;
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.LRUBloomFilter;
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.config.LRUFilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import com.snailmann.bloom.filter.storage.MappedBitStorage;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of filters. A snapshot is written to a temp file and moved over the target atomically, so a reader
+ * never sees a partial file. The bitset is loaded by mapping the file, a restarted service answers queries right away
+ * and the pages are read by the os on demand.
+ * <p>
+ * Layout, all numbers little-endian:
+ * <pre>
+ * filter section: header page | bitset, the bitset starts at a page boundary
+ *   header: magic, version, type, k, n, m, p, c, hash seed, currentSize, bitCount, filter seed, createDate,
+ *           modifyDate, data offset, data bytes, name
+ *   bitCount is the population of the bitset. A binary fuse filter keeps the seed of its construction as the
+ *   filter seed and its fingerprints as the bitset, the other filters write 0
+ * lru file:       lru header page | filter section of each generation, oldest first
+ *   header: magic, version, type, maxSize, size, sfpp, ttl, version of generation, template (n, m, k, p, c),
+ *           number of generations, offset of each generation
+ * </pre>
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public final class FilterSnapshots {
+
+    /**
+     * "BLMF"
+     */
+    public static final int MAGIC = 0x464d4c42;
+
+    public static final int VERSION = 2;
+
+    public static final int TYPE_BLOOM = 1;
+    public static final int TYPE_CONCURRENT_BLOOM = 2;
+    public static final int TYPE_LRU_BLOOM = 3;
+    public static final int TYPE_BINARY_FUSE = 4;
+
+    /**
+     * Headers take a page, so the bitset is page aligned in the file
+     */
+    static final int PAGE = 4096;
+
+    private static final int MAX_NAME_BYTES = 1024;
+
+    private static final int COPY_BUFFER = 1024 * 1024;
+
+    private FilterSnapshots() {
+    }
+
+    /**
+     * Write a snapshot of the filter, the file is replaced atomically. The counts are read before the bits and the
+     * bits of a filter are only set, so the snapshot contains every element it counts even while being written to
+     *
+     * @param filter {@link BloomFilter}, {@link ConcurrentBloomFilter}, {@link LRUBloomFilter} or
+     *               {@link BinaryFuseFilter}
+     * @param file   file
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Filter<?> filter, Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (filter instanceof LRUBloomFilter) {
+                    writeLRU((LRUBloomFilter<?>) filter, channel);
+                } else {
+                    writeSection(section(filter), channel, 0);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Map a snapshot as a {@link BloomFilter}. With {@link FileChannel.MapMode#PRIVATE} the filter takes new elements
+     * and the snapshot stays untouched, with {@link FileChannel.MapMode#READ_WRITE} new elements go to the file
+     *
+     * @param file file
+     * @param mode map mode
+     * @return filter
+     * @throws IOException if the file is not a snapshot of bloom filter
+     */
+    public static <R> BloomFilter<R> loadBloomFilter(Path file, FileChannel.MapMode mode) throws IOException {
+        Section section = readSection(file, 0, TYPE_BLOOM);
+        return BloomFilter.restore(section.name, section.config, map(file, 0, section, mode),
+                section.currentSize, section.bitCount);
+    }
+
+    public static <R> ConcurrentBloomFilter<R> loadConcurrentBloomFilter(Path file, FileChannel.MapMode mode) throws IOException {
+        Section section = readSection(file, 0, TYPE_CONCURRENT_BLOOM);
+        return ConcurrentBloomFilter.restore(section.name, section.config, map(file, 0, section, mode),
+                section.currentSize, section.bitCount);
+    }
+
+    /**
+     * Map a snapshot as a {@link BinaryFuseFilter}, read only since the filter is immutable
+     *
+     * @param file file
+     * @return filter
+     * @throws IOException if the file is not a snapshot of binary fuse filter
+     */
+    public static <R> BinaryFuseFilter<R> loadBinaryFuseFilter(Path file) throws IOException {
+        Section section = readSection(file, 0, TYPE_BINARY_FUSE);
+        return BinaryFuseFilter.restore(section.name, section.config, map(file, 0, section, FileChannel.MapMode.READ_ONLY),
+                section.filterSeed);
+    }
+
+    public static <R> LRUBloomFilter<R> loadLRUBloomFilter(Path file, FileChannel.MapMode mode) throws IOException {
+        ByteBuffer header = readPage(file, 0);
+        checkHeader(header, TYPE_LRU_BLOOM);
+        LRUFilterConfig config = new LRUFilterConfig();
+        config.setMaxSize(header.getInt());
+        config.setSize(header.getInt());
+        config.setSfpp(header.getDouble());
+        config.setTtl(Duration.ofMillis(header.getLong()));
+        int version = header.getInt();
+        FilterConfig template = new FilterConfig();
+        template.setN(header.getInt());
+        template.setM(header.getLong());
+        template.setK(header.getInt());
+        template.setP(header.getDouble());
+        template.setC(header.getDouble());
+        config.setTemplateConfig(template);
+        String name = getName(header);
+        int count = header.getInt();
+        List<BloomFilter<R>> generations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long offset = header.getLong();
+            Section section = readSection(file, offset, TYPE_BLOOM);
+            generations.add(BloomFilter.restore(section.name, section.config, map(file, offset, section, mode),
+                    section.currentSize, section.bitCount));
+        }
+        return LRUBloomFilter.restore(name, config, generations, version);
+    }
+
+    private static void writeLRU(LRUBloomFilter<?> filter, FileChannel channel) throws IOException {
+        // the generations are pinned so none is recycled while its bits are copied, writers aren't blocked
+        try (var pinned = filter.pin()) {
+            writeLRU(filter, pinned.generations(), channel);
+        }
+    }
+
+    private static void writeLRU(LRUBloomFilter<?> filter, List<? extends BloomFilter<?>> generations,
+                                 FileChannel channel) throws IOException {
+        List<Section> sections = new ArrayList<>(generations.size());
+        for (BloomFilter<?> generation : generations) {
+            sections.add(section(generation));
+        }
+        LRUFilterConfig config = filter.config();
+        FilterConfig template = config.getTemplateConfig();
+        ByteBuffer header = page();
+        header.putInt(MAGIC).putInt(VERSION).putInt(TYPE_LRU_BLOOM);
+        header.putInt(config.getMaxSize()).putInt(config.getSize()).putDouble(config.getSfpp());
+        header.putLong(config.getTtl().toMillis()).putInt(filter.version());
+        header.putInt(template.getN()).putLong(template.getM()).putInt(template.getK())
+                .putDouble(template.getP()).putDouble(template.getC());
+        putName(header, filter.name());
+        header.putInt(sections.size());
+        long offset = PAGE;
+        for (Section section : sections) {
+            header.putLong(offset);
+            offset += PAGE + align(section.dataBytes);
+        }
+        header.clear();
+        writeFully(channel, header, 0);
+
+        offset = PAGE;
+        for (Section section : sections) {
+            writeSection(section, channel, offset);
+            offset += PAGE + align(section.dataBytes);
+        }
+    }
+
+    private static Section section(Filter<?> filter) {
+        Section section = new Section();
+        if (filter instanceof BloomFilter) {
+            BloomFilter<?> bloomFilter = (BloomFilter<?>) filter;
+            section.type = TYPE_BLOOM;
+            section.name = bloomFilter.name();
+            section.config = bloomFilter.config();
+            section.currentSize = bloomFilter.getCurrentSize();
+            section.bitCount = bloomFilter.getBitCount();
+            section.storage = bloomFilter.storage();
+        } else if (filter instanceof ConcurrentBloomFilter) {
+            ConcurrentBloomFilter<?> bloomFilter = (ConcurrentBloomFilter<?>) filter;
+            section.type = TYPE_CONCURRENT_BLOOM;
+            section.name = bloomFilter.name();
+            section.config = bloomFilter.config();
+            section.currentSize = bloomFilter.getCurrentSize();
+            section.bitCount = bloomFilter.getBitCount();
+            section.storage = bloomFilter.storage();
+        } else if (filter instanceof BinaryFuseFilter) {
+            BinaryFuseFilter<?> fuseFilter = (BinaryFuseFilter<?>) filter;
+            section.type = TYPE_BINARY_FUSE;
+            section.name = fuseFilter.name();
+            section.config = fuseFilter.config();
+            section.currentSize = fuseFilter.getCurrentSize();
+            section.storage = fuseFilter.storage();
+            section.bitCount = section.storage.bitCount(0, section.storage.wordSize());
+            section.filterSeed = fuseFilter.seed();
+        } else {
+            throw new IllegalArgumentException("snapshot is not supported: " + filter.getClass().getName());
+        }
+        section.dataBytes = section.storage.wordSize() << 3;
+        return section;
+    }
+
+    private static void writeSection(Section section, FileChannel channel, long offset) throws IOException {
+        FilterConfig config = section.config;
+        ByteBuffer header = page();
+        header.putInt(MAGIC).putInt(VERSION).putInt(section.type);
+        header.putInt(config.getK()).putInt(config.getN()).putLong(config.getM());
+        header.putDouble(config.getP()).putDouble(config.getC());
+        header.putLong(Murmur3DoubleHash.DEFAULT_SEED);
+        header.putLong(section.currentSize).putLong(section.bitCount).putLong(section.filterSeed);
+        header.putLong(config.getCreateDate()).putLong(config.getModifyDate());
+        header.putLong(PAGE).putLong(section.dataBytes);
+        putName(header, section.name);
+        header.clear();
+        writeFully(channel, header, offset);
+
+        // bits
+        BitStorage storage = section.storage;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        long position = offset + PAGE;
+        long words = storage.wordSize();
+        for (long i = 0; i < words; i++) {
+            buffer.putLong(storage.getWord(i));
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                position += writeFully(channel, buffer, position);
+                buffer.clear();
+            }
+        }
+        buffer.flip();
+        writeFully(channel, buffer, position);
+    }
+
+    private static Section readSection(Path file, long offset, int type) throws IOException {
+        ByteBuffer header = readPage(file, offset);
+        checkHeader(header, type);
+        Section section = new Section();
+        section.type = type;
+        FilterConfig config = new FilterConfig();
+        config.setK(header.getInt());
+        config.setN(header.getInt());
+        config.setM(header.getLong());
+        config.setP(header.getDouble());
+        config.setC(header.getDouble());
+        long seed = header.getLong();
+        if (seed != Murmur3DoubleHash.DEFAULT_SEED) {
+            throw new IOException("hash seed not supported: " + seed);
+        }
+        section.currentSize = header.getLong();
+        section.bitCount = header.getLong();
+        section.filterSeed = header.getLong();
+        config.setCreateDate(header.getLong());
+        config.setModifyDate(header.getLong());
+        section.dataOffset = header.getLong();
+        section.dataBytes = header.getLong();
+        section.name = getName(header);
+        section.config = config;
+        if (section.dataBytes << 3 < config.getM()) {
+            throw new IOException("bitset is smaller than m");
+        }
+        return section;
+    }
+
+    private static MappedBitStorage map(Path file, long offset, Section section, FileChannel.MapMode mode) throws IOException {
+        return new MappedBitStorage(file, offset + section.dataOffset, section.dataBytes << 3, mode);
+    }
+
+    private static void checkHeader(ByteBuffer header, int type) throws IOException {
+        if (header.getInt() != MAGIC) {
+            throw new IOException("not a filter snapshot");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("snapshot version not supported: " + version);
+        }
+        int actual = header.getInt();
+        if (actual != type) {
+            throw new IOException("snapshot type not match, expected: " + type + ", actual: " + actual);
+        }
+    }
+
+    private static ByteBuffer readPage(Path file, long offset) throws IOException {
+        ByteBuffer page = page();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (page.hasRemaining()) {
+                if (channel.read(page, offset + page.position()) < 0) {
+                    throw new IOException("snapshot is truncated");
+                }
+            }
+        }
+        page.flip();
+        return page;
+    }
+
+    private static void putName(ByteBuffer header, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("name is too long");
+        }
+        header.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getName(ByteBuffer header) throws IOException {
+        int length = header.getInt();
+        if (length < 0 || length > MAX_NAME_BYTES) {
+            throw new IOException("snapshot is corrupted");
+        }
+        byte[] bytes = new byte[length];
+        header.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static ByteBuffer page() {
+        return ByteBuffer.allocate(PAGE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + PAGE - 1) & -PAGE;
+    }
+
+    private static final class Section {
+        private int type;
+        private String name;
+        private FilterConfig config;
+        private long currentSize;
+        private long bitCount;
+        private long filterSeed;
+        private long dataOffset;
+        private long dataBytes;
+        private BitStorage storage;
+    }
+}
@@ -0,0 +1,90 @@
+package com.snailmann.bloom.filter.snapshot;
+
+import com.snailmann.bloom.filter.basic.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write snapshots of a filter in a background thread, periodically and on demand. Snapshots run one at a time,
+ * the last one is written on close
+ *
+ * @author liwenjie
+ */
+@Slf4j
+public class SnapshotWriter implements Closeable {
+
+    private final Filter<?> filter;
+
+    private final Path file;
+
+    private final ScheduledExecutorService executor;
+
+    private SnapshotWriter(Filter<?> filter, Path file, Duration interval) {
+        this.filter = filter;
+        this.file = file;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bloom-snapshot-" + filter.name());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (interval != null && !interval.isZero() && !interval.isNegative()) {
+            long millis = interval.toMillis();
+            executor.scheduleWithFixedDelay(this::write, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write a snapshot in the background
+     *
+     * @return completed when the snapshot is written
+     */
+    public CompletableFuture<Void> snapshot() {
+        return CompletableFuture.runAsync(this::write, executor);
+    }
+
+    private void write() {
+        long start = System.nanoTime();
+        try {
+            FilterSnapshots.write(filter, file);
+            log.info("snapshot of filter [{}] is written to {} in {} ms", filter.name(), file,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.error("snapshot of filter [{}] error", filter.name(), e);
+        }
+    }
+
+    /**
+     * Stop the periodic snapshot and write the last one
+     */
+    @Override
+    public void close() {
+        executor.execute(this::write);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Path file() {
+        return this.file;
+    }
+
+    /**
+     * @param filter   filter
+     * @param file     file of snapshot
+     * @param interval interval of periodic snapshot, no periodic snapshot if null or zero
+     * @return writer
+     */
+    public static SnapshotWriter create(Filter<?> filter, Path file, Duration interval) {
+        return new SnapshotWriter(filter, file, interval);
+    }
+}
@@ -0,0 +1,140 @@
+package com.snailmann.bloom.filter.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Bitset storage of a filter, bits are addressed by long index and grouped in 64-bit words.
+ * Bit i is bit (i & 63) of word (i >>> 6). Words are written with CAS, so a storage can be shared by concurrent
+ * writers without a lock
+ *
+ * @author liwenjie
+ */
+public interface BitStorage extends Closeable {
+
+    /**
+     * A word has 64 bits, index >>> WORD_SHIFT is the word of the index
+     */
+    int WORD_SHIFT = 6;
+
+    /**
+     * Number of bits, a multiple of 64
+     *
+     * @return bits
+     */
+    long bitSize();
+
+    /**
+     * Number of 64-bit words
+     *
+     * @return words
+     */
+    default long wordSize() {
+        return bitSize() >>> WORD_SHIFT;
+    }
+
+    /**
+     * Get a word
+     *
+     * @param wordIndex index of word
+     * @return word
+     */
+    long getWord(long wordIndex);
+
+    /**
+     * OR bits into a word with CAS
+     *
+     * @param wordIndex index of word
+     * @param bits      bits to set
+     * @return the word before
+     */
+    long orWord(long wordIndex, long bits);
+
+    /**
+     * Whether the bit is 1
+     *
+     * @param index bit index
+     * @return {@code true} if 1
+     */
+    default boolean get(long index) {
+        // 1L << index only uses the low 6 bits of index
+        return (getWord(index >>> WORD_SHIFT) & (1L << index)) != 0;
+    }
+
+    /**
+     * Set the bit to 1
+     *
+     * @param index bit index
+     * @return {@code true} if the bit was 0 before and this call set it
+     */
+    default boolean set(long index) {
+        long mask = 1L << index;
+        return (orWord(index >>> WORD_SHIFT, mask) & mask) == 0;
+    }
+
+    /**
+     * Number of bits 1 of the words [fromWord, toWord), a word at a time with {@link Long#bitCount(long)}
+     *
+     * @param fromWord first word, inclusive
+     * @param toWord   last word, exclusive
+     * @return bits 1
+     */
+    default long bitCount(long fromWord, long toWord) {
+        long count = 0;
+        for (long i = fromWord; i < toWord; i++) {
+            count += Long.bitCount(getWord(i));
+        }
+        return count;
+    }
+
+    /**
+     * Set all bits to 0
+     */
+    void clear();
+
+    /**
+     * Release the storage, heap and direct storages are released by GC
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    static int wordsOf(long bits) {
+        long words = (bits + Long.SIZE - 1) >>> WORD_SHIFT;
+        return Math.toIntExact(words);
+    }
+
+    /**
+     * Storage on a long[] in the java heap, up to 2^31 - 1 words (about 16 GB)
+     *
+     * @param bits number of bits
+     * @return storage
+     */
+    static BitStorage heap(long bits) {
+        return new HeapBitStorage(bits);
+    }
+
+    /**
+     * Storage on direct byte buffers outside the java heap
+     *
+     * @param bits number of bits
+     * @return storage
+     */
+    static BitStorage direct(long bits) {
+        return new DirectBitStorage(bits);
+    }
+
+    /**
+     * Storage on a memory-mapped file, the file is created or extended as needed
+     *
+     * @param file file
+     * @param bits number of bits
+     * @return storage
+     * @throws IOException if the file can't be mapped
+     */
+    static MappedBitStorage mapped(Path file, long bits) throws IOException {
+        return new MappedBitStorage(file, 0, bits, FileChannel.MapMode.READ_WRITE);
+    }
+}
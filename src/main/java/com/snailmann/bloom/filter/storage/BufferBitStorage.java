@@ -0,0 +1,123 @@
+package com.snailmann.bloom.filter.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bitset on byte buffers, a buffer is limited to 2 GB so the words are split in chunks of 1 GB. Words are
+ * little-endian, so a mapped file is portable across platforms
+ *
+ * @author liwenjie
+ */
+public abstract class BufferBitStorage implements BitStorage {
+
+    /**
+     * A chunk is 2^27 words = 1 GB
+     */
+    protected static final int CHUNK_WORD_SHIFT = 27;
+
+    protected static final long CHUNK_WORDS = 1L << CHUNK_WORD_SHIFT;
+
+    private static final long CHUNK_WORD_MASK = CHUNK_WORDS - 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int ZEROS = 64 * 1024;
+
+    private final long words;
+
+    private final ByteBuffer[] chunks;
+
+    protected BufferBitStorage(long bits) {
+        this.words = (bits + Long.SIZE - 1) >>> WORD_SHIFT;
+        this.chunks = new ByteBuffer[(int) ((words + CHUNK_WORDS - 1) >>> CHUNK_WORD_SHIFT)];
+    }
+
+    /**
+     * Subclass allocates the chunks in its constructor, chunk i has {@link #chunkBytes(int)} bytes
+     *
+     * @param chunk  index of chunk
+     * @param buffer buffer of chunk
+     */
+    protected void setChunk(int chunk, ByteBuffer buffer) {
+        this.chunks[chunk] = buffer;
+    }
+
+    protected int numOfChunks() {
+        return chunks.length;
+    }
+
+    protected ByteBuffer chunk(int chunk) {
+        return chunks[chunk];
+    }
+
+    /**
+     * Bytes of the chunk
+     */
+    protected long chunkBytes(int chunk) {
+        long remaining = words - ((long) chunk << CHUNK_WORD_SHIFT);
+        return Math.min(remaining, CHUNK_WORDS) << 3;
+    }
+
+    @Override
+    public long bitSize() {
+        return words << WORD_SHIFT;
+    }
+
+    @Override
+    public long getWord(long wordIndex) {
+        return (long) LONGS.getAcquire(chunks[(int) (wordIndex >>> CHUNK_WORD_SHIFT)], (int) (wordIndex & CHUNK_WORD_MASK) << 3);
+    }
+
+    @Override
+    public long orWord(long wordIndex, long bits) {
+        ByteBuffer chunk = chunks[(int) (wordIndex >>> CHUNK_WORD_SHIFT)];
+        int offset = (int) (wordIndex & CHUNK_WORD_MASK) << 3;
+        long word = (long) LONGS.getAcquire(chunk, offset);
+        while ((word | bits) != word) {
+            long witness = (long) LONGS.compareAndExchange(chunk, offset, word, word | bits);
+            if (witness == word) {
+                break;
+            }
+            word = witness;
+        }
+        return word;
+    }
+
+    /**
+     * Plain reads chunk by chunk
+     */
+    @Override
+    public long bitCount(long fromWord, long toWord) {
+        VarHandle.acquireFence();
+        long count = 0;
+        long i = fromWord;
+        while (i < toWord) {
+            int chunk = (int) (i >>> CHUNK_WORD_SHIFT);
+            ByteBuffer buffer = chunks[chunk];
+            long end = Math.min(toWord, (long) (chunk + 1) << CHUNK_WORD_SHIFT);
+            for (int offset = (int) (i & CHUNK_WORD_MASK) << 3, last = (int) (((end - 1) & CHUNK_WORD_MASK) << 3);
+                 offset <= last; offset += Long.BYTES) {
+                count += Long.bitCount((long) LONGS.get(buffer, offset));
+            }
+            i = end;
+        }
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        byte[] zeros = new byte[ZEROS];
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer buffer = chunk.duplicate();
+            buffer.clear();
+            while (buffer.remaining() >= ZEROS) {
+                buffer.put(zeros);
+            }
+            buffer.put(zeros, 0, buffer.remaining());
+        }
+        VarHandle.releaseFence();
+    }
+}
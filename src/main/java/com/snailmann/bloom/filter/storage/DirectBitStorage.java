@@ -0,0 +1,20 @@
+package com.snailmann.bloom.filter.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bitset on direct byte buffers outside the java heap, the memory is freed when the storage is collected
+ *
+ * @author liwenjie
+ */
+public class DirectBitStorage extends BufferBitStorage {
+
+    public DirectBitStorage(long bits) {
+        super(bits);
+        for (int i = 0; i < numOfChunks(); i++) {
+            // atomic access of a word needs it aligned to 8 bytes
+            int bytes = (int) chunkBytes(i);
+            setChunk(i, ByteBuffer.allocateDirect(bytes + Long.BYTES).alignedSlice(Long.BYTES).limit(bytes).slice());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.snailmann.bloom.filter.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Bitset on a long[] in the java heap
+ *
+ * @author liwenjie
+ */
+public class HeapBitStorage implements BitStorage {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] words;
+
+    public HeapBitStorage(long bits) {
+        this.words = new long[BitStorage.wordsOf(bits)];
+    }
+
+    @Override
+    public long bitSize() {
+        return (long) words.length << WORD_SHIFT;
+    }
+
+    @Override
+    public long getWord(long wordIndex) {
+        return (long) LONGS.getAcquire(words, (int) wordIndex);
+    }
+
+    @Override
+    public long orWord(long wordIndex, long bits) {
+        int i = (int) wordIndex;
+        long word = (long) LONGS.getAcquire(words, i);
+        while ((word | bits) != word) {
+            long witness = (long) LONGS.compareAndExchange(words, i, word, word | bits);
+            if (witness == word) {
+                break;
+            }
+            word = witness;
+        }
+        return word;
+    }
+
+    /**
+     * Plain reads of the array, the loop is unrolled and counted with popcnt by the JIT
+     */
+    @Override
+    public long bitCount(long fromWord, long toWord) {
+        VarHandle.acquireFence();
+        long count = 0;
+        for (int i = (int) fromWord; i < toWord; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0L);
+        VarHandle.releaseFence();
+    }
+}
@@ -0,0 +1,88 @@
+package com.snailmann.bloom.filter.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bitset on a memory-mapped file, the words start at offset of the file. The pages are loaded by the os on demand,
+ * so a large bitset is usable right after it is mapped and lives outside the java heap
+ * <p>
+ * With {@link FileChannel.MapMode#PRIVATE} writes are copy-on-write and never reach the file
+ *
+ * @author liwenjie
+ */
+public class MappedBitStorage extends BufferBitStorage {
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final FileChannel.MapMode mode;
+
+    /**
+     * @param file   file
+     * @param offset where the words start in the file, must be a multiple of 8 for atomic access
+     * @param bits   number of bits
+     * @param mode   map mode
+     * @throws IOException if the file can't be mapped
+     */
+    public MappedBitStorage(Path file, long offset, long bits, FileChannel.MapMode mode) throws IOException {
+        super(bits);
+        if ((offset & 7) != 0) {
+            throw new IllegalArgumentException("offset must be a multiple of 8");
+        }
+        this.file = file;
+        this.mode = mode;
+        if (mode == FileChannel.MapMode.READ_WRITE) {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else if (mode == FileChannel.MapMode.PRIVATE) {
+            // a private mapping needs a channel opened for both reading and writing, the file is never written
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+        try {
+            long position = offset;
+            for (int i = 0; i < numOfChunks(); i++) {
+                long bytes = chunkBytes(i);
+                if (mode == FileChannel.MapMode.READ_WRITE && channel.size() < position + bytes) {
+                    // extend the file, the new bytes are 0
+                    channel.write(ByteBuffer.allocate(1), position + bytes - 1);
+                }
+                setChunk(i, channel.map(mode, position, bytes));
+                position += bytes;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Flush the dirty pages to the file
+     */
+    public void force() {
+        if (mode == FileChannel.MapMode.READ_WRITE) {
+            for (int i = 0; i < numOfChunks(); i++) {
+                ((MappedByteBuffer) chunk(i)).force();
+            }
+        }
+    }
+
+    public Path file() {
+        return this.file;
+    }
+
+    /**
+     * Close the file, the mapping stays valid until the storage is collected
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
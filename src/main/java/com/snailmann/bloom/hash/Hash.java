@@ -1,7 +1,5 @@
 package com.snailmann.bloom.hash;
 
-import java.util.function.Supplier;
-
 /**
  * @author liwenjie
  */
@@ -21,10 +19,40 @@ public abstract class Hash {
      */
     public abstract int[] hashes(byte[] bytes, int len);
 
+    /**
+     * Hash into a caller-supplied buffer, implementations should override it to avoid allocation
+     *
+     * @param bytes  bytes want to hash
+     * @param len    m
+     * @param indexs result holder, length >= k
+     */
+    public void hashes(byte[] bytes, int len, int[] indexs) {
+        int[] result = hashes(bytes, len);
+        System.arraycopy(result, 0, indexs, 0, result.length);
+    }
+
+    /**
+     * Hash into a caller-supplied buffer with long indexes, every hash supports filters with more than
+     * Integer.MAX_VALUE bits
+     *
+     * @param bytes  bytes want to hash
+     * @param len    m
+     * @param indexs result holder, length >= k
+     */
+    public abstract void hashes(byte[] bytes, long len, long[] indexs);
+
     /**
      * "long & Long.MAX_VALUE" to get a positive number
+     *
+     * @param hash hash value
+     * @param len  m
+     * @return index in [0, len)
      */
-    int index(Supplier<Long> hashSupplier, int len) {
-        return (int) ((hashSupplier.get() & Long.MAX_VALUE) % len);
+    public static int index(long hash, int len) {
+        return (int) ((hash & Long.MAX_VALUE) % len);
+    }
+
+    public static long index(long hash, long len) {
+        return (hash & Long.MAX_VALUE) % len;
     }
 }
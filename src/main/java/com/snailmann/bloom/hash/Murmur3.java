@@ -0,0 +1,145 @@
+package com.snailmann.bloom.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * MurmurHash3 x64 128-bit, the result is written to a caller-supplied long[] so hashing allocates nothing
+ * <p>
+ * {@link "https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp"}
+ *
+ * @author liwenjie
+ */
+public final class Murmur3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * Little-endian long view of byte[]
+     */
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private Murmur3() {
+    }
+
+    /**
+     * Hash bytes[offset, offset + length), out[outOffset] = h1, out[outOffset + 1] = h2
+     *
+     * @param data      bytes want to hash
+     * @param offset    start of bytes
+     * @param length    length of bytes
+     * @param seed      seed
+     * @param out       result holder
+     * @param outOffset where h1 is written, h2 follows
+     */
+    public static void hash128(byte[] data, int offset, int length, long seed, long[] out, int outOffset) {
+        long h1 = seed;
+        long h2 = seed;
+        int blocks = length >>> 4;
+        int p = offset;
+        for (int i = 0; i < blocks; i++, p += 16) {
+            long k1 = (long) LONG_LE.get(data, p);
+            long k2 = (long) LONG_LE.get(data, p + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // tail
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15:
+                k2 ^= (long) (data[p + 14] & 0xff) << 48;
+            case 14:
+                k2 ^= (long) (data[p + 13] & 0xff) << 40;
+            case 13:
+                k2 ^= (long) (data[p + 12] & 0xff) << 32;
+            case 12:
+                k2 ^= (long) (data[p + 11] & 0xff) << 24;
+            case 11:
+                k2 ^= (long) (data[p + 10] & 0xff) << 16;
+            case 10:
+                k2 ^= (long) (data[p + 9] & 0xff) << 8;
+            case 9:
+                k2 ^= data[p + 8] & 0xff;
+                h2 ^= mixK2(k2);
+            case 8:
+                k1 ^= (long) (data[p + 7] & 0xff) << 56;
+            case 7:
+                k1 ^= (long) (data[p + 6] & 0xff) << 48;
+            case 6:
+                k1 ^= (long) (data[p + 5] & 0xff) << 40;
+            case 5:
+                k1 ^= (long) (data[p + 4] & 0xff) << 32;
+            case 4:
+                k1 ^= (long) (data[p + 3] & 0xff) << 24;
+            case 3:
+                k1 ^= (long) (data[p + 2] & 0xff) << 16;
+            case 2:
+                k1 ^= (long) (data[p + 1] & 0xff) << 8;
+            case 1:
+                k1 ^= data[p] & 0xff;
+                h1 ^= mixK1(k1);
+            default:
+                break;
+        }
+        finish(h1, h2, length, out, outOffset);
+    }
+
+    /**
+     * Hash a long as its 8 little-endian bytes, same result as hashing {@code ByteUtils.toBytes(key)}
+     *
+     * @param key       key want to hash
+     * @param seed      seed
+     * @param out       result holder
+     * @param outOffset where h1 is written, h2 follows
+     */
+    public static void hash128(long key, long seed, long[] out, int outOffset) {
+        long h1 = seed ^ mixK1(key);
+        finish(h1, seed, Long.BYTES, out, outOffset);
+    }
+
+    static void finish(long h1, long h2, int length, long[] out, int outOffset) {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        out[outOffset] = h1;
+        out[outOffset + 1] = h2;
+    }
+
+    static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,254 @@
+package com.snailmann.bloom.hash;
+
+import com.snailmann.bloom.utils.ByteUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kirsch–Mitzenmacher double hashing, one Murmur3 128-bit pass yields all k indexes: index(i) = h1 + i * h2
+ * <p>
+ * {@link "https://www.eecs.harvard.edu/~michaelm/postscripts/rsa2008.pdf"}
+ *
+ * @author liwenjie
+ */
+public class Murmur3DoubleHash extends Hash {
+
+    public static final long DEFAULT_SEED = 0x9747b28cL;
+
+    /**
+     * Per-thread scratch, shared by all instances so the hot path allocates nothing once warmed up
+     */
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private final long seed;
+
+    private int k = 2;
+
+    public Murmur3DoubleHash() {
+        this(DEFAULT_SEED);
+    }
+
+    public Murmur3DoubleHash(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void createHashes(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be more than 0");
+        }
+        this.k = k;
+    }
+
+    @Override
+    public int[] hashes(byte[] bytes, int len) {
+        int[] indexs = new int[k];
+        hashes(bytes, len, indexs);
+        return indexs;
+    }
+
+    @Override
+    public void hashes(byte[] bytes, int len, int[] indexs) {
+        long[] h = BUFFER.get().hash;
+        Murmur3.hash128(bytes, 0, bytes.length, seed, h, 0);
+        indexes(h[0], h[1], k, len, indexs, 0);
+    }
+
+    @Override
+    public void hashes(byte[] bytes, long len, long[] indexs) {
+        long[] h = BUFFER.get().hash;
+        Murmur3.hash128(bytes, 0, bytes.length, seed, h, 0);
+        indexes(h[0], h[1], k, len, indexs, 0);
+    }
+
+    /**
+     * Hash to the thread-local buffer, the result is only valid until the next call on the same thread
+     *
+     * @param bytes bytes want to hash
+     * @param len   m
+     * @return indexs, only the first k are meaningful
+     */
+    public long[] indexes(byte[] bytes, long len) {
+        Buffer buffer = BUFFER.get();
+        Murmur3.hash128(bytes, 0, bytes.length, seed, buffer.hash, 0);
+        return buffer.indexes(k, len);
+    }
+
+    /**
+     * Hash a long key by its bits, same indexes as {@link #indexes(byte[], long)} of its 8 little-endian bytes
+     *
+     * @param key key want to hash
+     * @param len m
+     * @return indexs, only the first k are meaningful
+     */
+    public long[] indexes(long key, long len) {
+        Buffer buffer = BUFFER.get();
+        Murmur3.hash128(key, seed, buffer.hash, 0);
+        return buffer.indexes(k, len);
+    }
+
+    /**
+     * Hash the UTF-8 encoding of a char sequence through a thread-local scratch, without creating a String or byte[]
+     *
+     * @param chars chars want to hash
+     * @param len   m
+     * @return indexs, only the first k are meaningful
+     */
+    public long[] indexes(CharSequence chars, long len) {
+        Buffer buffer = BUFFER.get();
+        buffer.hashUtf8(chars, seed);
+        return buffer.indexes(k, len);
+    }
+
+    /**
+     * Derive the indexes of a 128-bit hash to the thread-local buffer, e.g. to probe several filters of the same
+     * shape with one hash
+     *
+     * @param h1  low 64 bits
+     * @param h2  high 64 bits
+     * @param len m
+     * @return indexs, only the first k are meaningful
+     */
+    public long[] indexes(long h1, long h2, long len) {
+        Buffer buffer = BUFFER.get();
+        buffer.hash[0] = h1;
+        buffer.hash[1] = h2;
+        return buffer.indexes(k, len);
+    }
+
+    /**
+     * The 128-bit hash in the thread-local buffer, only valid until the next call on the same thread
+     *
+     * @param bytes bytes want to hash
+     * @return {h1, h2}
+     */
+    public long[] hash128(byte[] bytes) {
+        long[] h = BUFFER.get().hash;
+        Murmur3.hash128(bytes, 0, bytes.length, seed, h, 0);
+        return h;
+    }
+
+    public long[] hash128(long key) {
+        long[] h = BUFFER.get().hash;
+        Murmur3.hash128(key, seed, h, 0);
+        return h;
+    }
+
+    public long[] hash128(CharSequence chars) {
+        Buffer buffer = BUFFER.get();
+        buffer.hashUtf8(chars, seed);
+        return buffer.hash;
+    }
+
+    /**
+     * Hash an element the same way as {@code Filter.put(T)}: Long, Integer and CharSequence by their value,
+     * other elements by the UTF-8 bytes of {@code toString()}
+     *
+     * @param element element want to hash
+     * @param out     result holder
+     * @param offset  where h1 is written, h2 follows
+     */
+    public void hash128(Object element, long[] out, int offset) {
+        if (element instanceof Long) {
+            Murmur3.hash128((Long) element, seed, out, offset);
+        } else if (element instanceof Integer) {
+            Murmur3.hash128((long) (Integer) element, seed, out, offset);
+        } else {
+            long[] h = element instanceof CharSequence
+                    ? hash128((CharSequence) element)
+                    : hash128(element.toString().getBytes(StandardCharsets.UTF_8));
+            out[offset] = h[0];
+            out[offset + 1] = h[1];
+        }
+    }
+
+    /**
+     * Hash a batch of long keys, keys[i] is written to out[2i] and out[2i + 1]
+     *
+     * @param keys keys want to hash
+     * @param out  result holder, length >= 2 * keys.length
+     */
+    public void hash128(long[] keys, long[] out) {
+        for (int i = 0; i < keys.length; i++) {
+            Murmur3.hash128(keys[i], seed, out, i << 1);
+        }
+    }
+
+    /**
+     * Hash a batch of raw keys, keys[i] is written to out[2i] and out[2i + 1]
+     *
+     * @param keys keys want to hash
+     * @param out  result holder, length >= 2 * keys.length
+     */
+    public void hash128(byte[][] keys, long[] out) {
+        for (int i = 0; i < keys.length; i++) {
+            Murmur3.hash128(keys[i], 0, keys[i].length, seed, out, i << 1);
+        }
+    }
+
+    /**
+     * Derive k indexes from a 128-bit hash
+     *
+     * @param h1     low 64 bits
+     * @param h2     high 64 bits
+     * @param k      number of indexes
+     * @param len    m
+     * @param out    result holder
+     * @param offset where the first index is written
+     */
+    public static void indexes(long h1, long h2, int k, int len, int[] out, int offset) {
+        long combined = h1;
+        for (int i = 0; i < k; i++) {
+            out[offset + i] = index(combined, len);
+            combined += h2;
+        }
+    }
+
+    public static void indexes(long h1, long h2, int k, long len, long[] out, int offset) {
+        long combined = h1;
+        for (int i = 0; i < k; i++) {
+            out[offset + i] = index(combined, len);
+            combined += h2;
+        }
+    }
+
+    public int k() {
+        return this.k;
+    }
+
+    public long seed() {
+        return this.seed;
+    }
+
+    private static final class Buffer {
+
+        private final long[] hash = new long[2];
+
+        private long[] indexs = new long[16];
+
+        private byte[] utf8 = new byte[64];
+
+        private long[] indexes(int k, long len) {
+            if (indexs.length < k) {
+                indexs = new long[k];
+            }
+            Murmur3DoubleHash.indexes(hash[0], hash[1], k, len, indexs, 0);
+            return indexs;
+        }
+
+        private void hashUtf8(CharSequence chars, long seed) {
+            byte[] bytes = utf8(chars.length());
+            int length = ByteUtils.encodeUtf8(chars, bytes);
+            Murmur3.hash128(bytes, 0, length, seed, hash, 0);
+        }
+
+        private byte[] utf8(int chars) {
+            // a char takes at most 3 bytes in UTF-8, a surrogate pair takes 4
+            int max = chars * 3;
+            if (utf8.length < max) {
+                utf8 = new byte[max];
+            }
+            return utf8;
+        }
+    }
+}
@@ -30,9 +30,17 @@ public class Murmur3Hash extends Hash {
         int[] indexs = new int[hashes.size()];
         for (int i = 0; i < hashes.size(); i++) {
             var hash = hashes.get(i);
-            indexs[i] = index(() -> hash.hash(hash.hashToLong(bytes)), len);
+            indexs[i] = index(hash.hash(hash.hashToLong(bytes)), len);
         }
         return indexs;
     }
 
+    @Override
+    public void hashes(byte[] bytes, long len, long[] indexs) {
+        for (int i = 0; i < hashes.size(); i++) {
+            var hash = hashes.get(i);
+            indexs[i] = index(hash.hash(hash.hashToLong(bytes)), len);
+        }
+    }
+
 }
@@ -7,6 +7,11 @@ package com.snailmann.bloom.utils;
  */
 public class BloomUtils {
 
+    /**
+     * Max bits of a filter, a heap storage holds up to Integer.MAX_VALUE - 8 words
+     */
+    public static final long MAX_BITS = (long) (Integer.MAX_VALUE - 8) << 6;
+
     /**
      * Computes m (total bits of Bloom filter) which is expected to achieve, for the specified
      * expected insertions, the required false positive probability.
@@ -17,15 +22,15 @@ public class BloomUtils {
      * @param n expected insertions (must be positive)
      * @param p false positive rate (must be 0 < p < 1)
      */
-    public static int optimalNumOfBits(int n, double p) {
+    public static long optimalNumOfBits(int n, double p) {
         if (p == 0) {
             p = Double.MIN_VALUE;
         }
-        return (int) (-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        return (long) Math.min(-n * Math.log(p) / (Math.log(2) * Math.log(2)), MAX_BITS);
     }
 
-    public static int resizeNumOfBits(int n, double b) {
-        return (int) Math.min(n * b, Integer.MAX_VALUE);
+    public static long resizeNumOfBits(int n, double b) {
+        return (long) Math.min(n * b, MAX_BITS);
     }
 
     // Cheat sheet:
@@ -49,7 +54,7 @@ public class BloomUtils {
      * @param n expected elements (must be positive)
      * @param m total number of bits in Bloom filter (must be positive)
      */
-    public static int optimalNumOfHashFunctions(int n, int m) {
+    public static int optimalNumOfHashFunctions(int n, long m) {
         // (m / n) * log(2), but avoid truncation due to division!
         return Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
     }
@@ -63,11 +68,161 @@ public class BloomUtils {
      * Computes the false positive probability
      * 1. p = (1 - e ^ (-kn/m))^k
      */
-    public static double optimalFpp(int n, int m, int k) {
+    public static double optimalFpp(int n, long m, int k) {
         int point = 100000;
         return (double) Math.round((point * Math.pow(1 - Math.exp((double) (-k * n) / m), k))) / point;
     }
 
+    /**
+     * Computes the false positive probability of a blocked bloom filter, every element sets its k bits in one block
+     * of blockBits. The number of elements in a block follows Poisson(n * blockBits / m), a block holding i elements
+     * behaves as a standard filter of blockBits bits:
+     * 1. p = sum(Poisson(i) * (1 - (1 - 1 / blockBits) ^ (k * i)) ^ k)
+     * <p>
+     * {@link "https://www.cs.amherst.edu/~ccmcgeoch/cs34/papers/cacheefficientbloomfilters-jea.pdf"}
+     *
+     * @param n         expected elements
+     * @param m         total number of bits in Bloom filter
+     * @param k         number of hash functions
+     * @param blockBits bits of a block
+     */
+    public static double blockedFpp(int n, long m, int k, int blockBits) {
+        double lambda = (double) n * blockBits / m;
+        double fill = 1 - 1d / blockBits;
+        // Poisson(0), then Poisson(i) = Poisson(i - 1) * lambda / i
+        double poisson = Math.exp(-lambda);
+        double fpp = 0;
+        int max = (int) (lambda + 20 * Math.sqrt(lambda) + 20);
+        for (int i = 0; i <= max; i++) {
+            if (i > 0) {
+                poisson = poisson * lambda / i;
+            }
+            fpp += poisson * Math.pow(1 - Math.pow(fill, (double) k * i), k);
+        }
+        return fpp;
+    }
+
+    /**
+     * Computes m of a blocked bloom filter to achieve the fpp, start with the standard m and grow by 1% until the
+     * blocked fpp is reached, m is a multiple of blockBits and may exceed Integer.MAX_VALUE
+     *
+     * @param n         expected elements
+     * @param p         false positive rate
+     * @param blockBits bits of a block
+     */
+    public static long optimalNumOfBlockedBits(int n, double p, int blockBits) {
+        long m = optimalNumOfBits(n, p);
+        while (true) {
+            long blocks = Math.max(1, (m + blockBits - 1) / blockBits);
+            long bits = blocks * blockBits;
+            int k = optimalNumOfHashFunctions(n, bits);
+            if (blockedFpp(n, bits, k, blockBits) <= p) {
+                return bits;
+            }
+            m = bits + Math.max(blockBits, bits / 100);
+        }
+    }
+
+    /**
+     * Computes the false positive probability of a split-block bloom filter, a block is split into words and every
+     * element sets one bit per word. With i elements in a block, which follows Poisson(n * blockBits / m):
+     * 1. p = sum(Poisson(i) * (1 - (1 - 1 / wordBits) ^ i) ^ (blockBits / wordBits))
+     *
+     * @param n         expected elements
+     * @param m         total number of bits in Bloom filter
+     * @param blockBits bits of a block
+     * @param wordBits  bits of a word
+     */
+    public static double splitBlockFpp(int n, long m, int blockBits, int wordBits) {
+        double lambda = (double) n * blockBits / m;
+        double fill = 1 - 1d / wordBits;
+        int words = blockBits / wordBits;
+        double poisson = Math.exp(-lambda);
+        double fpp = 0;
+        int max = (int) (lambda + 20 * Math.sqrt(lambda) + 20);
+        for (int i = 0; i <= max; i++) {
+            if (i > 0) {
+                poisson = poisson * lambda / i;
+            }
+            fpp += poisson * Math.pow(1 - Math.pow(fill, i), words);
+        }
+        return fpp;
+    }
+
+    /**
+     * Computes m of a split-block bloom filter to achieve the fpp. Start with the parquet estimate
+     * m = -8n / ln(1 - p ^ (1/8)), which ignores the uneven load of blocks, and grow by 1% until
+     * {@link #splitBlockFpp} is reached, m is a multiple of blockBits and may exceed Integer.MAX_VALUE
+     * <p>
+     * {@link "https://github.com/apache/parquet-format/blob/master/BloomFilter.md"}
+     *
+     * @param n         expected elements
+     * @param p         false positive rate
+     * @param blockBits bits of a block
+     * @param wordBits  bits of a word
+     */
+    public static long optimalNumOfSplitBlockBits(int n, double p, int blockBits, int wordBits) {
+        int words = blockBits / wordBits;
+        long m = (long) (-words * (double) n / Math.log(1 - Math.pow(p, 1d / words)));
+        while (true) {
+            long blocks = Math.max(1, (m + blockBits - 1) / blockBits);
+            long bits = blocks * blockBits;
+            if (splitBlockFpp(n, bits, blockBits, wordBits) <= p) {
+                return bits;
+            }
+            m = bits + Math.max(blockBits, bits / 100);
+        }
+    }
+
+    /**
+     * Load factor a cuckoo filter of 4-way buckets reaches before an insert fails
+     * <p>
+     * {@link "https://www.cs.cmu.edu/~dga/papers/cuckoo-conext2014.pdf"}
+     */
+    public static final double CUCKOO_LOAD_FACTOR = 0.95d;
+
+    /**
+     * Fingerprints of a cuckoo bucket
+     */
+    public static final int CUCKOO_BUCKET_SIZE = 4;
+
+    /**
+     * Computes the fingerprint bits of a cuckoo filter to achieve the fpp, a query compares 2 buckets of b
+     * fingerprints:
+     * 1. p ~= 2b / 2 ^ f
+     * 2. f = ceil(log2(2b / p))
+     *
+     * @param p          false positive rate
+     * @param bucketSize fingerprints of a bucket
+     * @return f in [4, 32]
+     */
+    public static int optimalNumOfFingerprintBits(double p, int bucketSize) {
+        int f = (int) Math.ceil(Math.log(2d * bucketSize / p) / Math.log(2));
+        return Math.max(4, Math.min(32, f));
+    }
+
+    /**
+     * Computes the number of buckets of a cuckoo filter filled to the load factor, not rounded to a power of 2: the
+     * alternate bucket is (hash(fingerprint) - i) mod numOfBuckets
+     *
+     * @param n          expected elements
+     * @param bucketSize fingerprints of a bucket
+     */
+    public static long optimalNumOfBuckets(int n, int bucketSize) {
+        return Math.max(1, (long) Math.ceil(n / (bucketSize * CUCKOO_LOAD_FACTOR)));
+    }
+
+    /**
+     * Computes the false positive probability of a cuckoo filter
+     * 1. p = 1 - (1 - 1 / 2 ^ f) ^ 2b
+     *
+     * @param f          fingerprint bits
+     * @param bucketSize fingerprints of a bucket
+     */
+    public static double cuckooFpp(int f, int bucketSize) {
+        return 1 - Math.pow(1 - Math.pow(2, -f), 2d * bucketSize);
+    }
+
     /**
      * Bits occupied per element
      *
@@ -75,7 +230,21 @@ public class BloomUtils {
      * @param m total number of bits in Bloom filter
      * @return b (bits occupied by per element)
      */
-    public static double bitsOfElement(int n, int m) {
+    public static double bitsOfElement(int n, long m) {
         return (double) m / n;
     }
+
+    /**
+     * Fpp of a filter as it is now, a query of an absent element hits k bits each set with the fill ratio:
+     * 1. p = (bitCount / m)^k
+     * It exceeds the configured fpp once the filter holds more than n distinct elements
+     *
+     * @param bitCount number of bits 1
+     * @param m        total number of bits in Bloom filter
+     * @param k        number of hash functions
+     * @return fpp
+     */
+    public static double estimatedFpp(long bitCount, long m, int k) {
+        return Math.pow((double) bitCount / m, k);
+    }
 }
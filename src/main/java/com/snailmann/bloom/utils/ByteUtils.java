@@ -1,5 +1,9 @@
 package com.snailmann.bloom.utils;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
 /**
  * @author liwenjie
  */
@@ -7,15 +11,76 @@ public class ByteUtils {
 
     private static final int B = 8;
 
-    public static int bitCount(byte[] bytes) {
-        int count = 0;
-        for (byte b : bytes) {
-            byte a = b;
-            while (a != 0) {
-                a &= (a - 1);
-                count++;
-            }
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Number of bits 1, 8 bytes at a time with {@link Long#bitCount(long)}
+     *
+     * @param bytes bytes
+     * @return bits 1
+     */
+    public static long bitCount(byte[] bytes) {
+        long count = 0;
+        int i = 0;
+        for (int words = bytes.length & ~(Long.BYTES - 1); i < words; i += Long.BYTES) {
+            count += Long.bitCount((long) LONGS.get(bytes, i));
+        }
+        for (; i < bytes.length; i++) {
+            count += Integer.bitCount(bytes[i] & 0xff);
         }
         return count;
     }
+
+    /**
+     * 8 little-endian bytes of a long
+     *
+     * @param value long value
+     * @return bytes
+     */
+    public static byte[] toBytes(long value) {
+        byte[] bytes = new byte[Long.BYTES];
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[i] = (byte) (value >>> (i * B));
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode chars as UTF-8 into out, the same bytes as {@code chars.toString().getBytes(UTF_8)},
+     * a malformed surrogate is replaced with '?'
+     *
+     * @param chars chars want to encode
+     * @param out   holder, length >= 3 * chars.length()
+     * @return number of bytes written
+     */
+    public static int encodeUtf8(CharSequence chars, byte[] out) {
+        int len = chars.length();
+        int j = 0;
+        for (int i = 0; i < len; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                out[j++] = (byte) c;
+            } else if (c < 0x800) {
+                out[j++] = (byte) (0xc0 | (c >> 6));
+                out[j++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                char d;
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(d = chars.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, d);
+                    out[j++] = (byte) (0xf0 | (cp >> 18));
+                    out[j++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    out[j++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    out[j++] = (byte) (0x80 | (cp & 0x3f));
+                    i++;
+                } else {
+                    out[j++] = '?';
+                }
+            } else {
+                out[j++] = (byte) (0xe0 | (c >> 12));
+                out[j++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                out[j++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return j;
+    }
 }
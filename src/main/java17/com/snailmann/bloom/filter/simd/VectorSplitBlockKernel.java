@@ -0,0 +1,54 @@
+package com.snailmann.bloom.filter.simd;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector kernel, a block is exactly one 256-bit vector: multiply by the salts, shift to get the 8 bit positions and
+ * OR / AND the whole block at once
+ *
+ * @author liwenjie
+ */
+public class VectorSplitBlockKernel implements SplitBlockKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
+
+    private static final IntVector SALTS = IntVector.fromArray(SPECIES, SALT, 0);
+
+    private static final IntVector ONES = IntVector.broadcast(SPECIES, 1);
+
+    /**
+     * Without 256-bit hardware vectors the api is emulated and slower than scalar code
+     *
+     * @return {@code true} if the cpu has 256-bit vectors
+     */
+    public static boolean isSupported() {
+        return IntVector.SPECIES_PREFERRED.vectorBitSize() >= SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public int insert(int[] words, int offset, int hash) {
+        IntVector mask = mask(hash);
+        IntVector block = IntVector.fromArray(SPECIES, words, offset);
+        int changed = block.and(mask).compare(VectorOperators.EQ, 0).trueCount();
+        block.or(mask).intoArray(words, offset);
+        return changed;
+    }
+
+    @Override
+    public boolean check(int[] words, int offset, int hash) {
+        IntVector block = IntVector.fromArray(SPECIES, words, offset);
+        return !block.and(mask(hash)).compare(VectorOperators.EQ, 0).anyTrue();
+    }
+
+    private static IntVector mask(int hash) {
+        IntVector shifts = IntVector.broadcast(SPECIES, hash).mul(SALTS).lanewise(VectorOperators.LSHR, 27);
+        return ONES.lanewise(VectorOperators.LSHL, shifts);
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+}
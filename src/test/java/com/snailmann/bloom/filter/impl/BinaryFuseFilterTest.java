@@ -0,0 +1,74 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BinaryFuseFilter;
+import com.snailmann.bloom.filter.snapshot.FilterSnapshots;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.LongStream;
+
+/**
+ * @author liwenjie
+ */
+class BinaryFuseFilterTest {
+
+    @Test
+    public void fpp_test() throws IOException {
+        var n = 1000000;
+        // duplicated keys are taken once
+        BinaryFuseFilter<Long> filter = BinaryFuseFilter.build("test", LongStream.range(0, n).map(i -> i % (n / 2)));
+        Assert.isTrue(filter.getCurrentSize() == n / 2, "size not match");
+        Assert.isTrue(filter.bitsEachElement() < 9.5, "bits per key: " + filter.bitsEachElement());
+        for (long i = 0; i < n / 2; i++) {
+            Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+        }
+        int fppNum = 0;
+        for (long i = n; i < n * 2L; i++) {
+            if (filter.mightContains(i)) {
+                fppNum++;
+            }
+        }
+        Assert.isTrue((double) fppNum / n < 0.005, "fpp too high: " + fppNum);
+
+        Path file = Files.createTempFile("fuse", ".snapshot");
+        try {
+            FilterSnapshots.write(filter, file);
+            // bitCount of the header is the population of the fingerprints, not the seed
+            ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            long bitCount = filter.storage().bitCount(0, filter.storage().wordSize());
+            Assert.isTrue(header.getLong(60) == bitCount, "bitCount not match");
+            Assert.isTrue(header.getLong(68) == filter.seed(), "filter seed not match");
+            try (BinaryFuseFilter<Long> loaded = FilterSnapshots.loadBinaryFuseFilter(file)) {
+                Assert.isTrue(loaded.seed() == filter.seed(), "seed not match");
+                long[] elements = LongStream.range(0, n).toArray();
+                boolean[] out = new boolean[n];
+                loaded.mightContainsAll(elements, out);
+                for (int i = 0; i < n; i++) {
+                    Assert.isTrue(out[i] == filter.mightContains((long) i), "fingerprints not match: " + i);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void build_test() {
+        BinaryFuseFilter<String> filter = BinaryFuseFilter.build("test", List.of("snail", "mann", "bloom"));
+        Assert.isTrue(filter.mightContains("snail") && filter.mightContains("bloom"), "false negative");
+        BinaryFuseFilter<Long> empty = BinaryFuseFilter.build("empty", new long[0]);
+        Assert.isTrue(!empty.mightContains(1L), "empty filter contains an element");
+        try {
+            empty.put(1L);
+            Assert.isTrue(false, "immutable filter accepted a put");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import com.snailmann.bloom.filter.storage.MappedBitStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @author liwenjie
+ */
+class BitStorageTest {
+
+    @Test
+    public void storage_test() throws IOException {
+        Path file = Files.createTempFile("bloom", ".bits");
+        try (BitStorage mapped = BitStorage.mapped(file, 1000)) {
+            for (BitStorage storage : new BitStorage[]{BitStorage.heap(1000), BitStorage.direct(1000), mapped}) {
+                Assert.isTrue(storage.bitSize() == 1024, "bitSize not match");
+                Assert.isTrue(storage.set(0) && storage.set(63) && storage.set(999), "set failed");
+                Assert.isTrue(!storage.set(63), "bit set twice");
+                Assert.isTrue(storage.get(0) && storage.get(63) && storage.get(999), "bit lost");
+                Assert.isTrue(!storage.get(1) && !storage.get(64), "bit not set");
+                Assert.isTrue(storage.getWord(0) == (1L | 1L << 63), "word not match");
+                storage.clear();
+                Assert.isTrue(storage.getWord(0) == 0 && !storage.get(999), "clear failed");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void mapped_filter_test() throws IOException {
+        var n = 10000;
+        FilterConfig config = FilterConfig.config(n, 0.001);
+        Path file = Files.createTempFile("bloom", ".bits");
+        try {
+            try (BloomFilter<Long> filter = BloomFilter.create("test", config, BitStorage.mapped(file, config.getM()))) {
+                for (long i = 0; i < n; i++) {
+                    filter.put(i);
+                }
+            }
+            // map the file again, the bits are read back from the file
+            MappedBitStorage storage = new MappedBitStorage(file, 0, config.getM(), FileChannel.MapMode.READ_ONLY);
+            try (ConcurrentBloomFilter<Long> filter = ConcurrentBloomFilter.create("test", config, storage)) {
+                for (long i = 0; i < n; i++) {
+                    Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+                }
+                var fppNum = 0;
+                for (long i = n; i < n * 2; i++) {
+                    if (filter.mightContains(i)) {
+                        fppNum++;
+                    }
+                }
+                Assert.isTrue((double) fppNum / n < 0.002, "fpp too high");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BlockedBloomFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.utils.BloomUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+
+/**
+ * @author liwenjie
+ */
+@Slf4j
+class BlockedBloomFilterTest {
+
+    @Test
+    public void fpp_test() {
+        var n = 100000;
+        var p = 0.001;
+        BlockedBloomFilter<Long> filter = BlockedBloomFilter.create("test", n, p);
+        System.out.println(filter.config());
+        for (long i = 0; i < n; i++) {
+            filter.put(i);
+        }
+        for (long i = 0; i < n; i++) {
+            Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+        }
+        int fppNum = 0;
+        for (long i = n; i < n * 2L; i++) {
+            if (filter.mightContains(i)) {
+                fppNum++;
+            }
+        }
+        var fpp = (double) fppNum / n;
+        System.out.println(String.format("total: %s, false: %s, fpp: %s", n, fppNum, BigDecimal.valueOf(fpp)));
+        Assert.isTrue(fpp < p * 1.5, "fpp too high");
+    }
+
+    @Test
+    public void sizing_test() {
+        var n = 100000;
+        var p = 0.001;
+        long m = BloomUtils.optimalNumOfBlockedBits(n, p, BlockedBloomFilter.BLOCK_BITS);
+        Assert.isTrue(m % BlockedBloomFilter.BLOCK_BITS == 0, "m must be a multiple of block bits");
+        Assert.isTrue(m > BloomUtils.optimalNumOfBits(n, p), "blocked filter needs more bits");
+        int k = BloomUtils.optimalNumOfHashFunctions(n, m);
+        Assert.isTrue(BloomUtils.blockedFpp(n, m, k, BlockedBloomFilter.BLOCK_BITS) <= p, "fpp not reached");
+
+        // past 2^31 bits m is not capped, a config beyond one buffer is rejected before allocation
+        long large = BloomUtils.optimalNumOfBlockedBits(300_000_000, p, BlockedBloomFilter.BLOCK_BITS);
+        Assert.isTrue(large > Integer.MAX_VALUE && large % BlockedBloomFilter.BLOCK_BITS == 0, "m capped: " + large);
+        try {
+            BlockedBloomFilter.create("test", FilterConfig.blockedConfig(Integer.MAX_VALUE, 1e-6,
+                    BlockedBloomFilter.BLOCK_BITS));
+            Assert.isTrue(false, "oversize config accepted");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.BulkLoader;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * @author liwenjie
+ */
+class BulkLoaderTest {
+
+    @Test
+    public void load_test() throws IOException {
+        var n = 300000;
+        BloomFilter<Long> expected = BloomFilter.create("expected", n, 0.01);
+        for (long i = 0; i < n; i++) {
+            expected.put(i);
+        }
+        // small batches and file ranges, so the load is spread over many tasks
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BulkLoader loader = BulkLoader.create(pool, 1000);
+        try {
+            BloomFilter<Long> fromStream = BloomFilter.create("stream", n, 0.01);
+            Assert.isTrue(loader.load(fromStream, LongStream.range(0, n).boxed()) == n, "stream not loaded");
+            assertSame(expected, fromStream);
+
+            BloomFilter<Long> fromLongs = BloomFilter.create("longs", n, 0.01);
+            Assert.isTrue(loader.load(fromLongs, LongStream.range(0, n)) == n, "longs not loaded");
+            assertSame(expected, fromLongs);
+
+            Path file = Files.createTempFile("bulk", ".longs");
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(n * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (long i = 0; i < n; i++) {
+                    buffer.putLong(i);
+                }
+                Files.write(file, buffer.array());
+                ConcurrentBloomFilter<Long> fromFile = ConcurrentBloomFilter.create("file", expected.config());
+                Assert.isTrue(loader.loadLongs(fromFile, file) == n, "file not loaded");
+                Assert.isTrue(fromFile.getBitCount() == expected.getBitCount(), "bitCount not exact");
+            } finally {
+                Files.delete(file);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void load_lines_test() throws IOException {
+        var n = 100000;
+        BloomFilter<String> expected = BloomFilter.create("expected", n, 0.01);
+        for (int i = 0; i < n; i++) {
+            expected.put("id-" + i);
+        }
+        Path file = Files.createTempFile("bulk", ".lines");
+        try {
+            // CRLF and empty lines
+            String text = IntStream.range(0, n).mapToObj(i -> "id-" + i + (i % 3 == 0 ? "\r\n\n" : "\n"))
+                    .collect(Collectors.joining());
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            BloomFilter<String> filter = BloomFilter.create("lines", n, 0.01);
+            Assert.isTrue(BulkLoader.create().loadLines(filter, file) == n, "lines not loaded");
+            assertSame(expected, filter);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertSame(BloomFilter<?> expected, BloomFilter<?> actual) {
+        Assert.isTrue(actual.getCurrentSize() == expected.getCurrentSize(), "currentSize not exact");
+        Assert.isTrue(actual.getBitCount() == expected.getBitCount(), "bitCount not exact");
+        for (long i = 0; i < expected.storage().wordSize(); i++) {
+            Assert.isTrue(actual.storage().getWord(i) == expected.storage().getWord(i), "bits not match: " + i);
+        }
+    }
+}
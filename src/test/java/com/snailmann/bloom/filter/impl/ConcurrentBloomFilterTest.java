@@ -0,0 +1,69 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author liwenjie
+ */
+@Slf4j
+class ConcurrentBloomFilterTest {
+
+    @Test
+    public void fpp_test() throws InterruptedException {
+        var n = 30000;
+        var p = 0.001;
+        ConcurrentBloomFilter<Integer> filter = ConcurrentBloomFilter.create("test", n, p);
+        ExecutorService executor = Executors.newFixedThreadPool(30);
+        for (int i = 0; i < n; i++) {
+            int index = i;
+            executor.execute(() -> filter.put(index));
+        }
+        executor.shutdown();
+        Assert.isTrue(executor.awaitTermination(1, TimeUnit.MINUTES), "put timeout");
+        Assert.isTrue(filter.getCurrentSize() == n, "currentSize not match");
+
+        for (int i = 0; i < n; i++) {
+            Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+        }
+        int fppNum = 0;
+        for (int i = n; i < n * 2; i++) {
+            if (filter.mightContains(i)) {
+                fppNum++;
+            }
+        }
+        var fpp = (double) fppNum / n;
+        System.out.println(String.format("total: %s, false: %s, fpp: %s", n, fppNum, BigDecimal.valueOf(fpp)));
+        Assert.isTrue(fpp < p * 2, "fpp too high");
+    }
+
+    @Test
+    public void bit_count_test() throws InterruptedException {
+        ConcurrentBloomFilter<Integer> filter = ConcurrentBloomFilter.create("test", 1000, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        // every thread puts the same elements, each bit must be counted exactly once
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    filter.put(i);
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.isTrue(executor.awaitTermination(1, TimeUnit.MINUTES), "put timeout");
+
+        ConcurrentBloomFilter<Integer> serial = ConcurrentBloomFilter.create("serial", 1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            serial.put(i);
+        }
+        Assert.isTrue(filter.getBitCount() == serial.getBitCount(), "bitCount not match");
+        Assert.isTrue(filter.getCurrentSize() == 8000, "currentSize not match");
+    }
+}
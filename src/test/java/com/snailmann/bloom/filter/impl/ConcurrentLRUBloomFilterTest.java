@@ -0,0 +1,63 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.ConcurrentLRUBloomFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author liwenjie
+ */
+class ConcurrentLRUBloomFilterTest {
+
+    @Test
+    public void rotate_test() throws InterruptedException {
+        var sn = 40000;
+        var maxSize = 4;
+        ConcurrentLRUBloomFilter<Integer> filter = ConcurrentLRUBloomFilter.create("test", sn, 0.01, maxSize);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        // twice the capacity, the first generations are rotated out
+        for (int t = 0; t < 32; t++) {
+            int from = t * (sn * 2 / 32);
+            executor.execute(() -> {
+                for (int i = from; i < from + sn * 2 / 32; i++) {
+                    filter.put(i);
+                    filter.mightContains(i);
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.isTrue(executor.awaitTermination(1, TimeUnit.MINUTES), "put timeout");
+        Assert.isTrue(filter.numOfGenerations() == maxSize, "generations not match");
+        var generations = filter.generations();
+        long size = 0;
+        for (var generation : generations) {
+            size += generation.getCurrentSize();
+        }
+        // only a few elements overfill a generation while it is rotated
+        Assert.isTrue(size <= sn + 32L * maxSize, "generation overfilled: " + size);
+
+        int fppNum = 0;
+        for (int i = sn * 2; i < sn * 3; i++) {
+            if (filter.mightContains(i)) {
+                fppNum++;
+            }
+        }
+        Assert.isTrue((double) fppNum / sn < 0.02, "fpp too high");
+    }
+
+    @Test
+    public void ttl_test() throws InterruptedException {
+        ConcurrentLRUBloomFilter<Long> filter = ConcurrentLRUBloomFilter.create("test", 1000, 0.01, 2, Duration.ofMillis(50));
+        filter.put(1L);
+        Assert.isTrue(filter.mightContains(1L), "false negative");
+        Thread.sleep(100);
+        filter.put(2L);
+        Assert.isTrue(filter.numOfGenerations() == 1, "expired generation not evicted");
+        Assert.isTrue(!filter.mightContains(1L) && filter.mightContains(2L), "expired element found");
+    }
+}
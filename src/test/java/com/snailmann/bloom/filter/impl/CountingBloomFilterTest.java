@@ -0,0 +1,121 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.CountingBloomFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.hash.Murmur3DoubleHash;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+/**
+ * @author liwenjie
+ */
+class CountingBloomFilterTest {
+
+    @Test
+    public void remove_test() {
+        var n = 10000;
+        CountingBloomFilter<Long> filter = CountingBloomFilter.create("test", n, 0.01);
+        long[] elements = new long[n];
+        for (int i = 0; i < n; i++) {
+            elements[i] = i;
+        }
+        filter.putAll(elements);
+        filter.put("snail");
+        Assert.isTrue(filter.getCurrentSize() == n + 1, "size not match");
+
+        // remove the even elements, the odd ones are kept
+        for (long i = 0; i < n; i += 2) {
+            Assert.isTrue(filter.remove(i), "element not removed: " + i);
+        }
+        Assert.isTrue(filter.remove("snail") && !filter.mightContains("snail"), "char sequence not removed");
+        int found = 0;
+        for (long i = 0; i < n; i++) {
+            if (i % 2 == 1) {
+                Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+            } else if (filter.mightContains(i)) {
+                found++;
+            }
+        }
+        Assert.isTrue((double) found / (n / 2) < 0.02, "removed elements still found: " + found);
+        Assert.isTrue(filter.getCurrentSize() == n / 2, "size not match");
+    }
+
+    @Test
+    public void saturate_test() {
+        CountingBloomFilter<Long> filter = CountingBloomFilter.create("test", FilterConfig.config(100, 0.01));
+        for (int i = 0; i < 20; i++) {
+            filter.put(1L);
+        }
+        Assert.isTrue(filter.getSaturated() > 0, "counter not saturated");
+        // a saturated counter stays, the element is never lost
+        for (int i = 0; i < 20; i++) {
+            filter.remove(1L);
+        }
+        Assert.isTrue(filter.mightContains(1L), "saturated element lost");
+        Assert.isTrue(!filter.remove(2L), "absent element removed");
+    }
+
+    @Test
+    public void repeated_index_test() {
+        // 96 counters and k = 7, an element often hits a counter twice
+        FilterConfig config = FilterConfig.config(10, 0.01);
+        Murmur3DoubleHash murmur3 = new Murmur3DoubleHash();
+        murmur3.createHashes(config.getK());
+        int checked = 0;
+        for (long y = 0; y < 1000 && checked < 20; y++) {
+            long[] indexs = murmur3.indexes(y, config.getM());
+            long repeated = repeatedIndex(indexs, config.getK());
+            if (repeated < 0) {
+                continue;
+            }
+            // other elements set the counters of y, the repeated counter to 1
+            CountingBloomFilter<Long> filter = CountingBloomFilter.create("test", FilterConfig.copyOf(config));
+            for (long x = 1000; x < 3000 && !filter.mightContains(y); x++) {
+                filter.put(x);
+                if (filter.countOf(repeated) > 1) {
+                    break;
+                }
+            }
+            if (!filter.mightContains(y) || filter.countOf(repeated) != 1) {
+                continue;
+            }
+            int[] before = counts(filter, config.getM());
+            Assert.isTrue(filter.remove(y), "element not removed: " + y);
+            int[] after = counts(filter, config.getM());
+            for (int i = 0; i < before.length; i++) {
+                boolean hit = contains(indexs, config.getK(), i);
+                Assert.isTrue(hit ? after[i] <= before[i] : after[i] == before[i], "counter corrupted: " + i);
+            }
+            checked++;
+        }
+        Assert.isTrue(checked > 0, "no element of repeated indexes");
+    }
+
+    private static long repeatedIndex(long[] indexs, int k) {
+        for (int i = 0; i < k; i++) {
+            for (int j = i + 1; j < k; j++) {
+                if (indexs[i] == indexs[j]) {
+                    return indexs[i];
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean contains(long[] indexs, int k, long index) {
+        for (int i = 0; i < k; i++) {
+            if (indexs[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] counts(CountingBloomFilter<Long> filter, long m) {
+        int[] counts = new int[(int) m];
+        for (int i = 0; i < m; i++) {
+            counts[i] = filter.countOf(i);
+        }
+        return counts;
+    }
+}
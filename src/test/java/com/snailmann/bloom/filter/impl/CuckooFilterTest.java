@@ -0,0 +1,104 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.ConcurrentCuckooFilter;
+import com.snailmann.bloom.filter.CuckooFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author liwenjie
+ */
+class CuckooFilterTest {
+
+    @Test
+    public void fpp_test() {
+        // just past 32768 buckets at the load factor, the buckets are not rounded up to 65536
+        var n = 125000;
+        var p = 0.001;
+        CuckooFilter<Long> filter = CuckooFilter.create("test", n, p);
+        long[] elements = new long[n];
+        for (int i = 0; i < n; i++) {
+            elements[i] = i;
+        }
+        filter.putAll(elements);
+        Assert.isTrue(filter.getCurrentSize() == n, "size not match");
+        // fewer bits per element than a bloom filter of the same fpp when filled
+        Assert.isTrue(filter.config().getM() < FilterConfig.config(n, p).getM(), "more bits than bloom filter");
+        Assert.isTrue(filter.numOfBuckets() == (long) Math.ceil(n / (4 * 0.95)), "buckets: " + filter.numOfBuckets());
+
+        for (long i = 0; i < n; i++) {
+            Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+        }
+        int fppNum = 0;
+        for (long i = n; i < n * 2L; i++) {
+            if (filter.mightContains(i)) {
+                fppNum++;
+            }
+        }
+        Assert.isTrue((double) fppNum / n < p * 1.5, "fpp too high: " + fppNum);
+
+        for (long i = 0; i < n; i += 2) {
+            Assert.isTrue(filter.remove(i), "element not removed: " + i);
+        }
+        for (long i = 1; i < n; i += 2) {
+            Assert.isTrue(filter.mightContains(i), "false negative after remove: " + i);
+        }
+        Assert.isTrue(filter.getCurrentSize() == n / 2, "size not match");
+    }
+
+    @Test
+    public void full_test() {
+        CuckooFilter<Long> filter = CuckooFilter.create("test", 1000, 0.01);
+        long slots = filter.numOfBuckets() * 4;
+        long i = 0;
+        try {
+            for (; i < slots * 2; i++) {
+                filter.put(i);
+            }
+            Assert.isTrue(false, "full filter accepted puts");
+        } catch (IllegalStateException e) {
+            // a full filter rejects the put, the elements put before are kept
+            Assert.isTrue(filter.loadFactor() > 0.9, "full too early: " + filter.loadFactor());
+        }
+        for (long j = 0; j < i; j++) {
+            Assert.isTrue(filter.mightContains(j), "false negative: " + j);
+        }
+    }
+
+    @Test
+    public void concurrent_test() throws Exception {
+        var n = 200000;
+        ConcurrentCuckooFilter<Long> filter = ConcurrentCuckooFilter.create("test", n, 0.001);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            long from = (long) t * (n / 16);
+            futures.add(executor.submit(() -> {
+                for (long i = from; i < from + n / 16; i++) {
+                    filter.put(i);
+                    Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+                }
+                for (long i = from; i < from + n / 16; i += 2) {
+                    Assert.isTrue(filter.remove(i), "element not removed: " + i);
+                }
+            }));
+        }
+        executor.shutdown();
+        // failed asserts of the workers are thrown by get
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        Assert.isTrue(filter.getCurrentSize() == n / 2, "size not match");
+        for (long i = 1; i < n; i += 2) {
+            Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.snailmann.bloom.filter.impl;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis stand-in of the commands used by the filters, a connection collects its replies until the pipeline is closed.
+ * Commands are applied under the lock of the instance, so background flushes and pulls may run at the same time
+ *
+ * @author liwenjie
+ */
+class FakeRedis {
+
+    private final Map<String, BitSet> bits = new HashMap<>();
+    private final Map<String, Long> counters = new HashMap<>();
+    private int pipelines;
+
+    /**
+     * Every command fails, redis is down
+     */
+    private boolean down;
+
+    StringRedisTemplate template() {
+        RedisConnectionFactory factory = (RedisConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{RedisConnectionFactory.class}, (proxy, method, args) ->
+                        "getConnection".equals(method.getName()) ? connection() : null);
+        return new StringRedisTemplate(factory);
+    }
+
+    synchronized void setDown(boolean down) {
+        this.down = down;
+    }
+
+    synchronized int pipelines() {
+        return pipelines;
+    }
+
+    private RedisConnection connection() {
+        List<Object> replies = new ArrayList<>();
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{RedisConnection.class}, (proxy, method, args) -> invoke(replies, method.getName(), args));
+    }
+
+    private synchronized Object invoke(List<Object> replies, String command, Object[] args) {
+        if (down && !"close".equals(command)) {
+            throw new RedisConnectionFailureException("redis is down");
+        }
+        switch (command) {
+            case "openPipeline":
+                replies.clear();
+                pipelines++;
+                return null;
+            case "closePipeline":
+                return new ArrayList<>(replies);
+            case "isPipelined":
+            case "isQueueing":
+            case "isClosed":
+                return false;
+            case "setBit": {
+                BitSet set = bits.computeIfAbsent(key(args[0]), k -> new BitSet());
+                int offset = Math.toIntExact((long) args[1]);
+                replies.add(set.get(offset));
+                set.set(offset, (boolean) args[2]);
+                return null;
+            }
+            case "getBit": {
+                BitSet set = bits.get(key(args[0]));
+                replies.add(set != null && set.get(Math.toIntExact((long) args[1])));
+                return null;
+            }
+            case "bitCount": {
+                BitSet set = bits.get(key(args[0]));
+                replies.add(set == null ? 0L : (long) set.cardinality());
+                return null;
+            }
+            case "incr":
+                replies.add(counters.merge(key(args[0]), 1L, Long::sum));
+                return null;
+            case "incrBy":
+                replies.add(counters.merge(key(args[0]), (long) args[1], Long::sum));
+                return null;
+            case "get": {
+                Long value = counters.get(key(args[0]));
+                replies.add(value == null ? null : value.toString().getBytes(StandardCharsets.UTF_8));
+                return null;
+            }
+            case "getRange": {
+                // redis strings are MSB first
+                BitSet set = bits.getOrDefault(key(args[0]), new BitSet());
+                int length = (set.length() + 7) >>> 3;
+                int from = Math.toIntExact((long) args[1]);
+                int to = Math.min(length, Math.toIntExact((long) args[2]) + 1);
+                byte[] range = new byte[Math.max(0, to - from)];
+                for (int i = 0; i < range.length; i++) {
+                    for (int b = 0; b < Byte.SIZE; b++) {
+                        if (set.get(((from + i) << 3) + b)) {
+                            range[i] |= 0x80 >>> b;
+                        }
+                    }
+                }
+                replies.add(range);
+                return null;
+            }
+            case "del": {
+                long deleted = 0;
+                for (byte[] key : (byte[][]) args[0]) {
+                    deleted += (bits.remove(key(key)) != null ? 1 : 0) + (counters.remove(key(key)) != null ? 1 : 0);
+                }
+                replies.add(deleted);
+                return null;
+            }
+            case "close":
+                return null;
+            default:
+                throw new UnsupportedOperationException(command);
+        }
+    }
+
+    private static String key(Object key) {
+        return new String((byte[]) key, StandardCharsets.UTF_8);
+    }
+}
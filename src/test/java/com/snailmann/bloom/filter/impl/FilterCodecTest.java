@@ -0,0 +1,112 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.snapshot.FilterCodec;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+
+/**
+ * @author liwenjie
+ */
+class FilterCodecTest {
+
+    @Test
+    public void sparse_test() throws IOException {
+        BloomFilter<Long> filter = BloomFilter.create("sparse", 1000000, 0.01);
+        long raw = filter.bitsOfFilter() / 8;
+
+        // empty: one byte a chunk
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = FilterCodec.encode(filter, out);
+        Assert.isTrue(written == out.size() && written < 1024, "empty filter encoded to " + written + " bytes");
+        assertSame(filter, FilterCodec.decodeBloomFilter(new ByteArrayInputStream(out.toByteArray())));
+
+        // 1% filled: arrays of positions
+        for (long i = 0; i < 10000; i++) {
+            filter.put(i);
+        }
+        out.reset();
+        written = FilterCodec.encode(filter, out);
+        Assert.isTrue(written < raw / 5, "sparse filter encoded to " + written + " of " + raw + " bytes");
+        BloomFilter<Long> decoded = FilterCodec.decodeBloomFilter(new ByteArrayInputStream(out.toByteArray()));
+        assertSame(filter, decoded);
+        for (long i = 0; i < 10000; i++) {
+            Assert.isTrue(decoded.mightContains(i), "false negative");
+        }
+
+        // full: raw chunks, a byte a chunk more than the bitset
+        for (long i = 10000; i < 1000000; i++) {
+            filter.put(i);
+        }
+        out.reset();
+        written = FilterCodec.encode(filter, out);
+        Assert.isTrue(written < raw + 1024, "full filter encoded to " + written + " of " + raw + " bytes");
+        assertSame(filter, FilterCodec.decodeBloomFilter(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    public void runs_test() throws IOException {
+        // runs of 1s, e.g. a merged or a partially saturated region, off heap
+        FilterConfig config = FilterConfig.config(100000, 0.01);
+        BitStorage storage = BitStorage.direct(config.getM());
+        for (long i = 100; i < 3000; i++) {
+            storage.orWord(i, -1L);
+        }
+        storage.orWord(5000, 0xf0f0L);
+        storage.orWord(BitStorage.wordsOf(config.getM()) - 1, 1L);
+        long bitCount = FilterCodecTest.bitCount(storage, config.getM());
+        ConcurrentBloomFilter<Long> filter = ConcurrentBloomFilter.restore("runs", config, storage, 0, bitCount);
+
+        // two filters back to back on one stream
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long first = FilterCodec.encode(filter, Channels.newChannel(out));
+        FilterCodec.encode(filter, out);
+        Assert.isTrue(first < 200, "runs encoded to " + first + " bytes");
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertSame(filter, FilterCodec.decodeConcurrentBloomFilter(Channels.newChannel(in)));
+        ConcurrentBloomFilter<Long> second = FilterCodec.decodeConcurrentBloomFilter(in);
+        assertSame(filter, second);
+        Assert.isTrue(second.getBitCount() == bitCount, "bit count");
+        Assert.isTrue(in.read() < 0, "bytes left");
+
+        // type checked
+        try {
+            FilterCodec.decodeBloomFilter(new ByteArrayInputStream(out.toByteArray()));
+            Assert.isTrue(false, "type not checked");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    private static void assertSame(BloomFilter<?> expected, BloomFilter<?> actual) {
+        Assert.isTrue(expected.name().equals(actual.name()), "name");
+        Assert.isTrue(expected.getCurrentSize() == actual.getCurrentSize(), "size");
+        Assert.isTrue(expected.getBitCount() == actual.getBitCount(), "bit count");
+        assertSameBits(expected.storage(), actual.storage(), expected.bitsOfFilter());
+    }
+
+    private static void assertSame(ConcurrentBloomFilter<?> expected, ConcurrentBloomFilter<?> actual) {
+        Assert.isTrue(expected.name().equals(actual.name()), "name");
+        Assert.isTrue(expected.config().getK() == actual.config().getK(), "k");
+        assertSameBits(expected.storage(), actual.storage(), expected.bitsOfFilter());
+    }
+
+    private static void assertSameBits(BitStorage expected, BitStorage actual, long m) {
+        for (long i = 0; i < BitStorage.wordsOf(m); i++) {
+            Assert.isTrue(expected.getWord(i) == actual.getWord(i), "word " + i);
+        }
+    }
+
+    private static long bitCount(BitStorage storage, long m) {
+        return storage.bitCount(0, BitStorage.wordsOf(m));
+    }
+}
@@ -0,0 +1,95 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.ConcurrentLRUBloomFilter;
+import com.snailmann.bloom.filter.FilterEstimator;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import com.snailmann.bloom.utils.ByteUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.util.Random;
+
+/**
+ * @author liwenjie
+ */
+class FilterEstimatorTest {
+
+    @Test
+    public void estimate_test() {
+        FilterEstimator estimator = FilterEstimator.create();
+        BloomFilter<Long> a = BloomFilter.create("a", 100000, 0.01);
+        ConcurrentBloomFilter<Long> b = ConcurrentBloomFilter.create("b", 100000, 0.01);
+        // a: [0, 60000) twice, b: [40000, 100000), 20000 in both
+        for (long i = 0; i < 60000; i++) {
+            a.put(i);
+            a.put(i);
+            b.put(i + 40000);
+        }
+        Assert.isTrue(a.getCurrentSize() == 120000, "puts not counted");
+        Assert.isTrue(estimator.bitCount(a) == a.getBitCount(), "bit count: " + estimator.bitCount(a));
+
+        double size = estimator.estimateSize(a);
+        Assert.isTrue(Math.abs(size - 60000) < 600, "distinct size: " + size);
+        double union = estimator.estimateUnionSize(a, b);
+        Assert.isTrue(Math.abs(union - 100000) < 1500, "union size: " + union);
+        double intersection = estimator.estimateIntersectionSize(a, b);
+        Assert.isTrue(Math.abs(intersection - 20000) < 1500, "intersection size: " + intersection);
+        double fpp = estimator.estimateFpp(a);
+        Assert.isTrue(fpp > 0.0005 && fpp < 0.002, "fpp: " + fpp);
+
+        BloomFilter<Long> other = BloomFilter.create("other", 1000, 0.01);
+        try {
+            estimator.estimateUnionSize(a, other);
+            Assert.isTrue(false, "filters of different m");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parallel_test() {
+        // about 150000 words, split into tasks, on direct storage
+        FilterConfig config = FilterConfig.config(1000000, 0.01);
+        BloomFilter<Long> filter = BloomFilter.create("direct", config, BitStorage.direct(config.getM()));
+        for (long i = 0; i < 500000; i++) {
+            filter.put(i);
+        }
+        long sequential = FilterEstimator.create().bitCount(filter);
+        Assert.isTrue(sequential == filter.getBitCount(), "bit count: " + sequential);
+        Assert.isTrue(FilterEstimator.parallel().bitCount(filter) == sequential, "parallel bit count");
+        double size = FilterEstimator.parallel().estimateSize(filter);
+        Assert.isTrue(Math.abs(size - 500000) < 5000, "distinct size: " + size);
+    }
+
+    @Test
+    public void lru_test() {
+        // 4 generations of 2500, every element is put to 2 generations
+        ConcurrentLRUBloomFilter<Long> lru = ConcurrentLRUBloomFilter.create("lru", 10000, 0.01, 4);
+        for (long i = 0; i < 5000; i++) {
+            lru.put(i);
+        }
+        for (long i = 0; i < 5000; i++) {
+            lru.put(i);
+        }
+        Assert.isTrue(lru.numOfGenerations() == 4, "generations");
+        double size = FilterEstimator.create().estimateSize(lru);
+        Assert.isTrue(Math.abs(size - 5000) < 150, "distinct size: " + size);
+    }
+
+    @Test
+    public void byte_bit_count_test() {
+        Random random = new Random(7);
+        for (int length : new int[]{0, 1, 7, 8, 9, 1000}) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            long expected = 0;
+            for (byte b : bytes) {
+                expected += Integer.bitCount(b & 0xff);
+            }
+            Assert.isTrue(ByteUtils.bitCount(bytes) == expected, "bit count of " + length + " bytes");
+        }
+    }
+}
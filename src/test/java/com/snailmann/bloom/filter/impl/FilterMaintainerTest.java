@@ -0,0 +1,67 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.ConcurrentLRUBloomFilter;
+import com.snailmann.bloom.filter.LRUBloomFilter;
+import com.snailmann.bloom.filter.maintenance.FilterMaintainer;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @author liwenjie
+ */
+class FilterMaintainerTest {
+
+    @Test
+    public void maintain_test() throws InterruptedException {
+        // a ttl no test run reaches, the rotation is the only change
+        LRUBloomFilter<Long> lru = LRUBloomFilter.create("lru", 1000, 0.01, 2, Duration.ofHours(1));
+        ConcurrentLRUBloomFilter<Long> concurrent = ConcurrentLRUBloomFilter.create("concurrent", 1000, 0.01, 2,
+                Duration.ofHours(1));
+        // a short ttl, the eviction is awaited
+        LRUBloomFilter<Long> expiring = LRUBloomFilter.create("expiring", 1000, 0.01, 2, Duration.ofMillis(100));
+        ConcurrentLRUBloomFilter<Long> concurrentExpiring = ConcurrentLRUBloomFilter.create("concurrentExpiring",
+                1000, 0.01, 2, Duration.ofMillis(100));
+        try (FilterMaintainer maintainer = FilterMaintainer.create(1)) {
+            maintainer.register(lru, Duration.ofMillis(10));
+            maintainer.register(concurrent, Duration.ofMillis(10));
+            maintainer.register(expiring, Duration.ofMillis(10));
+            maintainer.register(concurrentExpiring, Duration.ofMillis(10));
+            Assert.isTrue(maintainer.names().size() == 4, "filter not registered");
+
+            // fill the first generation, the maintainer rolls the next one without a write
+            for (long i = 0; i < 500; i++) {
+                lru.put(i);
+                concurrent.put(i);
+            }
+            await(() -> lru.numOfGenerations() == 2 && concurrent.numOfGenerations() == 2, "generation not rotated");
+            Assert.isTrue(lru.mightContains(1L) && concurrent.mightContains(1L), "false negative");
+
+            // idle filters drop the expired generations
+            expiring.put(1L);
+            concurrentExpiring.put(1L);
+            await(() -> expiring.numOfGenerations() == 0 && concurrentExpiring.numOfGenerations() == 0,
+                    "expired generation not evicted");
+            Assert.isTrue(!expiring.mightContains(1L) && !concurrentExpiring.mightContains(1L),
+                    "expired element found");
+
+            lru.put(1L);
+            concurrent.put(1L);
+            Assert.isTrue(lru.mightContains(1L) && concurrent.mightContains(1L), "false negative");
+            Assert.isTrue(maintainer.unregister("lru"), "filter not unregistered");
+        }
+    }
+
+    /**
+     * Poll until the condition holds, a slow run only takes longer
+     */
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            Assert.isTrue(System.nanoTime() < deadline, message);
+            Thread.sleep(10);
+        }
+    }
+}
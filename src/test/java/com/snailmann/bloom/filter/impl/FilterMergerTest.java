@@ -0,0 +1,82 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.FilterEstimator;
+import com.snailmann.bloom.filter.FilterMerger;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.storage.BitStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+/**
+ * @author liwenjie
+ */
+class FilterMergerTest {
+
+    @Test
+    public void merge_test() {
+        FilterConfig config = FilterConfig.config(100000, 0.01);
+        // shard a: [0, 60000) on heap, shard b: [40000, 100000) off heap
+        BloomFilter<Long> a = BloomFilter.create("a", config);
+        ConcurrentBloomFilter<Long> b = ConcurrentBloomFilter.create("b", FilterConfig.copyOf(config),
+                BitStorage.direct(config.getM()));
+        for (long i = 0; i < 60000; i++) {
+            a.put(i);
+            b.put(i + 40000);
+        }
+        FilterMerger merger = FilterMerger.create();
+        FilterEstimator estimator = FilterEstimator.create();
+
+        BloomFilter<Long> union = merger.union("union", a, b);
+        BloomFilter<Long> intersection = merger.intersect("intersection", a, b);
+        int falsePositives = 0;
+        for (long i = 0; i < 100000; i++) {
+            Assert.isTrue(union.mightContains(i), "false negative of union");
+            if (i >= 40000 && i < 60000) {
+                Assert.isTrue(intersection.mightContains(i), "false negative of intersection");
+            } else if (intersection.mightContains(i)) {
+                falsePositives++;
+            }
+        }
+        Assert.isTrue(falsePositives < 80000 * 0.05, "false positives of intersection: " + falsePositives);
+        Assert.isTrue(union.getBitCount() == estimator.bitCount(union), "bit count of union");
+        Assert.isTrue(union.getCurrentSize() == 120000, "size of union");
+
+        // merge b into a in place
+        a.mergeFrom(b);
+        for (long i = 0; i < 100000; i++) {
+            Assert.isTrue(a.mightContains(i), "false negative of merge");
+        }
+        Assert.isTrue(a.getBitCount() == union.getBitCount(), "bit count of merge");
+        Assert.isTrue(estimator.bitCount(a) == a.getBitCount(), "bit count of merge");
+
+        BloomFilter<Long> other = BloomFilter.create("other", 1000, 0.01);
+        try {
+            a.mergeFrom(other);
+            Assert.isTrue(false, "filters of different m");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parallel_test() {
+        // about 150000 words, split into tasks
+        FilterConfig config = FilterConfig.config(1000000, 0.01);
+        ConcurrentBloomFilter<Long> a = ConcurrentBloomFilter.create("a", config);
+        ConcurrentBloomFilter<Long> b = ConcurrentBloomFilter.create("b", FilterConfig.copyOf(config));
+        for (long i = 0; i < 500000; i++) {
+            a.put(i);
+            b.put(i + 250000);
+        }
+        BloomFilter<Long> sequential = FilterMerger.create().union("sequential", a, b);
+        BloomFilter<Long> parallel = FilterMerger.parallel().union("parallel", a, b);
+        for (long i = 0; i < parallel.storage().wordSize(); i++) {
+            Assert.isTrue(parallel.storage().getWord(i) == sequential.storage().getWord(i), "word " + i);
+        }
+        FilterMerger.parallel().mergeFrom(a, b);
+        Assert.isTrue(a.getBitCount() == parallel.getBitCount(), "bit count of parallel merge");
+        Assert.isTrue(a.mightContains(749999L) && a.mightContains(0L), "false negative of parallel merge");
+    }
+}
@@ -0,0 +1,67 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentLRUBloomFilter;
+import com.snailmann.bloom.filter.RedisBloomFilter;
+import com.snailmann.bloom.filter.metrics.FilterMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+/**
+ * @author liwenjie
+ */
+class FilterMetricsTest {
+
+    @Test
+    public void metrics_test() {
+        BloomFilter<Long> bloom = BloomFilter.create("bloom", 10000, 0.01);
+        ConcurrentLRUBloomFilter<Long> lru = ConcurrentLRUBloomFilter.create("lru", 10000, 0.01, 4);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        // filters not instrumented are skipped
+        FilterMetrics.create(List.of(bloom, lru, "not a filter")).bindTo(registry);
+
+        for (long i = 0; i < 10000; i++) {
+            bloom.put(i);
+            lru.put(i);
+        }
+        bloom.putAll(new long[]{20000, 20001});
+        int positives = 0;
+        for (long i = 0; i < 20000; i++) {
+            if (bloom.mightContains(i)) {
+                positives++;
+            }
+            lru.mightContains(i);
+        }
+
+        Tags tags = Tags.of("name", "bloom");
+        Assert.isTrue(registry.get("bloom.filter.puts").tags(tags).functionCounter().count() == 10002, "puts not counted");
+        Assert.isTrue(registry.get("bloom.filter.queries").tags(tags).functionCounter().count() == 20000, "queries not counted");
+        Assert.isTrue(registry.get("bloom.filter.positives").tags(tags).functionCounter().count() == positives, "positives not counted");
+        long sampled = registry.get("bloom.filter.query.latency").tags(tags).timer().count();
+        Assert.isTrue(sampled > 0 && sampled < 20000, "queries not sampled: " + sampled);
+
+        // full at n, the fill ratio is about 1/2 and the fpp is about the configured one
+        double fill = registry.get("bloom.filter.fill.ratio").tags(tags).gauge().value();
+        double fpp = registry.get("bloom.filter.fpp.estimated").tags(tags).gauge().value();
+        Assert.isTrue(fill > 0.45 && fill < 0.55, "fill ratio: " + fill);
+        Assert.isTrue(fpp > 0.005 && fpp < 0.02, "estimated fpp: " + fpp);
+        Assert.isTrue(registry.get("bloom.filter.size").tags(tags).gauge().value() == 10002, "size");
+        Assert.isTrue(registry.get("bloom.filter.generations").tags(tags).gauge().value() == 1, "generations");
+
+        // 4 generations of 2500 elements
+        Tags lruTags = Tags.of("name", "lru");
+        Assert.isTrue(registry.get("bloom.filter.generations").tags(lruTags).gauge().value() == 4, "generations");
+        Assert.isTrue(registry.get("bloom.filter.expected.size").tags(lruTags).gauge().value() == 10000, "expected size");
+        Assert.isTrue(registry.get("bloom.filter.positive.rate").tags(lruTags).gauge().value() >= 0.5, "positive rate");
+        double sfpp = registry.get("bloom.filter.fpp.estimated").tags(lruTags).gauge().value();
+        Assert.isTrue(sfpp > 0.005 && sfpp < 0.02, "estimated sfpp: " + sfpp);
+
+        Assert.isTrue(registry.find("bloom.filter.puts").tag("type", RedisBloomFilter.class.getSimpleName()).meters().isEmpty(),
+                "not instrumented filter bound");
+    }
+}
@@ -1,15 +1,25 @@
 package com.snailmann.bloom.filter.impl;
 
+import com.snailmann.bloom.filter.BlockedBloomFilter;
 import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.ConcurrentBloomFilter;
+import com.snailmann.bloom.filter.LRUBloomFilter;
+import com.snailmann.bloom.filter.SplitBlockBloomFilter;
+import com.snailmann.bloom.filter.basic.Filter;
+import com.snailmann.bloom.utils.ByteUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.util.Assert;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 /**
  * @author liwenjie
@@ -37,6 +47,57 @@ public class FilterTest {
         Assert.isTrue(String.format("%.3f", p).equals(String.format("%.3f", fpp)), "fpp not match");
     }
 
+    @Test
+    public void primitive_key_test() {
+        BloomFilter<Long> bloomFilter = BloomFilter.create("test", 1000, 0.001);
+        for (long i = 0; i < 1000; i++) {
+            bloomFilter.put(i * 31);
+        }
+        for (long i = 0; i < 1000; i++) {
+            Long boxed = i * 31;
+            Assert.isTrue(bloomFilter.mightContains(boxed), "boxed key not match");
+            Assert.isTrue(bloomFilter.mightContains(ByteUtils.toBytes(i * 31)), "bytes key not match");
+        }
+
+        BloomFilter<String> strings = BloomFilter.create("test", 1000, 0.001);
+        strings.put(new StringBuilder("snail\u00e9\ud83d\ude00"));
+        Assert.isTrue(strings.mightContains("snail\u00e9\ud83d\ude00"), "string key not match");
+        Assert.isTrue(strings.mightContains("snail\u00e9\ud83d\ude00".getBytes(StandardCharsets.UTF_8)), "utf8 key not match");
+    }
+
+    @Test
+    public void batch_test() {
+        List<Filter<Long>> filters = List.of(
+                BloomFilter.create("test", 10000, 0.01),
+                ConcurrentBloomFilter.create("test", 10000, 0.01),
+                BlockedBloomFilter.create("test", 10000, 0.01),
+                SplitBlockBloomFilter.create("test", 10000, 0.01),
+                LRUBloomFilter.create("test", 40000, 0.01, 4));
+        long[] keys = new long[20000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i * 7L;
+        }
+        long[] evens = LongStream.range(0, keys.length / 2).map(i -> keys[(int) i * 2]).toArray();
+        List<Long> odds = LongStream.range(0, keys.length / 2).mapToObj(i -> keys[(int) i * 2 + 1]).collect(Collectors.toList());
+        for (Filter<Long> filter : filters) {
+            filter.putAll(evens);
+            boolean[] out = new boolean[keys.length];
+            filter.mightContainsAll(keys, out);
+            for (int i = 0; i < keys.length; i++) {
+                Assert.isTrue(out[i] == filter.mightContains(keys[i]), "batch not match: " + filter.getClass());
+                if (i % 2 == 0) {
+                    Assert.isTrue(out[i], "false negative: " + filter.getClass());
+                }
+            }
+            filter.putAll(odds);
+            byte[][] raw = Arrays.stream(keys).mapToObj(ByteUtils::toBytes).toArray(byte[][]::new);
+            filter.mightContainsAll(raw, out);
+            for (int i = 0; i < keys.length; i++) {
+                Assert.isTrue(out[i], "false negative: " + filter.getClass());
+            }
+        }
+    }
+
     public double test(BloomFilter<Integer> bloomFilter, int n) {
         Map<String, Boolean> map = new LinkedHashMap<>();
         System.out.println(bloomFilter);
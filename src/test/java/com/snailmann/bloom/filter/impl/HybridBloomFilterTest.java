@@ -0,0 +1,88 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.HybridBloomFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * @author liwenjie
+ */
+class HybridBloomFilterTest {
+
+    @Test
+    public void converge_test() {
+        FakeRedis redis = new FakeRedis();
+        var n = 5000;
+        FilterConfig config = FilterConfig.config(n, 0.001);
+        Duration never = Duration.ofHours(1);
+        try (HybridBloomFilter<Long> a = HybridBloomFilter.create("test", config, redis.template(), never, never);
+             HybridBloomFilter<Long> b = HybridBloomFilter.create("test", config, redis.template(), never, never)) {
+            // the first pulls run in the background at once, they only OR bits in and FakeRedis is thread-safe
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = i;
+            }
+            a.putAll(keys);
+            int pending = a.numOfPending();
+            Assert.isTrue(pending > n * 0.99 && pending <= n, "pending not match");
+            // an element already in the replica is not flushed again
+            a.put(0L);
+            Assert.isTrue(a.numOfPending() == pending, "element flushed twice");
+            Assert.isTrue(!b.mightContains(1L), "element seen before flush");
+
+            a.flush();
+            Assert.isTrue(a.numOfPending() == 0, "pending not flushed");
+            b.put(-1L);
+            b.flush();
+            a.pull();
+            b.pull();
+
+            BloomFilter<Long> expected = BloomFilter.create("expected", config);
+            expected.putAll(keys);
+            expected.put(-1L);
+            Assert.isTrue(a.getBitCount() == expected.getBitCount(), "replica a not converged");
+            Assert.isTrue(b.getBitCount() == expected.getBitCount(), "replica b not converged");
+            Assert.isTrue(a.remote().getBitCount() == expected.getBitCount(), "redis not match");
+            for (long i = -1; i < n; i++) {
+                Assert.isTrue(a.mightContains(i) && b.mightContains(i), "false negative: " + i);
+            }
+        }
+    }
+
+    @Test
+    public void resync_test() {
+        FakeRedis redis = new FakeRedis();
+        var n = 5000;
+        FilterConfig config = FilterConfig.config(n, 0.001);
+        Duration never = Duration.ofHours(1);
+        try (HybridBloomFilter<Long> a = HybridBloomFilter.create("test", config, redis.template(), never, never, 100)) {
+            // redis is down, all but 100 elements are dropped
+            redis.setDown(true);
+            for (long i = 0; i < n; i++) {
+                a.put(i);
+            }
+            Assert.isTrue(a.numOfPending() == 100, "pending not bounded");
+            try {
+                a.flush();
+                Assert.isTrue(false, "flush to a failed redis");
+            } catch (RuntimeException expected) {
+                // expected, the pending elements are kept
+            }
+            Assert.isTrue(a.numOfPending() == 100, "pending lost");
+
+            // a dropped element has its local bits set, it is restored by the resync of the next flush
+            redis.setDown(false);
+            a.put(n - 1L);
+            a.flush();
+            Assert.isTrue(a.numOfPending() == 0, "pending not flushed");
+            Assert.isTrue(a.remote().getBitCount() == a.getBitCount(), "redis not converged");
+            for (long i = 0; i < n; i++) {
+                Assert.isTrue(a.remote().mightContains(i), "dropped element missing in redis: " + i);
+            }
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.snailmann.bloom.filter.impl;
 
+import com.snailmann.bloom.filter.BloomFilter;
 import com.snailmann.bloom.filter.LRUBloomFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import com.snailmann.bloom.filter.config.LRUFilterConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.util.Assert;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -29,6 +34,79 @@ class LRUBloomFilterTest {
         Assert.isTrue(String.format("%.3f", p).equals(String.format("%.3f", fpp)), "fpp not match");
     }
 
+    @Test
+    public void recycle_test() {
+        var config = LRUFilterConfig.config(3000, 0.01, 3);
+        config.setRecycle(true);
+        LRUBloomFilter<Long> filter = LRUBloomFilter.create("test", config);
+        // the maintainer clears evicted generations, driven by hand here
+        filter.setScheduled(true);
+        for (long i = 0; i < 3000; i++) {
+            filter.put(i);
+        }
+        // roll over the first generation "1", it is dirty until the maintainer clears it, so "3" is allocated
+        filter.put(3000L);
+        Assert.isTrue("3".equals(filter.generations().get(2).name()), "dirty generation reused on the write path");
+        filter.preallocate();
+        for (long i = 3001; i <= 4000; i++) {
+            filter.put(i);
+        }
+        var generations = filter.generations();
+        Assert.isTrue(generations.size() == 3, "generations not match");
+        Assert.isTrue("1".equals(generations.get(2).name()), "evicted generation not reused");
+        Assert.isTrue(generations.get(2).getCurrentSize() == 1, "reused generation not cleared");
+        Assert.isTrue(!filter.mightContains(0L), "evicted element found");
+        for (long i = 2000; i <= 4000; i++) {
+            Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+        }
+        Assert.isTrue(generations.get(0).config() != generations.get(1).config(), "generations share a config");
+
+        // a pinned generation is not cleared under its reader, it is recycled once unpinned
+        var pinned = filter.pin();
+        var oldest = pinned.generations().get(0);
+        long size = oldest.getCurrentSize();
+        for (long i = 4001; i <= 5000; i++) {
+            filter.put(i);
+        }
+        Assert.isTrue(!filter.generations().contains(oldest), "pinned generation not evicted");
+        Assert.isTrue(oldest.getCurrentSize() == size && oldest.mightContains(2000L), "pinned generation cleared");
+        pinned.close();
+        filter.preallocate();
+        Assert.isTrue(oldest.getCurrentSize() == 0, "unpinned generation not recycled");
+    }
+
+    @Test
+    public void single_hash_query_test() {
+        var config = LRUFilterConfig.config(1000, 0.01, 4);
+        // an older generation of another shape derives its own indexes from the shared hash
+        BloomFilter<Long> older = BloomFilter.create("0", FilterConfig.config(500, 0.001));
+        BloomFilter<Long> current = BloomFilter.create("1", FilterConfig.copyOf(config.getTemplateConfig()));
+        LRUBloomFilter<Long> filter = LRUBloomFilter.restore("test", config, List.of(older, current), 2);
+        for (long i = 0; i < 500; i++) {
+            older.put(i);
+        }
+        for (long i = 500; i < 1000; i++) {
+            filter.put(i);
+        }
+        filter.put("snail");
+        var generations = filter.generations();
+        Assert.isTrue(generations.get(0) == older && generations.size() > 2, "generations not match");
+        long[] elements = new long[4000];
+        boolean[] out = new boolean[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = i;
+        }
+        filter.mightContainsAll(elements, out);
+        for (long i = 0; i < elements.length; i++) {
+            long element = i;
+            boolean expected = generations.stream().anyMatch(generation -> generation.mightContains(element));
+            Assert.isTrue(filter.mightContains(i) == expected, "single hash query not match: " + i);
+            Assert.isTrue(out[(int) i] == expected, "batch query not match: " + i);
+        }
+        Assert.isTrue(filter.mightContains("snail") && filter.mightContains("snail".getBytes(StandardCharsets.UTF_8)),
+                "false negative");
+    }
+
     private double test(LRUBloomFilter<Integer> filter, int n) {
         ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(30);
         Map<String, Boolean> map = new LinkedHashMap<>();
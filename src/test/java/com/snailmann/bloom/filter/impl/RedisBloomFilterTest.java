@@ -0,0 +1,58 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.RedisBloomFilter;
+import com.snailmann.bloom.filter.config.FilterConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+/**
+ * @author liwenjie
+ */
+class RedisBloomFilterTest {
+
+    @Test
+    public void fpp_test() {
+        FakeRedis redis = new FakeRedis();
+        var n = 5000;
+        var p = 0.001;
+        FilterConfig config = FilterConfig.config(n, p);
+        // small shards to cover more than one key
+        RedisBloomFilter<Long> filter = RedisBloomFilter.create("test", config, redis.template(), 1 << 14);
+        Assert.isTrue(filter.numOfShards() > 1, "filter is not sharded");
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+        filter.putAll(keys);
+        Assert.isTrue(redis.pipelines() == 1, "batch is not pipelined");
+        Assert.isTrue(filter.getCurrentSize() == n, "currentSize not match");
+
+        // another instance shares the bits
+        RedisBloomFilter<Long> other = RedisBloomFilter.create("test", config, redis.template(), 1 << 14);
+        BloomFilter<Long> local = BloomFilter.create("local", config);
+        local.putAll(keys);
+        Assert.isTrue(other.getBitCount() == local.getBitCount(), "bitCount not match");
+        int fppNum = 0;
+        for (long i = 0; i < n * 2; i++) {
+            boolean present = other.mightContains(i);
+            Assert.isTrue(present == local.mightContains(i), "bits not match: " + i);
+            if (i >= n && present) {
+                fppNum++;
+            }
+        }
+        Assert.isTrue((double) fppNum / n < p * 2, "fpp too high");
+
+        boolean[] out = new boolean[n];
+        other.mightContainsAll(keys, out);
+        for (int i = 0; i < n; i++) {
+            Assert.isTrue(out[i], "false negative: " + i);
+        }
+
+        other.put(-1L);
+        Assert.isTrue(filter.mightContains(-1L), "false negative: -1");
+        Assert.isTrue(filter.getCurrentSize() == n + 1, "currentSize not match");
+        filter.clear();
+        Assert.isTrue(filter.getBitCount() == 0 && filter.getCurrentSize() == 0, "clear failed");
+    }
+}
@@ -0,0 +1,47 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.ScalableBloomFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+/**
+ * @author liwenjie
+ */
+class ScalableBloomFilterTest {
+
+    @Test
+    public void grow_test() {
+        var p = 0.01;
+        ScalableBloomFilter<Long> filter = ScalableBloomFilter.create("test", 1000, p);
+        // 100 times the initial n
+        var n = 100000;
+        for (long i = 0; i < n / 2; i++) {
+            filter.put(i);
+        }
+        long[] batch = new long[n / 2];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = n / 2 + i;
+        }
+        filter.putAll(batch);
+        Assert.isTrue(filter.numOfStages() > 1, "filter not grown");
+        Assert.isTrue(filter.getCurrentSize() == n, "size not match");
+        Assert.isTrue(filter.currentFpp() < p, "compounded fpp over target");
+
+        boolean[] out = new boolean[batch.length];
+        filter.mightContainsAll(batch, out);
+        for (long i = 0; i < n; i++) {
+            Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+        }
+        for (boolean found : out) {
+            Assert.isTrue(found, "false negative in batch");
+        }
+
+        int fppNum = 0;
+        for (long i = n; i < n * 2L; i++) {
+            if (filter.mightContains(i)) {
+                fppNum++;
+            }
+        }
+        Assert.isTrue((double) fppNum / n < p, "fpp too high: " + fppNum);
+    }
+}
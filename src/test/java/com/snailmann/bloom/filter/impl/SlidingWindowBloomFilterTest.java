@@ -0,0 +1,103 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.SlidingWindowBloomFilter;
+import com.snailmann.bloom.filter.config.LRUFilterConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * @author liwenjie
+ */
+class SlidingWindowBloomFilterTest {
+
+    @Test
+    public void window_test() {
+        var clock = new ManualClock(0);
+        var config = LRUFilterConfig.windowConfig(10000, 0.01, Duration.ofMinutes(10), 10);
+        SlidingWindowBloomFilter<Long> filter = SlidingWindowBloomFilter.create("test", config, clock);
+
+        // one element put in the middle of each minute
+        for (long minute = 0; minute < 30; minute++) {
+            clock.millis = minute * 60_000 + 30_000;
+            filter.put(minute);
+        }
+        // now is 29:30, the window covers 19:30 to 29:30 and at most one more slice
+        for (long minute = 0; minute < 30; minute++) {
+            boolean found = filter.mightContains(minute);
+            if (minute >= 20) {
+                Assert.isTrue(found, "false negative in window: " + minute);
+            } else if (minute < 19) {
+                Assert.isTrue(!found, "expired element found: " + minute);
+            }
+        }
+        Assert.isTrue(filter.generations().size() == 11, "slices not match");
+
+        // an element is found for exactly the window after its put, and gone one slice later
+        clock.millis = 40 * 60_000;
+        filter.put(40L);
+        clock.millis = 50 * 60_000 - 1;
+        Assert.isTrue(filter.mightContains(40L), "false negative at the end of window");
+        clock.millis = 51 * 60_000;
+        Assert.isTrue(!filter.mightContains(40L), "expired element found");
+
+        // the maintainer clears the expired slices
+        filter.evictExpired();
+        filter.preallocate();
+        Assert.isTrue(filter.generations().isEmpty(), "expired slices not evicted");
+    }
+
+    @Test
+    public void fpp_test() {
+        var clock = new ManualClock(0);
+        var n = 20000;
+        var config = LRUFilterConfig.windowConfig(n, 0.01, Duration.ofSeconds(4), 4);
+        SlidingWindowBloomFilter<Long> filter = SlidingWindowBloomFilter.create("test", config, clock);
+        // n elements spread over the window
+        for (long i = 0; i < n; i++) {
+            clock.millis = i * 4000 / n;
+            filter.put(i);
+        }
+        int fppNum = 0;
+        for (long i = n; i < n * 2; i++) {
+            if (filter.mightContains(i)) {
+                fppNum++;
+            }
+        }
+        Assert.isTrue((double) fppNum / n < 0.015, "fpp too high: " + fppNum);
+    }
+
+    private static final class ManualClock extends Clock {
+
+        private long millis;
+
+        private ManualClock(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.LRUBloomFilter;
+import com.snailmann.bloom.filter.snapshot.FilterSnapshots;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @author liwenjie
+ */
+class SnapshotTest {
+
+    @Test
+    public void bloom_filter_snapshot_test() throws IOException {
+        var n = 10000;
+        BloomFilter<Long> filter = BloomFilter.create("test", n, 0.001);
+        for (long i = 0; i < n; i++) {
+            filter.put(i);
+        }
+        Path file = Files.createTempFile("bloom", ".snapshot");
+        try {
+            FilterSnapshots.write(filter, file);
+            try (BloomFilter<Long> loaded = FilterSnapshots.loadBloomFilter(file, FileChannel.MapMode.PRIVATE)) {
+                Assert.isTrue("test".equals(loaded.name()), "name not match");
+                Assert.isTrue(loaded.config().getM() == filter.config().getM(), "m not match");
+                Assert.isTrue(loaded.numOfHashFunctions() == filter.numOfHashFunctions(), "k not match");
+                Assert.isTrue(loaded.getCurrentSize() == n, "currentSize not match");
+                Assert.isTrue(loaded.getBitCount() == filter.getBitCount(), "bitCount not match");
+                for (long i = 0; i < n * 2; i++) {
+                    Assert.isTrue(loaded.mightContains(i) == filter.mightContains(i), "bits not match: " + i);
+                }
+                // a private mapping never writes to the snapshot
+                loaded.put(-1L);
+            }
+            try (BloomFilter<Long> loaded = FilterSnapshots.loadBloomFilter(file, FileChannel.MapMode.READ_ONLY)) {
+                Assert.isTrue(loaded.getCurrentSize() == n, "snapshot is changed");
+                Assert.isTrue(loaded.getBitCount() == filter.getBitCount(), "snapshot is changed");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void lru_filter_snapshot_test() throws IOException {
+        var sn = 40000;
+        LRUBloomFilter<Long> filter = LRUBloomFilter.create("test", sn, 0.01, 4);
+        for (long i = 0; i < sn; i++) {
+            filter.put(i);
+        }
+        Path file = Files.createTempFile("lru", ".snapshot");
+        try {
+            FilterSnapshots.write(filter, file);
+            LRUBloomFilter<Long> loaded = FilterSnapshots.loadLRUBloomFilter(file, FileChannel.MapMode.PRIVATE);
+            Assert.isTrue("test".equals(loaded.name()), "name not match");
+            Assert.isTrue(loaded.generations().size() == filter.generations().size(), "generations not match");
+            Assert.isTrue(loaded.version() == filter.version(), "version not match");
+            for (long i = 0; i < sn * 2; i++) {
+                Assert.isTrue(loaded.mightContains(i) == filter.mightContains(i), "bits not match: " + i);
+            }
+            // the restored filter keeps rolling generations
+            for (long i = sn; i < sn * 2; i++) {
+                loaded.put(i);
+            }
+            for (long i = sn; i < sn * 2; i++) {
+                Assert.isTrue(loaded.mightContains(i), "false negative: " + i);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
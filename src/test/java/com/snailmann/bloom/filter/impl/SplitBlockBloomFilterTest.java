@@ -0,0 +1,60 @@
+package com.snailmann.bloom.filter.impl;
+
+import com.snailmann.bloom.filter.BloomFilter;
+import com.snailmann.bloom.filter.SplitBlockBloomFilter;
+import com.snailmann.bloom.filter.simd.SplitBlockKernel;
+import com.snailmann.bloom.filter.simd.SplitBlockKernels;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author liwenjie
+ */
+@Slf4j
+class SplitBlockBloomFilterTest {
+
+    @Test
+    public void fpp_test() {
+        var n = 100000;
+        var p = 0.001;
+        SplitBlockBloomFilter<Long> filter = BloomFilter.createSplitBlock("test", n, p);
+        System.out.println(filter.config() + ", kernel: " + filter.kernel());
+        for (long i = 0; i < n; i++) {
+            filter.put(i);
+        }
+        for (long i = 0; i < n; i++) {
+            Assert.isTrue(filter.mightContains(i), "false negative: " + i);
+        }
+        int fppNum = 0;
+        for (long i = n; i < n * 2L; i++) {
+            if (filter.mightContains(i)) {
+                fppNum++;
+            }
+        }
+        var fpp = (double) fppNum / n;
+        System.out.println(String.format("total: %s, false: %s, fpp: %s", n, fppNum, BigDecimal.valueOf(fpp)));
+        Assert.isTrue(fpp < p * 1.5, "fpp too high");
+    }
+
+    @Test
+    public void kernel_test() {
+        SplitBlockKernel scalar = SplitBlockKernels.scalar();
+        SplitBlockKernel best = SplitBlockKernels.best();
+        int[] a = new int[SplitBlockKernel.WORDS * 16];
+        int[] b = new int[SplitBlockKernel.WORDS * 16];
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            int offset = random.nextInt(16) * SplitBlockKernel.WORDS;
+            int hash = random.nextInt();
+            Assert.isTrue(scalar.check(a, offset, hash) == best.check(b, offset, hash), "check not match");
+            Assert.isTrue(scalar.insert(a, offset, hash) == best.insert(b, offset, hash), "insert not match");
+            Assert.isTrue(best.check(b, offset, hash), "false negative");
+        }
+        Assert.isTrue(Arrays.equals(a, b), "words not match");
+    }
+}
@@ -0,0 +1,67 @@
+package com.snailmann.bloom.hash;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.snailmann.bloom.utils.ByteUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author liwenjie
+ */
+class Murmur3Test {
+
+    @Test
+    public void hash128_test() {
+        Random random = new Random(7);
+        long[] out = new long[2];
+        for (int len = 0; len <= 64; len++) {
+            byte[] bytes = new byte[len];
+            random.nextBytes(bytes);
+            Murmur3.hash128(bytes, 0, len, 0, out, 0);
+            HashCode expected = Hashing.murmur3_128().hashBytes(bytes);
+            ByteBuffer buffer = ByteBuffer.wrap(expected.asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            Assert.isTrue(out[0] == buffer.getLong() && out[1] == buffer.getLong(), "hash not match, len: " + len);
+        }
+    }
+
+    @Test
+    public void hash128_long_test() {
+        long[] expected = new long[2];
+        long[] out = new long[2];
+        for (long key : new long[]{0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE, 123456789L}) {
+            Murmur3.hash128(ByteUtils.toBytes(key), 0, Long.BYTES, 0, expected, 0);
+            Murmur3.hash128(key, 0, out, 0);
+            Assert.isTrue(out[0] == expected[0] && out[1] == expected[1], "hash not match, key: " + key);
+        }
+    }
+
+    @Test
+    public void utf8_test() {
+        String[] strings = {"", "snailmann", "\u00e9\u4e2d\u6587", "\ud83d\ude00", "bad\ud83d", "\ude00bad"};
+        for (String s : strings) {
+            byte[] out = new byte[s.length() * 3];
+            int len = ByteUtils.encodeUtf8(s, out);
+            Assert.isTrue(Arrays.equals(s.getBytes(StandardCharsets.UTF_8), Arrays.copyOf(out, len)), "utf8 not match: " + s);
+        }
+    }
+
+    @Test
+    public void indexes_test() {
+        Murmur3DoubleHash hash = new Murmur3DoubleHash();
+        hash.createHashes(7);
+        byte[] bytes = "snailmann".getBytes();
+        int[] expected = hash.hashes(bytes, 1000);
+        long[] indexs = hash.indexes(bytes, 1000);
+        for (int i = 0; i < 7; i++) {
+            Assert.isTrue(expected[i] == indexs[i], "index not match");
+            Assert.isTrue(indexs[i] >= 0 && indexs[i] < 1000, "index out of range");
+        }
+    }
+}